@@ -0,0 +1,146 @@
+package com.oladimeji.myjournal;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.oladimeji.myjournal.data.BenchmarkRunner;
+import com.oladimeji.myjournal.data.MyJournalContract;
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures the time from launching {@link MainActivity} to its first thoughts being bound, with
+ * the first page queried as the activity is created, as the app does, and for comparison queried
+ * ahead of the launch.
+ *
+ * Every launch starts from a new repository, so the first page is always queried, but in a
+ * process whose database is already open. The start of a new process is measured from the
+ * shell instead, with the list showing as the "Fully drawn" time:
+ *
+ *     adb shell am start -S -W -n com.oladimeji.myjournal/.MainActivity
+ *
+ * Run while signed in, or the sign in screen opens over the list.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BenchmarkMainActivityStart {
+
+    private static final int WARMUPS = 3;
+    private static final int ITERATIONS = 20;
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final Instrumentation mInstrumentation = InstrumentationRegistry.getInstrumentation();
+
+    @Test
+    public void benchmarkStart() throws Exception {
+        boolean filled = fillIfEmpty();
+        try {
+            BenchmarkRunner.report(BenchmarkRunner.measure("startPrefetchedBeforeLaunch", WARMUPS, ITERATIONS,
+                    new StartOperation(true)));
+            BenchmarkRunner.report(BenchmarkRunner.measure("startPrefetchedOnCreate", WARMUPS, ITERATIONS,
+                    new StartOperation(false)));
+        } finally {
+            if (filled) {
+                mContext.getContentResolver().delete(MyJournalEntry.CONTENT_URI, null, null);
+            }
+        }
+    }
+
+    /**
+     * Launches the activity and waits for its first thoughts, after replacing the repository of
+     * the application as it is when the process starts, and querying the first page right away
+     * if asked to.
+     */
+    private class StartOperation implements BenchmarkRunner.Operation {
+        private final boolean mPrefetch;
+
+        StartOperation(boolean prefetch) {
+            mPrefetch = prefetch;
+        }
+
+        @Override
+        public void run(int run) throws Exception {
+            mInstrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    MyJournalApplication application = (MyJournalApplication) mContext.getApplicationContext();
+                    application.startRepository();
+                    if (mPrefetch) {
+                        application.getRepository().prefetch(MyJournalApplication.FIRST_PAGE_URI,
+                                MyJournalEntry.LIST_PROJECTION);
+                    }
+                }
+            });
+            Intent intent = new Intent(mContext, MainActivity.class).addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            final MainActivity activity = (MainActivity) mInstrumentation.startActivitySync(intent);
+            try {
+                awaitThoughts(activity);
+            } finally {
+                finish(activity);
+            }
+        }
+    }
+
+    private void awaitThoughts(final MainActivity activity) throws Exception {
+        final boolean[] shown = new boolean[1];
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!shown[0]) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("No thoughts shown after " + TIMEOUT_MILLIS + " ms");
+            }
+            mInstrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    shown[0] = activity.mRecyclerView.getAdapter().getItemCount() > 0;
+                }
+            });
+        }
+    }
+
+    private void finish(final Activity activity) {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                activity.finish();
+            }
+        });
+        mInstrumentation.waitForIdleSync();
+    }
+
+    /**
+     * Add a page of thoughts to the current journal if it has none, so there is a list to show.
+     *
+     * @return whether thoughts were added, to be deleted afterwards
+     */
+    private boolean fillIfEmpty() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        Cursor cursor = contentResolver.query(MyJournalEntry.CONTENT_URI,
+                new String[]{MyJournalEntry._ID}, null, null, null);
+        try {
+            if (cursor.getCount() > 0) {
+                return false;
+            }
+        } finally {
+            cursor.close();
+        }
+        ContentValues[] page = new ContentValues[MyJournalContract.DEFAULT_PAGE_SIZE];
+        for (int i = 0; i < page.length; i++) {
+            page[i] = new ContentValues();
+            page[i].put(MyJournalEntry.COLUMN_JOURNAL_DATE, "6/" + (i % 28 + 1) + "/2018");
+            page[i].put(MyJournalEntry.COLUMN_JOURNAL_TIME, "12:" + (i % 60));
+            page[i].put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "Benchmark thought " + i);
+        }
+        contentResolver.bulkInsert(MyJournalEntry.CONTENT_URI, page);
+        return true;
+    }
+}
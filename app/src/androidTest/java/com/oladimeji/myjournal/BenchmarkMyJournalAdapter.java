@@ -0,0 +1,125 @@
+package com.oladimeji.myjournal;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.widget.FrameLayout;
+
+import com.oladimeji.myjournal.data.BenchmarkRunner;
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+import com.oladimeji.myjournal.data.MyJournalDbHelper;
+import com.oladimeji.myjournal.data.TestUtilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures {@link MyJournalAdapter#onBindViewHolder} on journals of each size given by
+ * {@link BenchmarkRunner#rowCounts()}, for rows bound the first time and bound again.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BenchmarkMyJournalAdapter {
+
+    private static final int ITERATIONS = 500;
+
+    /* Rows written by each bulk insert while filling the journal */
+    private static final int FILL_CHUNK = 10000;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    /* The user whose journal the provider had open, switched back to after the benchmark */
+    private String mPreviousUserId;
+
+    @Before
+    public void setUp() {
+        mPreviousUserId = TestUtilities.useDefaultJournal(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtilities.switchUser(mContext, mPreviousUserId);
+    }
+
+    @Test
+    public void benchmarkBind() throws Throwable {
+        for (int rows : BenchmarkRunner.rowCounts()) {
+            fill(rows);
+            final Throwable[] failure = new Throwable[1];
+            final int count = rows;
+            // Views are created and bound on the main thread, as the RecyclerView does
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        benchmarkAt(count);
+                    } catch (Throwable t) {
+                        failure[0] = t;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+    }
+
+    private void benchmarkAt(final int rows) throws Exception {
+        Cursor cursor = mContext.getContentResolver().query(MyJournalEntry.CONTENT_URI,
+                MyJournalEntry.LIST_PROJECTION, null, null, MyJournalEntry.SORT_NEWEST_FIRST);
+        final MyJournalAdapter adapter = new MyJournalAdapter(mContext, null);
+        adapter.swapCursor(cursor);
+        assertEquals(rows, adapter.getItemCount());
+
+        final MyJournalAdapter.MyJournalViewHolder holder =
+                adapter.onCreateViewHolder(new FrameLayout(mContext), 0);
+        final int bound = Math.min(rows, BenchmarkRunner.totalRuns(0, ITERATIONS));
+
+        // Every run binds a row not shown before, reading its text from the cursor, as long as
+        // the journal holds more rows than the runs
+        BenchmarkRunner.report(BenchmarkRunner.measure("firstBind@" + rows, 0, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int run) {
+                        adapter.onBindViewHolder(holder, run % rows);
+                    }
+                }));
+
+        // The same rows again, as when scrolling back up
+        BenchmarkRunner.report(BenchmarkRunner.measure("rebind@" + rows, bound, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int run) {
+                        adapter.onBindViewHolder(holder, run % bound);
+                    }
+                }));
+
+        // The adapter owns the cursor, swapping it out closes it
+        adapter.swapCursor(null);
+    }
+
+    /**
+     * Empty the journal and fill it with the given number of thoughts.
+     */
+    private void fill(int rows) {
+        new MyJournalDbHelper(mContext).getWritableDatabase().delete(MyJournalEntry.TABLE_NAME, null, null);
+        ContentResolver contentResolver = mContext.getContentResolver();
+        for (int inserted = 0; inserted < rows; inserted += FILL_CHUNK) {
+            int count = Math.min(FILL_CHUNK, rows - inserted);
+            ContentValues[] chunk = new ContentValues[count];
+            for (int i = 0; i < count; i++) {
+                chunk[i] = new ContentValues();
+                chunk[i].put(MyJournalEntry.COLUMN_JOURNAL_DATE, "6/" + (i % 28 + 1) + "/2018");
+                chunk[i].put(MyJournalEntry.COLUMN_JOURNAL_TIME, "12:" + (i % 60));
+                chunk[i].put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "Benchmark thought " + (inserted + i));
+            }
+            contentResolver.bulkInsert(MyJournalEntry.CONTENT_URI, chunk);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.oladimeji.myjournal.data.MyJournalContract.CalendarEntry;
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Compares reading the activity of a year from the calendar with counting it from the
+ * thoughts of that year, as a calendar view would have to without the calendar tables.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BenchmarkMyJournalCalendar {
+
+    /* Rows in the journal, a few thoughts a day over three years */
+    private static final int ROWS = 5000;
+    private static final int DAYS = 3 * 365;
+
+    private static final int WARMUPS = 5;
+    private static final int ITERATIONS = 30;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mContentResolver = mContext.getContentResolver();
+
+    /* The user whose journal the provider had open, switched back to after the test */
+    private String mPreviousUserId;
+
+    @Before
+    public void setUp() {
+        mPreviousUserId = TestUtilities.useDefaultJournal(mContext);
+        new MyJournalDbHelper(mContext).getWritableDatabase().delete(MyJournalEntry.TABLE_NAME, null, null);
+        Calendar day = Calendar.getInstance();
+        ContentValues[] rows = new ContentValues[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            day.clear();
+            day.set(2017, Calendar.JANUARY, 1);
+            day.add(Calendar.DAY_OF_MONTH, i % DAYS);
+            rows[i] = new ContentValues();
+            rows[i].put(MyJournalEntry.COLUMN_JOURNAL_DATE, (day.get(Calendar.MONTH) + 1) + "/"
+                    + day.get(Calendar.DAY_OF_MONTH) + "/" + day.get(Calendar.YEAR));
+            rows[i].put(MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+            rows[i].put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "Thought " + i + " about the day");
+        }
+        mContentResolver.bulkInsert(MyJournalEntry.CONTENT_URI, rows);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtilities.switchUser(mContext, mPreviousUserId);
+    }
+
+    @Test
+    public void benchmarkCalendarYear() throws Exception {
+        assertEquals(countYearFromThoughts(), countYearFromCalendar());
+
+        BenchmarkRunner.Result scan = BenchmarkRunner.measure("countYearFromThoughts", WARMUPS, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int run) {
+                        countYearFromThoughts();
+                    }
+                });
+        BenchmarkRunner.Result calendar = BenchmarkRunner.measure("readYearFromCalendar", WARMUPS, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int run) {
+                        countYearFromCalendar();
+                    }
+                });
+        BenchmarkRunner.report(scan);
+        BenchmarkRunner.report(calendar);
+        assertTrue("Reading the calendar should be faster than counting the thoughts",
+                calendar.percentileMicros(50) < scan.percentileMicros(50));
+    }
+
+    /**
+     * Returns the thoughts per day of 2018, read from the thoughts of that year.
+     */
+    private Map<Integer, Integer> countYearFromThoughts() {
+        Calendar from = Calendar.getInstance();
+        from.clear();
+        from.set(2018, Calendar.JANUARY, 1);
+        Calendar to = (Calendar) from.clone();
+        to.add(Calendar.YEAR, 1);
+        Cursor cursor = mContentResolver.query(MyJournalEntry.buildDateRangeUri(from.getTimeInMillis(),
+                to.getTimeInMillis()), new String[]{MyJournalEntry.COLUMN_JOURNAL_DATE}, null, null, null);
+        Map<Integer, Integer> days = new HashMap<>();
+        try {
+            while (cursor.moveToNext()) {
+                Integer day = MyJournalDates.parseDay(cursor.getString(0));
+                Integer count = days.get(day);
+                days.put(day, count == null ? 1 : count + 1);
+            }
+        } finally {
+            cursor.close();
+        }
+        return days;
+    }
+
+    /**
+     * Returns the thoughts per day of 2018, read from the calendar.
+     */
+    private Map<Integer, Integer> countYearFromCalendar() {
+        Cursor cursor = mContentResolver.query(CalendarEntry.buildDaysUri(20180101, 20190101),
+                null, null, null, null);
+        Map<Integer, Integer> days = new HashMap<>();
+        try {
+            int dayIndex = cursor.getColumnIndexOrThrow(CalendarEntry.COLUMN_DAY);
+            int entriesIndex = cursor.getColumnIndexOrThrow(CalendarEntry.COLUMN_ENTRIES);
+            while (cursor.moveToNext()) {
+                days.put(cursor.getInt(dayIndex), cursor.getInt(entriesIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        return days;
+    }
+}
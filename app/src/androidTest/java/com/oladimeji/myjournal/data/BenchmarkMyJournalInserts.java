@@ -0,0 +1,88 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Compares the throughput of inserting thoughts one row at a time through the provider
+ * against a single {@link ContentResolver#bulkInsert} call.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BenchmarkMyJournalInserts {
+
+    private static final String TAG = BenchmarkMyJournalInserts.class.getSimpleName();
+
+    /* Number of rows written by each run */
+    private static final int ROW_COUNT = 2000;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    /* The user whose journal the provider had open, switched back to after the test */
+    private String mPreviousUserId;
+
+    @Before
+    public void setUp() {
+        mPreviousUserId = TestUtilities.useDefaultJournal(mContext);
+        MyJournalDbHelper dbHelper = new MyJournalDbHelper(mContext);
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        database.delete(MyJournalContract.MyJournalEntry.TABLE_NAME, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtilities.switchUser(mContext, mPreviousUserId);
+    }
+
+    @Test
+    public void benchmarkPerRowVersusBulkInsert() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        ContentValues[] rows = createRows(ROW_COUNT);
+
+        /* One insert, and so one transaction, per row */
+        long start = SystemClock.elapsedRealtime();
+        for (ContentValues row : rows) {
+            contentResolver.insert(MyJournalContract.MyJournalEntry.CONTENT_URI, row);
+        }
+        long perRowMillis = Math.max(1, SystemClock.elapsedRealtime() - start);
+
+        /* The same rows in a single batch */
+        start = SystemClock.elapsedRealtime();
+        int inserted = contentResolver.bulkInsert(MyJournalContract.MyJournalEntry.CONTENT_URI, rows);
+        long bulkMillis = Math.max(1, SystemClock.elapsedRealtime() - start);
+
+        Log.i(TAG, "per-row insert: " + (ROW_COUNT * 1000L / perRowMillis) + " rows/s, "
+                + "bulk insert: " + (ROW_COUNT * 1000L / bulkMillis) + " rows/s");
+
+        assertEquals("Bulk insert did not write every row", ROW_COUNT, inserted);
+        assertTrue("Bulk insert should be faster than per-row inserts", bulkMillis < perRowMillis);
+    }
+
+    /**
+     * Build the given number of distinct thoughts.
+     */
+    static ContentValues[] createRows(int count) {
+        ContentValues[] rows = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            ContentValues values = new ContentValues();
+            values.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+            values.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+            values.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "Benchmark thought " + i);
+            rows[i] = values;
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,96 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Compares reading a page of long thoughts with every column against reading it with
+ * {@link MyJournalEntry#LIST_PROJECTION}, which leaves the thought text out of the cursor
+ * window.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BenchmarkMyJournalListProjection {
+
+    /* Rows in the journal */
+    private static final int ROWS = 2000;
+    /* Characters in each thought, twenty times its preview */
+    private static final int THOUGHT_LENGTH = 4000;
+
+    private static final int WARMUPS = 5;
+    private static final int ITERATIONS = 30;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mContentResolver = mContext.getContentResolver();
+
+    /* The user whose journal the provider had open, switched back to after the test */
+    private String mPreviousUserId;
+
+    @Before
+    public void setUp() {
+        mPreviousUserId = TestUtilities.useDefaultJournal(mContext);
+        new MyJournalDbHelper(mContext).getWritableDatabase().delete(MyJournalEntry.TABLE_NAME, null, null);
+        StringBuilder text = new StringBuilder(THOUGHT_LENGTH);
+        while (text.length() < THOUGHT_LENGTH) {
+            text.append("A long day, written down in full. ");
+        }
+        ContentValues[] rows = new ContentValues[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new ContentValues();
+            rows[i].put(MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+            rows[i].put(MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+            rows[i].put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, i + " " + text);
+        }
+        mContentResolver.bulkInsert(MyJournalEntry.CONTENT_URI, rows);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtilities.switchUser(mContext, mPreviousUserId);
+    }
+
+    @Test
+    public void benchmarkListProjection() throws Exception {
+        BenchmarkRunner.Result full = BenchmarkRunner.measure("scanAllColumns", WARMUPS, ITERATIONS,
+                scan(null));
+        BenchmarkRunner.Result list = BenchmarkRunner.measure("scanListProjection", WARMUPS, ITERATIONS,
+                scan(MyJournalEntry.LIST_PROJECTION));
+        BenchmarkRunner.report(full);
+        BenchmarkRunner.report(list);
+        assertTrue("The list projection should read faster than every column",
+                list.percentileMicros(50) < full.percentileMicros(50));
+    }
+
+    /**
+     * Read every row of the journal with the given projection, as the list does while scrolled
+     * to the end.
+     */
+    private BenchmarkRunner.Operation scan(final String[] projection) {
+        return new BenchmarkRunner.Operation() {
+            @Override
+            public void run(int run) {
+                Cursor cursor = mContentResolver.query(MyJournalEntry.CONTENT_URI, projection,
+                        null, null, null);
+                try {
+                    while (cursor.moveToNext()) {
+                        cursor.getLong(0);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+        };
+    }
+}
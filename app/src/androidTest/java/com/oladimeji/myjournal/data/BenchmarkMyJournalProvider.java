@@ -0,0 +1,149 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+
+/**
+ * Measures insert, query, update and delete through {@link MyJournalContentProvider} at each
+ * journal size given by {@link BenchmarkRunner#rowCounts()}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BenchmarkMyJournalProvider {
+
+    private static final int WARMUPS = 50;
+    private static final int ITERATIONS = 500;
+
+    /* Rows written by each bulk insert while filling the journal */
+    private static final int FILL_CHUNK = 10000;
+
+    /* Prime stride used to spread the rows read across the journal, defeating the row cache */
+    private static final int STRIDE = 7919;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mContentResolver = mContext.getContentResolver();
+
+    /* The user whose journal the provider had open, switched back to after the benchmark */
+    private String mPreviousUserId;
+
+    @Before
+    public void setUp() {
+        mPreviousUserId = TestUtilities.useDefaultJournal(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtilities.switchUser(mContext, mPreviousUserId);
+    }
+
+    @Test
+    public void benchmarkProvider() throws Exception {
+        for (int rows : BenchmarkRunner.rowCounts()) {
+            benchmarkAt(rows);
+        }
+    }
+
+    private void benchmarkAt(final int rows) throws Exception {
+        final long firstId = fill(rows);
+
+        BenchmarkRunner.report(BenchmarkRunner.measure("queryPage@" + rows, WARMUPS, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int run) {
+                        long afterId = firstId + (long) run * STRIDE % rows;
+                        Cursor cursor = mContentResolver.query(
+                                MyJournalEntry.buildPageUri(afterId, MyJournalContract.DEFAULT_PAGE_SIZE),
+                                null, null, null, null);
+                        cursor.getCount();
+                        cursor.close();
+                    }
+                }));
+
+        BenchmarkRunner.report(BenchmarkRunner.measure("queryById@" + rows, WARMUPS, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int run) {
+                        Cursor cursor = mContentResolver.query(idUri(firstId, rows, run), null, null, null, null);
+                        cursor.moveToFirst();
+                        cursor.close();
+                    }
+                }));
+
+        final ContentValues edit = new ContentValues();
+        BenchmarkRunner.report(BenchmarkRunner.measure("update@" + rows, WARMUPS, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int run) {
+                        edit.put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "Edited thought " + run);
+                        mContentResolver.update(idUri(firstId, rows, run), edit, null, null);
+                    }
+                }));
+
+        final ContentValues[] inserts = BenchmarkMyJournalInserts.createRows(
+                BenchmarkRunner.totalRuns(WARMUPS, ITERATIONS));
+        BenchmarkRunner.report(BenchmarkRunner.measure("insert@" + rows, WARMUPS, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int run) {
+                        assertNotNull(mContentResolver.insert(MyJournalEntry.CONTENT_URI, inserts[run]));
+                    }
+                }));
+
+        // Deletes the rows of the journal in order, so the journal must hold enough of them
+        BenchmarkRunner.report(BenchmarkRunner.measure("delete@" + rows, WARMUPS, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int run) {
+                        Uri uri = ContentUris.withAppendedId(MyJournalEntry.CONTENT_URI, firstId + run);
+                        assertEquals(1, mContentResolver.delete(uri, null, null));
+                    }
+                }));
+    }
+
+    /**
+     * Empty the journal and fill it with the given number of thoughts.
+     *
+     * @return the _id of the first thought
+     */
+    private long fill(int rows) {
+        SQLiteDatabase database = new MyJournalDbHelper(mContext).getWritableDatabase();
+        database.delete(MyJournalEntry.TABLE_NAME, null, null);
+
+        ContentValues[] chunk = BenchmarkMyJournalInserts.createRows(Math.min(rows, FILL_CHUNK));
+        for (int inserted = 0; inserted < rows; inserted += chunk.length) {
+            if (rows - inserted < chunk.length) {
+                chunk = BenchmarkMyJournalInserts.createRows(rows - inserted);
+            }
+            mContentResolver.bulkInsert(MyJournalEntry.CONTENT_URI, chunk);
+        }
+
+        Cursor cursor = database.rawQuery("SELECT MIN(" + MyJournalEntry._ID + ") FROM "
+                + MyJournalEntry.TABLE_NAME, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static Uri idUri(long firstId, int rows, int run) {
+        return ContentUris.withAppendedId(MyJournalEntry.CONTENT_URI, firstId + (long) run * STRIDE % rows);
+    }
+}
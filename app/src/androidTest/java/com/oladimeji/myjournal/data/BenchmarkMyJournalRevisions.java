@@ -0,0 +1,147 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+import com.oladimeji.myjournal.data.MyJournalContract.RevisionEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Edits one long thought hundreds of times, then measures the bytes stored per revision and
+ * the time to rebuild early and late revisions. Both should stay flat however long the
+ * history grows.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BenchmarkMyJournalRevisions {
+
+    private static final String TAG = BenchmarkMyJournalRevisions.class.getSimpleName();
+
+    /* Characters in the thought */
+    private static final int THOUGHT_LENGTH = 4000;
+
+    private static final int EDITS = 300;
+    private static final int ITERATIONS = 100;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mContentResolver = mContext.getContentResolver();
+
+    /* The user whose journal the provider had open, switched back to after the test */
+    private String mPreviousUserId;
+
+    private Uri mThoughtUri;
+    private String mThought;
+
+    @Before
+    public void setUp() {
+        mPreviousUserId = TestUtilities.useDefaultJournal(mContext);
+        new MyJournalDbHelper(mContext).getWritableDatabase().delete(MyJournalEntry.TABLE_NAME, null, null);
+        StringBuilder text = new StringBuilder(THOUGHT_LENGTH);
+        while (text.length() < THOUGHT_LENGTH) {
+            text.append("A long day, written down in full. ");
+        }
+        mThought = text.toString();
+        ContentValues values = new ContentValues();
+        values.put(MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+        values.put(MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+        values.put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, mThought);
+        mThoughtUri = mContentResolver.insert(MyJournalEntry.CONTENT_URI, values);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtilities.switchUser(mContext, mPreviousUserId);
+    }
+
+    @Test
+    public void benchmarkRevisions() throws Exception {
+        // Every edit rewrites one word somewhere in the text, as when proofreading
+        BenchmarkRunner.report(BenchmarkRunner.measure("editThought", 0, EDITS, new BenchmarkRunner.Operation() {
+            @Override
+            public void run(int run) {
+                int at = (run * 397) % (mThought.length() - 10);
+                mThought = mThought.substring(0, at) + "edit" + run + mThought.substring(at + 4);
+                ContentValues values = new ContentValues();
+                values.put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, mThought);
+                mContentResolver.update(mThoughtUri, values, null, null);
+            }
+        }));
+
+        final long thoughtId = ContentUris.parseId(mThoughtUri);
+        final int revisions = reportStorage(thoughtId);
+        assertEquals(mThought, reconstruct(thoughtId, revisions - 1));
+
+        BenchmarkRunner.Result early = BenchmarkRunner.measure("rebuildEarlyRevision", 5, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int run) {
+                        reconstruct(thoughtId, run % MyJournalRevisions.KEYFRAME_INTERVAL);
+                    }
+                });
+        BenchmarkRunner.Result late = BenchmarkRunner.measure("rebuildLateRevision", 5, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int run) {
+                        reconstruct(thoughtId, revisions - 1 - run % MyJournalRevisions.KEYFRAME_INTERVAL);
+                    }
+                });
+        BenchmarkRunner.report(early);
+        BenchmarkRunner.report(late);
+        assertTrue("Rebuilding a late revision should cost about as much as an early one",
+                late.percentileMicros(50) < early.percentileMicros(50) * 3);
+    }
+
+    /**
+     * Log and send the bytes stored per revision. Returns the number of revisions.
+     */
+    private int reportStorage(long thoughtId) {
+        Cursor cursor = mContentResolver.query(RevisionEntry.buildRevisionsUri(thoughtId), null, null, null, null);
+        long bytes = 0;
+        int revisions;
+        try {
+            revisions = cursor.getCount();
+            int sizeIndex = cursor.getColumnIndexOrThrow(RevisionEntry.COLUMN_SIZE);
+            while (cursor.moveToNext()) {
+                bytes += cursor.getLong(sizeIndex);
+            }
+        } finally {
+            cursor.close();
+        }
+        String result = "revisionStorage: " + revisions + " revisions, " + bytes + " bytes, "
+                + bytes / revisions + " bytes/revision for a " + THOUGHT_LENGTH + " character thought";
+        Log.i(TAG, result);
+        Bundle status = new Bundle();
+        status.putString("revisionStorage", result);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+
+        // A full copy every KEYFRAME_INTERVAL revisions, a few words in between
+        assertTrue(result, bytes / revisions < THOUGHT_LENGTH / MyJournalRevisions.KEYFRAME_INTERVAL * 2);
+        return revisions;
+    }
+
+    private String reconstruct(long thoughtId, int revision) {
+        Cursor cursor = mContentResolver.query(RevisionEntry.buildRevisionUri(thoughtId, revision),
+                null, null, null, null);
+        try {
+            assertTrue("No revision " + revision, cursor.moveToFirst());
+            return cursor.getString(cursor.getColumnIndexOrThrow(RevisionEntry.COLUMN_THOUGHT));
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Measures filtering the thoughts by two tags at each journal size given by
+ * {@link BenchmarkRunner#rowCounts()}, through the tag index and, for comparison, by matching
+ * the hashtags in the text of every thought.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BenchmarkMyJournalTags {
+
+    private static final int WARMUPS = 5;
+    private static final int ITERATIONS = 30;
+
+    /* Rows written by each bulk insert while filling the journal */
+    private static final int FILL_CHUNK = 10000;
+
+    /* Every thought is #daily, one in ten #work and one in a hundred #travel */
+    private static final int WORK_EVERY = 10;
+    private static final int TRAVEL_EVERY = 100;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ContentResolver mContentResolver = mContext.getContentResolver();
+
+    /* The user whose journal the provider had open, switched back to after the benchmark */
+    private String mPreviousUserId;
+
+    @Before
+    public void setUp() {
+        mPreviousUserId = TestUtilities.useDefaultJournal(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtilities.switchUser(mContext, mPreviousUserId);
+    }
+
+    @Test
+    public void benchmarkTags() throws Exception {
+        for (int rows : BenchmarkRunner.rowCounts()) {
+            benchmarkAt(rows);
+        }
+    }
+
+    private void benchmarkAt(int rows) throws Exception {
+        fill(rows);
+        final Uri tagged = MyJournalEntry.buildTaggedUri("daily", "travel");
+        assertEquals(rows / TRAVEL_EVERY, count(tagged, null, null));
+
+        BenchmarkRunner.Result index = BenchmarkRunner.measure("filterByTags@" + rows, WARMUPS, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int run) {
+                        count(tagged, null, null);
+                    }
+                });
+        BenchmarkRunner.Result scan = BenchmarkRunner.measure("filterByText@" + rows, WARMUPS, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int run) {
+                        count(MyJournalEntry.CONTENT_URI, MyJournalEntry.COLUMN_JOURNAL_THOUGHT + " LIKE ? AND "
+                                + MyJournalEntry.COLUMN_JOURNAL_THOUGHT + " LIKE ?",
+                                new String[]{"%#daily%", "%#travel%"});
+                    }
+                });
+        BenchmarkRunner.report(index);
+        BenchmarkRunner.report(scan);
+        // Small journals are quick to scan either way
+        if (rows >= FILL_CHUNK) {
+            assertTrue("Filtering through the tag index should be faster than matching the text",
+                    index.percentileMicros(50) < scan.percentileMicros(50));
+        }
+    }
+
+    private int count(Uri uri, String selection, String[] selectionArgs) {
+        Cursor cursor = mContentResolver.query(uri, new String[]{MyJournalEntry._ID}, selection,
+                selectionArgs, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void fill(int rows) {
+        new MyJournalDbHelper(mContext).getWritableDatabase().delete(MyJournalEntry.TABLE_NAME, null, null);
+        for (int inserted = 0; inserted < rows; inserted += FILL_CHUNK) {
+            ContentValues[] chunk = new ContentValues[Math.min(FILL_CHUNK, rows - inserted)];
+            for (int i = 0; i < chunk.length; i++) {
+                int row = inserted + i;
+                StringBuilder thought = new StringBuilder("Thought ").append(row).append(" #daily");
+                if (row % WORK_EVERY == 0) {
+                    thought.append(" #work");
+                }
+                if (row % TRAVEL_EVERY == 0) {
+                    thought.append(" #travel");
+                }
+                chunk[i] = new ContentValues();
+                chunk[i].put(MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+                chunk[i].put(MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+                chunk[i].put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, thought.toString());
+            }
+            mContentResolver.bulkInsert(MyJournalEntry.CONTENT_URI, chunk);
+        }
+    }
+}
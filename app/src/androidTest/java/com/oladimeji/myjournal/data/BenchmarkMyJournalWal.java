@@ -0,0 +1,113 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Measures how long a page read takes while another thread keeps writing, with the rollback
+ * journal the app used to run with and with the write-ahead log it uses now.
+ *
+ * Only the journal mode and sync level of the profiles are compared. Their page and cache sizes
+ * are the same, and with WAL the reads run on the pool's other connections, which the cache size
+ * of a profile does not reach.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BenchmarkMyJournalWal {
+
+    /* Rows present before the measurement starts */
+    private static final int INITIAL_ROWS = 5000;
+    /* Page reads made before timing starts */
+    private static final int WARMUPS = 30;
+    /* Page reads timed for each profile */
+    private static final int READS = 300;
+    /* Rows committed by each write transaction of the background writer */
+    private static final int ROWS_PER_WRITE = 50;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    @Test
+    public void benchmarkReadLatencyDuringWrites() throws Exception {
+        BenchmarkRunner.Result rollback = measure("rollbackRead", "benchmark_rollback.db",
+                MyJournalDbHelper.Profile.ROLLBACK_JOURNAL);
+        BenchmarkRunner.Result wal = measure("walRead", "benchmark_wal.db", MyJournalDbHelper.Profile.DEFAULT);
+
+        BenchmarkRunner.report(rollback);
+        BenchmarkRunner.report(wal);
+        assertTrue("Write-ahead logging should not make reads slower",
+                wal.percentileMicros(95) <= rollback.percentileMicros(95));
+    }
+
+    /**
+     * Time page reads on the given database while a second thread writes to it.
+     */
+    private BenchmarkRunner.Result measure(String benchmark, String name, MyJournalDbHelper.Profile profile)
+            throws Exception {
+        mContext.deleteDatabase(name);
+        final MyJournalDbHelper helper = new MyJournalDbHelper(mContext, name, profile);
+        try {
+            final SQLiteDatabase database = helper.getWritableDatabase();
+            insertRows(database, INITIAL_ROWS);
+
+            final AtomicBoolean writing = new AtomicBoolean(true);
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (writing.get()) {
+                        insertRows(database, ROWS_PER_WRITE);
+                    }
+                }
+            });
+            writer.start();
+
+            final String[] args = {"0"};
+            BenchmarkRunner.Result result;
+            try {
+                result = BenchmarkRunner.measure(benchmark, WARMUPS, READS, new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int run) {
+                        Cursor cursor = database.query(MyJournalContract.MyJournalEntry.TABLE_NAME, null,
+                                MyJournalContract.MyJournalEntry._ID + ">?", args, null, null,
+                                MyJournalContract.MyJournalEntry._ID,
+                                String.valueOf(MyJournalContract.DEFAULT_PAGE_SIZE));
+                        cursor.getCount();
+                        cursor.close();
+                    }
+                });
+            } finally {
+                writing.set(false);
+                writer.join();
+            }
+            return result;
+        } finally {
+            helper.close();
+            mContext.deleteDatabase(name);
+        }
+    }
+
+    private static void insertRows(SQLiteDatabase database, int count) {
+        database.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < count; i++) {
+                values.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+                values.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+                values.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "Benchmark thought " + i);
+                database.insert(MyJournalContract.MyJournalEntry.TABLE_NAME, null, values);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+}
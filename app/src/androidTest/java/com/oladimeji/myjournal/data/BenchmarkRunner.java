@@ -0,0 +1,163 @@
+package com.oladimeji.myjournal.data;
+
+import android.os.Bundle;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Small harness shared by the benchmarks: runs an operation a number of times after a warmup,
+ * and reports the throughput, latency percentiles and bytes allocated per operation.
+ *
+ * The journal sizes to benchmark at are read from the {@code benchmarkRows} instrumentation
+ * argument, a comma separated list that defaults to 1k and 100k rows. The 1M row run takes
+ * several minutes and is asked for explicitly:
+ *
+ * <pre>
+ * ./gradlew connectedAndroidTest \
+ *     -Pandroid.testInstrumentationRunnerArguments.benchmarkRows=1000,100000,1000000
+ * </pre>
+ *
+ * Results are logged and sent as instrumentation status, so they also show in the output of
+ * {@code am instrument -r}.
+ */
+public final class BenchmarkRunner {
+
+    private static final String TAG = BenchmarkRunner.class.getSimpleName();
+
+    /** Instrumentation argument holding the journal sizes to benchmark at */
+    public static final String ARGUMENT_ROWS = "benchmarkRows";
+
+    private static final String DEFAULT_ROWS = "1000,100000";
+
+    /* Extra runs made with allocation counting on, kept apart as counting slows every allocation */
+    static final int ALLOCATION_RUNS = 50;
+
+    /**
+     * The code being measured.
+     */
+    public interface Operation {
+        /**
+         * @param run index of the run, counting the warmup and allocation runs, which lets an
+         *            operation pick a different row every time
+         */
+        void run(int run) throws Exception;
+    }
+
+    /**
+     * Measurements of one operation.
+     */
+    public static final class Result {
+        public final String name;
+        /* Latency of each timed run in nanoseconds, sorted */
+        private final long[] mLatencies;
+        private final long mElapsedNanos;
+        private final long mAllocatedBytes;
+
+        Result(String name, long[] latencies, long elapsedNanos, long allocatedBytes) {
+            this.name = name;
+            mLatencies = latencies;
+            mElapsedNanos = elapsedNanos;
+            mAllocatedBytes = allocatedBytes;
+        }
+
+        public int runs() {
+            return mLatencies.length;
+        }
+
+        public long operationsPerSecond() {
+            return mLatencies.length * 1000000000L / Math.max(1, mElapsedNanos);
+        }
+
+        /**
+         * Returns the latency, in microseconds, that the given percent of the runs stayed under.
+         */
+        public long percentileMicros(int percentile) {
+            int index = Math.min(mLatencies.length - 1, mLatencies.length * percentile / 100);
+            return mLatencies[index] / 1000;
+        }
+
+        public long allocatedBytesPerOperation() {
+            return mAllocatedBytes / ALLOCATION_RUNS;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + operationsPerSecond() + " ops/s, p50=" + percentileMicros(50)
+                    + "us p95=" + percentileMicros(95) + "us p99=" + percentileMicros(99)
+                    + "us, " + allocatedBytesPerOperation() + " B/op";
+        }
+    }
+
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * Returns the journal sizes to benchmark at.
+     */
+    public static int[] rowCounts() {
+        String argument = InstrumentationRegistry.getArguments().getString(ARGUMENT_ROWS, DEFAULT_ROWS);
+        String[] parts = argument.split(",");
+        int[] counts = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            counts[i] = Integer.parseInt(parts[i].trim());
+        }
+        return counts;
+    }
+
+    /**
+     * Returns how many times {@link #measure} calls the operation, for operations that need
+     * that many distinct rows to work on.
+     */
+    public static int totalRuns(int warmups, int iterations) {
+        return warmups + iterations + ALLOCATION_RUNS;
+    }
+
+    /**
+     * Run the operation {@code warmups} times untimed, then {@code iterations} times timed,
+     * then {@link #ALLOCATION_RUNS} times counting the bytes allocated by this thread.
+     */
+    @SuppressWarnings("deprecation")
+    public static Result measure(String name, int warmups, int iterations, Operation operation)
+            throws Exception {
+        int run = 0;
+        for (int i = 0; i < warmups; i++) {
+            operation.run(run++);
+        }
+
+        long[] latencies = new long[iterations];
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            long before = System.nanoTime();
+            operation.run(run++);
+            latencies[i] = System.nanoTime() - before;
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+
+        // The thread allocation counters are deprecated but remain the only per-thread count
+        // available down to API 18
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        try {
+            for (int i = 0; i < ALLOCATION_RUNS; i++) {
+                operation.run(run++);
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        return new Result(name, latencies, elapsed, Debug.getThreadAllocSize());
+    }
+
+    /**
+     * Log the result and send it as instrumentation status.
+     */
+    public static void report(Result result) {
+        Log.i(TAG, result.toString());
+        Bundle status = new Bundle();
+        status.putString(result.name, result.toString());
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+    }
+}
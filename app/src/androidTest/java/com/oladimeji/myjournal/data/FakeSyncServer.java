@@ -0,0 +1,74 @@
+package com.oladimeji.myjournal.data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-process remote store for testing {@link SyncEngine}, with no network. It keeps one
+ * version of each thought and a change feed, and settles concurrent versions the same way the
+ * engine does.
+ */
+public class FakeSyncServer implements SyncTransport {
+
+    private final Map<String, SyncRecord> mRecords = new HashMap<>();
+    private final List<SyncRecord> mFeed = new ArrayList<>();
+    private int mFailures;
+
+    /**
+     * Make the next requests fail as if the network was down.
+     */
+    public synchronized void failNext(int requests) {
+        mFailures = requests;
+    }
+
+    public synchronized SyncRecord get(String syncId) {
+        return mRecords.get(syncId);
+    }
+
+    @Override
+    public synchronized void push(List<SyncRecord> records) throws IOException {
+        checkNetwork();
+        for (SyncRecord record : records) {
+            SyncRecord stored = mRecords.get(record.syncId);
+            if (stored == null) {
+                store(record);
+                continue;
+            }
+            switch (record.versionVector.compareTo(stored.versionVector)) {
+                case AFTER:
+                    store(record);
+                    break;
+                case CONCURRENT:
+                    VersionVector merged = record.versionVector.merge(stored.versionVector);
+                    store((record.winsOver(stored) ? record : stored).withVersionVector(merged));
+                    break;
+                default:
+                    // Already has this version or a later one
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public synchronized Page pull(String cursor, int limit) throws IOException {
+        checkNetwork();
+        int from = cursor == null ? 0 : Integer.parseInt(cursor);
+        int to = Math.min(mFeed.size(), from + limit);
+        return new Page(new ArrayList<>(mFeed.subList(from, to)), String.valueOf(to), to < mFeed.size());
+    }
+
+    private void store(SyncRecord record) {
+        mRecords.put(record.syncId, record);
+        mFeed.add(record);
+    }
+
+    private void checkNetwork() throws IOException {
+        if (mFailures > 0) {
+            mFailures--;
+            throw new IOException("Network is down");
+        }
+    }
+}
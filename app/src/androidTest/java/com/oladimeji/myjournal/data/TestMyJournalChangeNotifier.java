@@ -0,0 +1,93 @@
+package com.oladimeji.myjournal.data;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class TestMyJournalChangeNotifier {
+
+    /* Long enough for every change of a test to fall in the same window */
+    private static final long WINDOW_MILLIS = 300;
+
+    private final List<MyJournalChangeNotifier.ChangeSet> mReceived =
+            Collections.synchronizedList(new ArrayList<MyJournalChangeNotifier.ChangeSet>());
+
+    private final MyJournalChangeNotifier.ChangeListener mListener = new MyJournalChangeNotifier.ChangeListener() {
+        @Override
+        public void onJournalChanged(MyJournalChangeNotifier.ChangeSet changes) {
+            mReceived.add(changes);
+        }
+    };
+
+    private MyJournalChangeNotifier mNotifier;
+
+    @Before
+    public void setUp() {
+        mNotifier = new MyJournalChangeNotifier(
+                InstrumentationRegistry.getTargetContext().getContentResolver(), WINDOW_MILLIS);
+        MyJournalChangeNotifier.addListener(mListener);
+    }
+
+    @After
+    public void tearDown() {
+        MyJournalChangeNotifier.removeListener(mListener);
+    }
+
+    /**
+     * Changes made within one window reach listeners as a single change set.
+     */
+    @Test
+    public void testCoalescesItemChanges() throws Exception {
+        mNotifier.notifyItem(3);
+        mNotifier.notifyItem(1);
+        mNotifier.notifyItems(new long[]{3, 2, 99}, 2);
+
+        MyJournalChangeNotifier.ChangeSet changes = awaitSingleChangeSet();
+        assertFalse(changes.isWholeTable());
+        assertTrue(Arrays.equals(new long[]{1, 2, 3}, changes.getIds()));
+        assertFalse(changes.contains(99));
+    }
+
+    /**
+     * A change to the whole table absorbs the item changes of its window.
+     */
+    @Test
+    public void testTableChangeAbsorbsItems() throws Exception {
+        mNotifier.notifyItem(1);
+        mNotifier.notifyTable();
+        mNotifier.notifyItem(2);
+
+        MyJournalChangeNotifier.ChangeSet changes = awaitSingleChangeSet();
+        assertTrue(changes.isWholeTable());
+        assertTrue(changes.contains(42));
+    }
+
+    /**
+     * Wait for a change set, then for another window to check that no second one follows.
+     */
+    private MyJournalChangeNotifier.ChangeSet awaitSingleChangeSet() throws Exception {
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return !mReceived.isEmpty();
+            }
+        }.run();
+        Thread.sleep(WINDOW_MILLIS * 2);
+        assertEquals(1, mReceived.size());
+        return mReceived.get(0);
+    }
+}
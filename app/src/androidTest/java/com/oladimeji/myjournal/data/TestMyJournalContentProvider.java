@@ -11,9 +11,11 @@ import android.content.pm.ProviderInfo;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.os.Bundle;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -27,6 +29,9 @@ public class TestMyJournalContentProvider {
     /* Context used to access various parts of the system */
     private final Context mContext = InstrumentationRegistry.getTargetContext();
 
+    /* The user whose journal the provider had open, switched back to after the test */
+    private String mPreviousUserId;
+
     /**
      * Because I annotate this method with the @Before annotation, this method will be called
      * before every single method with an @Test annotation. We want to start each test clean, so we
@@ -34,12 +39,18 @@ public class TestMyJournalContentProvider {
      */
     @Before
     public void setUp() {
+        mPreviousUserId = TestUtilities.useDefaultJournal(mContext);
         /* Use MyJournalDbHelper to get access to a writable database */
         MyJournalDbHelper dbHelper = new MyJournalDbHelper(mContext);
         SQLiteDatabase database = dbHelper.getWritableDatabase();
         database.delete(MyJournalContract.MyJournalEntry.TABLE_NAME, null, null);
     }
 
+    @After
+    public void tearDown() {
+        TestUtilities.switchUser(mContext, mPreviousUserId);
+    }
+
     /**
      * This test checks to make sure that the content provider is registered correctly in the
      * AndroidManifest file. If it fails, you should check the AndroidManifest to see if you've
@@ -203,6 +214,421 @@ public class TestMyJournalContentProvider {
     }
 
 
+    /**
+     * Inserts more rows than fit in a page, then tests that pages returned by the provider are
+     * bounded by the limit and continue right after the last _id of the previous page.
+     */
+    @Test
+    public void testQueryPage() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        for (int i = 0; i < 5; i++) {
+            ContentValues myJournalValues = new ContentValues();
+            myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+            myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+            myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "Thought " + i);
+            contentResolver.insert(MyJournalContract.MyJournalEntry.CONTENT_URI, myJournalValues);
+        }
+
+        /* First page, starting before every _id */
+        Cursor firstPage = contentResolver.query(
+                MyJournalContract.MyJournalEntry.buildPageUri(0, 3), null, null, null, null);
+        assertTrue("Page query failed to return a valid Cursor", firstPage != null);
+        assertEquals("First page is not bounded by its limit", 3, firstPage.getCount());
+        firstPage.moveToLast();
+        long lastId = firstPage.getLong(firstPage.getColumnIndex(MyJournalContract.MyJournalEntry._ID));
+        firstPage.close();
+
+        /* Second page, keyed on the last _id of the first one */
+        Cursor secondPage = contentResolver.query(
+                MyJournalContract.MyJournalEntry.buildPageUri(lastId, 3), null, null, null, null);
+        assertTrue("Page query failed to return a valid Cursor", secondPage != null);
+        assertEquals("Second page should hold the remaining rows", 2, secondPage.getCount());
+        secondPage.moveToFirst();
+        assertTrue("Second page does not start after the first one",
+                secondPage.getLong(secondPage.getColumnIndex(MyJournalContract.MyJournalEntry._ID)) > lastId);
+        secondPage.close();
+    }
+
+
+    /**
+     * Inserts thoughts, then tests that a search returns only the thoughts holding every word,
+     * with a snippet highlighting the match.
+     */
+    @Test
+    public void testSearch() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        String[] thoughts = {"A long walk on the beach", "Beach trip with friends", "Rainy day at home"};
+        for (String thought : thoughts) {
+            ContentValues myJournalValues = new ContentValues();
+            myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+            myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+            myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, thought);
+            contentResolver.insert(MyJournalContract.MyJournalEntry.CONTENT_URI, myJournalValues);
+        }
+
+        Cursor beach = contentResolver.query(
+                MyJournalContract.MyJournalEntry.buildSearchUri("beach", 10), null, null, null, null);
+        assertTrue("Search failed to return a valid Cursor", beach != null);
+        assertEquals("Search should match both beach thoughts", 2, beach.getCount());
+        beach.moveToFirst();
+        String snippet = beach.getString(beach.getColumnIndex(MyJournalContract.MyJournalEntry.COLUMN_SEARCH_SNIPPET));
+        assertTrue("Snippet should highlight the match", snippet.contains("<b>"));
+        beach.close();
+
+        Cursor beachTrip = contentResolver.query(
+                MyJournalContract.MyJournalEntry.buildSearchUri("beach trip", 10), null, null, null, null);
+        assertEquals("Every word should be required", 1, beachTrip.getCount());
+        beachTrip.close();
+
+        /* Only the best matches are returned, most relevant first */
+        String[] ranked = {"sand sand sand sand", "sand sand sand shell", "sand sand shell shell",
+                "sand shell shell shell"};
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ContentValues myJournalValues = new ContentValues();
+            myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+            myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+            myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, ranked[i]);
+            contentResolver.insert(MyJournalContract.MyJournalEntry.CONTENT_URI, myJournalValues);
+        }
+        Cursor sand = contentResolver.query(
+                MyJournalContract.MyJournalEntry.buildSearchUri("sand", 2), null, null, null, null);
+        assertEquals("Search is not bounded by its limit", 2, sand.getCount());
+        for (int i = 0; i < 2; i++) {
+            sand.moveToPosition(i);
+            assertEquals("Matches out of order", ranked[i].replace("sand", "<b>sand</b>"), sand.getString(
+                    sand.getColumnIndex(MyJournalContract.MyJournalEntry.COLUMN_SEARCH_SNIPPET)));
+        }
+        sand.close();
+    }
+
+
+    /**
+     * Tests that reading the same thought twice is served from the row cache the second time,
+     * that a read of every column bypasses it, and that an update is visible on the next read.
+     */
+    @Test
+    public void testQuerySingleThoughtCached() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        ContentValues myJournalValues = new ContentValues();
+        myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+        myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+        myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "My thinking");
+        Uri thoughtUri = contentResolver.insert(MyJournalContract.MyJournalEntry.CONTENT_URI, myJournalValues);
+
+        contentResolver.query(thoughtUri, ThoughtCache.COLUMNS, null, null, null).close();
+        Bundle before = contentResolver.call(MyJournalContract.MyJournalEntry.CONTENT_URI,
+                MyJournalContract.METHOD_GET_CACHE_STATS, null, null);
+        contentResolver.query(thoughtUri, ThoughtCache.COLUMNS, null, null, null).close();
+        Bundle after = contentResolver.call(MyJournalContract.MyJournalEntry.CONTENT_URI,
+                MyJournalContract.METHOD_GET_CACHE_STATS, null, null);
+        assertEquals("Second read should hit the cache",
+                before.getInt(MyJournalContract.KEY_CACHE_HITS) + 1, after.getInt(MyJournalContract.KEY_CACHE_HITS));
+
+        // A null projection is every column, which the cache does not hold
+        Cursor everything = contentResolver.query(thoughtUri, null, null, null, null);
+        assertTrue("A null projection should return the columns the cache does not keep",
+                everything.getColumnIndex(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_WORD_COUNT) >= 0);
+        everything.close();
+        Bundle uncached = contentResolver.call(MyJournalContract.MyJournalEntry.CONTENT_URI,
+                MyJournalContract.METHOD_GET_CACHE_STATS, null, null);
+        assertEquals("A null projection should not be served from the cache",
+                after.getInt(MyJournalContract.KEY_CACHE_HITS), uncached.getInt(MyJournalContract.KEY_CACHE_HITS));
+
+        ContentValues updateValues = new ContentValues();
+        updateValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "Changed my mind");
+        contentResolver.update(thoughtUri, updateValues, null, null);
+        Cursor updated = contentResolver.query(thoughtUri, ThoughtCache.COLUMNS, null, null, null);
+        updated.moveToFirst();
+        assertEquals("Update should invalidate the cached thought", "Changed my mind",
+                updated.getString(updated.getColumnIndex(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT)));
+        updated.close();
+    }
+
+    /**
+     * Each user sees only the thoughts of their own journal, and switching back to a user
+     * finds their thoughts where they were.
+     */
+    @Test
+    public void testSwitchUser() {
+        // Keep the shared journal the other tests use out of the users' journals
+        mContext.getSharedPreferences(MyJournalContentProvider.PREFERENCES_NAME, Context.MODE_PRIVATE).edit()
+                .putBoolean(MyJournalContentProvider.PREFERENCE_LEGACY_ADOPTED, true).commit();
+        String[] users = {"test_user_first", "test_user_second"};
+        for (String user : users) {
+            mContext.deleteDatabase(MyJournalDbHelper.databaseName(user));
+        }
+
+        ContentResolver contentResolver = mContext.getContentResolver();
+        Uri uri = MyJournalContract.MyJournalEntry.CONTENT_URI;
+        ContentValues myJournalValues = new ContentValues();
+        myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+        myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+        myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "My thinking");
+        try {
+            contentResolver.call(uri, MyJournalContract.METHOD_SWITCH_USER, users[0], null);
+            contentResolver.insert(uri, myJournalValues);
+            assertEquals(1, countThoughts(contentResolver));
+
+            contentResolver.call(uri, MyJournalContract.METHOD_SWITCH_USER, users[1], null);
+            assertEquals("Another user should not see the thought", 0, countThoughts(contentResolver));
+
+            contentResolver.call(uri, MyJournalContract.METHOD_SWITCH_USER, users[0], null);
+            assertEquals(1, countThoughts(contentResolver));
+        } finally {
+            contentResolver.call(uri, MyJournalContract.METHOD_SWITCH_USER, null, null);
+        }
+        assertEquals(0, countThoughts(contentResolver));
+    }
+
+    /**
+     * Every edit adds a revision, and any revision can be rebuilt, across full copies.
+     */
+    @Test
+    public void testRevisions() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        String original = "My thinking";
+        ContentValues values = new ContentValues();
+        values.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+        values.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+        values.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, original);
+        Uri uri = contentResolver.insert(MyJournalContract.MyJournalEntry.CONTENT_URI, values);
+        long id = ContentUris.parseId(uri);
+
+        int edits = MyJournalRevisions.KEYFRAME_INTERVAL * 2 + 3;
+        for (int i = 1; i <= edits; i++) {
+            ContentValues edit = new ContentValues();
+            edit.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, original + " edit " + i);
+            assertEquals(1, contentResolver.update(uri, edit, null, null));
+        }
+        // Writing the same text again is no revision
+        ContentValues unchanged = new ContentValues();
+        unchanged.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, original + " edit " + edits);
+        contentResolver.update(uri, unchanged, null, null);
+
+        Cursor revisions = contentResolver.query(MyJournalContract.RevisionEntry.buildRevisionsUri(id),
+                null, null, null, null);
+        try {
+            assertEquals(edits + 1, revisions.getCount());
+        } finally {
+            revisions.close();
+        }
+        for (int revision : new int[]{0, 1, MyJournalRevisions.KEYFRAME_INTERVAL - 1,
+                MyJournalRevisions.KEYFRAME_INTERVAL, MyJournalRevisions.KEYFRAME_INTERVAL + 1, edits}) {
+            Cursor cursor = contentResolver.query(MyJournalContract.RevisionEntry.buildRevisionUri(id, revision),
+                    null, null, null, null);
+            try {
+                assertTrue("No revision " + revision, cursor.moveToFirst());
+                assertEquals(revision == 0 ? original : original + " edit " + revision, cursor.getString(
+                        cursor.getColumnIndex(MyJournalContract.RevisionEntry.COLUMN_THOUGHT)));
+            } finally {
+                cursor.close();
+            }
+        }
+        Cursor missing = contentResolver.query(MyJournalContract.RevisionEntry.buildRevisionUri(id, edits + 1),
+                null, null, null, null);
+        try {
+            assertEquals(0, missing.getCount());
+        } finally {
+            missing.close();
+        }
+    }
+
+    /**
+     * The calendar counts the thoughts and words of each day and month through inserts, edits,
+     * deletions and restores.
+     */
+    @Test
+    public void testCalendar() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        Uri uri = MyJournalContract.MyJournalEntry.CONTENT_URI;
+        Uri first = insertThought(contentResolver, "6/28/2018", "Went to the beach");
+        insertThought(contentResolver, "6/28/2018", "Rain all day");
+        Uri third = insertThought(contentResolver, "7/1/2018", "New month");
+
+        assertCalendar(contentResolver, MyJournalContract.CalendarEntry.buildDaysUri(20180101, 20190101),
+                new long[][]{{20180628, 2, 7}, {20180701, 1, 2}});
+        assertCalendar(contentResolver, MyJournalContract.CalendarEntry.buildMonthsUri(201801, 201901),
+                new long[][]{{201806, 2, 7}, {201807, 1, 2}});
+        // The bounds are a half-open range of keys
+        assertCalendar(contentResolver, MyJournalContract.CalendarEntry.buildDaysUri(20180629, 20180701),
+                new long[0][]);
+
+        // Editing the text changes the words, editing the date moves the thought
+        ContentValues edit = new ContentValues();
+        edit.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "Went to the beach with friends");
+        contentResolver.update(first, edit, null, null);
+        ContentValues move = new ContentValues();
+        move.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_DATE, "6/30/2018");
+        contentResolver.update(third, move, null, null);
+        assertCalendar(contentResolver, MyJournalContract.CalendarEntry.buildDaysUri(20180101, 20190101),
+                new long[][]{{20180628, 2, 9}, {20180630, 1, 2}});
+        assertCalendar(contentResolver, MyJournalContract.CalendarEntry.buildMonthsUri(201801, 201901),
+                new long[][]{{201806, 3, 11}});
+
+        // Deleted thoughts do not count until they are restored
+        contentResolver.delete(first, null, null);
+        assertCalendar(contentResolver, MyJournalContract.CalendarEntry.buildDaysUri(20180628, 20180629),
+                new long[][]{{20180628, 1, 3}});
+        contentResolver.call(uri, MyJournalContract.METHOD_RESTORE, String.valueOf(ContentUris.parseId(first)), null);
+        assertCalendar(contentResolver, MyJournalContract.CalendarEntry.buildDaysUri(20180628, 20180629),
+                new long[][]{{20180628, 2, 9}});
+
+        contentResolver.delete(uri, null, null);
+        assertCalendar(contentResolver, MyJournalContract.CalendarEntry.CONTENT_URI, new long[0][]);
+    }
+
+    /**
+     * Thoughts are filed under the hashtags of their text as it is inserted and edited, and
+     * can be filtered by several tags at once.
+     */
+    @Test
+    public void testTags() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        Uri beach = insertThought(contentResolver, "6/28/2018", "Sun and sand #Beach #family");
+        Uri work = insertThought(contentResolver, "6/29/2018", "Long meeting #work");
+        insertThought(contentResolver, "6/30/2018", "Picnic with the kids #family");
+
+        assertTagged(contentResolver, MyJournalContract.MyJournalEntry.buildTaggedUri("family"), 2);
+        assertTagged(contentResolver, MyJournalContract.MyJournalEntry.buildTaggedUri("#beach", "FAMILY"), 1);
+        assertTagged(contentResolver, MyJournalContract.MyJournalEntry.buildTaggedUri("beach", "work"), 0);
+        assertTagged(contentResolver, MyJournalContract.MyJournalEntry.buildTaggedUri("unknown"), 0);
+
+        // Editing the text refiles the thought
+        ContentValues edit = new ContentValues();
+        edit.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "Long meeting, then the #beach");
+        contentResolver.update(work, edit, null, null);
+        assertTagged(contentResolver, MyJournalContract.MyJournalEntry.buildTaggedUri("beach"), 2);
+        assertTagged(contentResolver, MyJournalContract.MyJournalEntry.buildTaggedUri("work"), 0);
+
+        // Deleted thoughts are left out of the filters and of the tag list
+        contentResolver.delete(beach, null, null);
+        assertTagged(contentResolver, MyJournalContract.MyJournalEntry.buildTaggedUri("beach"), 1);
+        Cursor tags = contentResolver.query(MyJournalContract.TagEntry.CONTENT_URI, null, null, null, null);
+        try {
+            int nameIndex = tags.getColumnIndexOrThrow(MyJournalContract.TagEntry.COLUMN_NAME);
+            int thoughtsIndex = tags.getColumnIndexOrThrow(MyJournalContract.TagEntry.COLUMN_THOUGHTS);
+            assertEquals(2, tags.getCount());
+            assertTrue(tags.moveToNext());
+            assertEquals("beach", tags.getString(nameIndex));
+            assertEquals(1, tags.getInt(thoughtsIndex));
+            assertTrue(tags.moveToNext());
+            assertEquals("family", tags.getString(nameIndex));
+            assertEquals(1, tags.getInt(thoughtsIndex));
+        } finally {
+            tags.close();
+        }
+
+        try {
+            contentResolver.query(MyJournalContract.MyJournalEntry.buildTaggedUri("two words"),
+                    null, null, null, null);
+            fail("A tag with a space should be rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    private static void assertTagged(ContentResolver contentResolver, Uri taggedUri, int expected) {
+        Cursor cursor = contentResolver.query(taggedUri, null, null, null, null);
+        try {
+            assertEquals(taggedUri.toString(), expected, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private Uri insertThought(ContentResolver contentResolver, String date, String thought) {
+        ContentValues values = new ContentValues();
+        values.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_DATE, date);
+        values.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+        values.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, thought);
+        return contentResolver.insert(MyJournalContract.MyJournalEntry.CONTENT_URI, values);
+    }
+
+    /**
+     * Check the rows of a calendar URI, each expected row being its key, entries and words.
+     */
+    private static void assertCalendar(ContentResolver contentResolver, Uri calendarUri, long[][] expected) {
+        Cursor cursor = contentResolver.query(calendarUri, null, null, null, null);
+        try {
+            assertEquals(calendarUri.toString(), expected.length, cursor.getCount());
+            int entriesIndex = cursor.getColumnIndexOrThrow(MyJournalContract.CalendarEntry.COLUMN_ENTRIES);
+            int wordsIndex = cursor.getColumnIndexOrThrow(MyJournalContract.CalendarEntry.COLUMN_WORDS);
+            for (long[] row : expected) {
+                assertTrue(cursor.moveToNext());
+                assertEquals(row[0], cursor.getLong(cursor.getColumnIndexOrThrow(MyJournalContract.CalendarEntry._ID)));
+                assertEquals(row[1], cursor.getLong(entriesIndex));
+                assertEquals(row[2], cursor.getLong(wordsIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Deleted thoughts disappear from queries, can be restored, and are purged by compaction
+     * once they can no longer be restored.
+     */
+    @Test
+    public void testSoftDeleteRestoreAndCompact() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        Uri uri = MyJournalContract.MyJournalEntry.CONTENT_URI;
+        ContentValues myJournalValues = new ContentValues();
+        myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+        myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+        myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "My thinking");
+        Uri thoughtUri = contentResolver.insert(uri, myJournalValues);
+        String id = String.valueOf(ContentUris.parseId(thoughtUri));
+
+        assertEquals(1, contentResolver.delete(thoughtUri, null, null));
+        assertEquals("Deleted thought should not be queried", 0, countThoughts(contentResolver));
+        contentResolver.call(uri, MyJournalContract.METHOD_RESTORE, id, null);
+        assertEquals(1, countThoughts(contentResolver));
+
+        // Delete again, long enough ago for the thought to be purged
+        contentResolver.delete(thoughtUri, null, null);
+        SQLiteDatabase database = new MyJournalDbHelper(mContext).getWritableDatabase();
+        ContentValues expired = new ContentValues();
+        expired.put(MyJournalContract.MyJournalEntry.COLUMN_DELETED_AT,
+                System.currentTimeMillis() - MyJournalContract.RESTORE_WINDOW_MILLIS - 1);
+        database.update(MyJournalContract.MyJournalEntry.TABLE_NAME, expired, null, null);
+
+        Bundle result = contentResolver.call(uri, MyJournalContract.METHOD_COMPACT, null, null);
+        assertEquals(1, result.getInt(MyJournalContract.KEY_PURGED_ROWS));
+        Cursor rows = database.query(MyJournalContract.MyJournalEntry.TABLE_NAME, null, null, null,
+                null, null, null);
+        assertEquals("Purged thought should be gone from the table", 0, rows.getCount());
+        rows.close();
+    }
+
+    /**
+     * Provider operations show up in the metrics, by operation and kind of URI.
+     */
+    @Test
+    public void testMetrics() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        ContentValues myJournalValues = new ContentValues();
+        myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+        myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+        myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "My thinking");
+        contentResolver.insert(MyJournalContract.MyJournalEntry.CONTENT_URI, myJournalValues);
+        assertEquals(1, countThoughts(contentResolver));
+
+        String metrics = contentResolver.call(MyJournalContract.MyJournalEntry.CONTENT_URI,
+                MyJournalContract.METHOD_GET_METRICS, null, null).getString(MyJournalContract.KEY_METRICS);
+        assertTrue(metrics, metrics.contains("insert thoughts\t"));
+        assertTrue(metrics, metrics.contains("query thoughts\t"));
+    }
+
+    private static int countThoughts(ContentResolver contentResolver) {
+        Cursor cursor = contentResolver.query(MyJournalContract.MyJournalEntry.CONTENT_URI,
+                null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
     //================================================================================
     // Test Delete (for a single item)
     //================================================================================
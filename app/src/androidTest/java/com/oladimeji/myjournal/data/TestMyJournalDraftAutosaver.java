@@ -0,0 +1,137 @@
+package com.oladimeji.myjournal.data;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.oladimeji.myjournal.data.MyJournalContract.DraftEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class TestMyJournalDraftAutosaver {
+
+    private static final long THOUGHT_ID = 42;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final Instrumentation mInstrumentation = InstrumentationRegistry.getInstrumentation();
+
+    private MyJournalDraftAutosaver mAutosaver;
+
+    @Before
+    public void setUp() {
+        mContext.getContentResolver().delete(DraftEntry.buildDraftUri(THOUGHT_ID), null, null);
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAutosaver = new MyJournalDraftAutosaver(mContext.getContentResolver(), THOUGHT_ID);
+            }
+        });
+    }
+
+    /**
+     * A burst of edits is written once, an unchanged draft not at all, and a discarded draft
+     * is gone.
+     */
+    @Test
+    public void testEditsAreDebouncedAndCompared() throws Exception {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAutosaver.onLoaded("6/28/2018", "12:20", "My");
+                StringBuilder thought = new StringBuilder("My");
+                for (int i = 0; i < 100; i++) {
+                    thought.append(" thinking");
+                    mAutosaver.onEdited("6/28/2018", "12:20", thought.toString());
+                }
+            }
+        });
+        awaitWrites(1);
+        assertEquals("My thinking thinking", readDraft().substring(0, 20));
+
+        // Flushing without further edits writes nothing more
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAutosaver.flush();
+            }
+        });
+        Thread.sleep(MyJournalDraftAutosaver.DEBOUNCE_MILLIS + 500);
+        assertEquals(1, mAutosaver.getWriteCount());
+
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAutosaver.discard();
+                mAutosaver.onEdited("6/28/2018", "12:20", "Too late");
+                mAutosaver.flush();
+            }
+        });
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return readDraft() == null;
+            }
+        }.run();
+        assertEquals(1, mAutosaver.getWriteCount());
+    }
+
+    /**
+     * Stopping for a save writes the last edits at once and keeps the draft, until it is
+     * discarded with the save committed.
+     */
+    @Test
+    public void testStoppedDraftIsKeptUntilDiscarded() throws Exception {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAutosaver.onEdited("6/28/2018", "12:20", "Being saved");
+                mAutosaver.stop();
+                mAutosaver.onEdited("6/28/2018", "12:20", "After the save");
+                mAutosaver.flush();
+            }
+        });
+        awaitWrites(1);
+        Thread.sleep(MyJournalDraftAutosaver.DEBOUNCE_MILLIS + 500);
+        assertEquals("Being saved", readDraft());
+        assertEquals(1, mAutosaver.getWriteCount());
+
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAutosaver.discard();
+            }
+        });
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return readDraft() == null;
+            }
+        }.run();
+    }
+
+    private void awaitWrites(final int count) {
+        new PollingCheck((long) (MyJournalDraftAutosaver.DEBOUNCE_MILLIS * 2.5)) {
+            @Override
+            protected boolean check() {
+                return mAutosaver.getWriteCount() >= count;
+            }
+        }.run();
+    }
+
+    private String readDraft() {
+        Cursor cursor = mContext.getContentResolver().query(DraftEntry.buildDraftUri(THOUGHT_ID),
+                new String[]{DraftEntry.COLUMN_THOUGHT}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+}
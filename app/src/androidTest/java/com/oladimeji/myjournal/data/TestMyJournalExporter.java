@@ -0,0 +1,137 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.zip.GZIPInputStream;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class TestMyJournalExporter {
+
+    private static final String TAG = TestMyJournalExporter.class.getSimpleName();
+
+    /* Size of the journal exported by the heap test */
+    private static final int LARGE_JOURNAL_ROWS = 500000;
+
+    /* Most the heap may grow while exporting the large journal */
+    private static final long HEAP_CAP_BYTES = 8 * 1024 * 1024;
+
+    /* Chunks of rows exported between two samples of the heap, each taken after a GC */
+    private static final int CHUNKS_PER_SAMPLE = 20;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    /* The user whose journal the provider had open, switched back to after the test */
+    private String mPreviousUserId;
+
+    private File mExportFile;
+
+    @Before
+    public void setUp() {
+        mPreviousUserId = TestUtilities.useDefaultJournal(mContext);
+        MyJournalDbHelper dbHelper = new MyJournalDbHelper(mContext);
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        database.delete(MyJournalContract.MyJournalEntry.TABLE_NAME, null, null);
+        mExportFile = new File(mContext.getCacheDir(), "export.json.gz");
+    }
+
+    @After
+    public void tearDown() {
+        mExportFile.delete();
+        TestUtilities.switchUser(mContext, mPreviousUserId);
+    }
+
+    /**
+     * Exports a 500k row journal to a gzipped file and checks that the heap never grows by
+     * more than {@link #HEAP_CAP_BYTES} while doing so. The heap is sampled after a GC, so what
+     * the export keeps alive is measured rather than the garbage it left, and the export is
+     * checked to be several times the cap, so an export holding its rows could not pass.
+     */
+    @Test
+    public void testExportLargeJournalUnderHeapCap() throws Exception {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        ContentValues[] chunk = BenchmarkMyJournalInserts.createRows(10000);
+        for (int inserted = 0; inserted < LARGE_JOURNAL_ROWS; inserted += chunk.length) {
+            contentResolver.bulkInsert(MyJournalContract.MyJournalEntry.CONTENT_URI, chunk);
+        }
+
+        final Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        final long baseline = runtime.totalMemory() - runtime.freeMemory();
+        final long[] peak = {baseline};
+
+        long exported = new MyJournalExporter(contentResolver).export(new FileOutputStream(mExportFile),
+                MyJournalExporter.Format.JSON, true, new MyJournalExporter.ProgressListener() {
+                    private int mChunks;
+
+                    @Override
+                    public void onProgress(long rowsWritten) {
+                        if (++mChunks % CHUNKS_PER_SAMPLE == 0) {
+                            runtime.gc();
+                            peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory());
+                        }
+                    }
+                });
+
+        long growth = peak[0] - baseline;
+        Log.i(TAG, "exported " + exported + " rows to " + mExportFile.length()
+                + " bytes, heap grew by at most " + growth + " bytes");
+        assertEquals("Every row should be exported", LARGE_JOURNAL_ROWS, exported);
+        assertTrue("Export used " + growth + " bytes of heap", growth < HEAP_CAP_BYTES);
+
+        long jsonBytes = 0;
+        InputStream json = new GZIPInputStream(new FileInputStream(mExportFile));
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            for (int read; (read = json.read(buffer)) != -1; ) {
+                jsonBytes += read;
+            }
+        } finally {
+            json.close();
+        }
+        assertTrue("Export of " + jsonBytes + " bytes is too small to tell", jsonBytes > 4 * HEAP_CAP_BYTES);
+    }
+
+    /**
+     * Reads a CSV export through the provider pipe and checks fields needing quotes survive.
+     */
+    @Test
+    public void testExportCsvThroughProvider() throws Exception {
+        ContentValues myJournalValues = new ContentValues();
+        myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+        myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+        myJournalValues.put(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "Said \"hi\", then left");
+        mContext.getContentResolver().insert(MyJournalContract.MyJournalEntry.CONTENT_URI, myJournalValues);
+
+        InputStream in = mContext.getContentResolver().openInputStream(
+                MyJournalContract.MyJournalEntry.buildExportUri(MyJournalContract.EXPORT_FORMAT_CSV, false));
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            assertEquals("id,date,time,timestamp,thought", reader.readLine());
+            String row = reader.readLine();
+            assertTrue("Thought should be quoted: " + row, row.endsWith(",\"Said \"\"hi\"\", then left\""));
+            assertEquals(null, reader.readLine());
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+
+import static junit.framework.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class TestMyJournalImporter {
+
+    private static final String TAG = TestMyJournalImporter.class.getSimpleName();
+
+    /* Size of the journal taken through an export and import round trip */
+    private static final int JOURNAL_ROWS = 20000;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    /* The user whose journal the provider had open, switched back to after the test */
+    private String mPreviousUserId;
+
+    private SQLiteDatabase mDatabase;
+    private File mArchive;
+
+    @Before
+    public void setUp() {
+        mPreviousUserId = TestUtilities.useDefaultJournal(mContext);
+        mDatabase = new MyJournalDbHelper(mContext).getWritableDatabase();
+        mDatabase.delete(MyJournalEntry.TABLE_NAME, null, null);
+        mArchive = new File(mContext.getCacheDir(), "import.json.gz");
+    }
+
+    @After
+    public void tearDown() {
+        mArchive.delete();
+        TestUtilities.switchUser(mContext, mPreviousUserId);
+    }
+
+    /**
+     * Exports the journal, clears it and imports the archive back, then imports the same
+     * archive again and checks that nothing is duplicated.
+     */
+    @Test
+    public void testRoundTripSkipsDuplicates() throws Exception {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        ContentValues[] rows = BenchmarkMyJournalInserts.createRows(JOURNAL_ROWS);
+        contentResolver.bulkInsert(MyJournalEntry.CONTENT_URI, rows);
+
+        new MyJournalExporter(contentResolver).export(new FileOutputStream(mArchive),
+                MyJournalExporter.Format.JSON, true, null);
+        mDatabase.delete(MyJournalEntry.TABLE_NAME, null, null);
+
+        MyJournalImporter importer = new MyJournalImporter(contentResolver, 1000);
+        MyJournalImporter.Result first = importer.importFrom(new FileInputStream(mArchive),
+                MyJournalExporter.Format.JSON, true);
+        Log.i(TAG, "first import: " + first);
+        assertEquals(JOURNAL_ROWS, first.rowsRead);
+        assertEquals(JOURNAL_ROWS, first.rowsInserted);
+        assertEquals(JOURNAL_ROWS, countThoughts());
+
+        MyJournalImporter.Result second = importer.importFrom(new FileInputStream(mArchive),
+                MyJournalExporter.Format.JSON, true);
+        Log.i(TAG, "second import: " + second);
+        assertEquals(0, second.rowsInserted);
+        assertEquals(JOURNAL_ROWS, second.rowsSkipped);
+        assertEquals(JOURNAL_ROWS, countThoughts());
+    }
+
+    /**
+     * Imports a CSV archive whose fields hold quotes, commas and line breaks.
+     */
+    @Test
+    public void testImportQuotedCsv() throws Exception {
+        String csv = "id,date,time,timestamp,thought\r\n"
+                + "1,6/28/2018,12:20,,\"Rain, then \"\"sun\"\"\r\nall day\"\r\n"
+                + "2,6/29/2018,8:05,,Quiet\r\n";
+        MyJournalImporter.Result result = new MyJournalImporter(mContext.getContentResolver())
+                .importFrom(new ByteArrayInputStream(csv.getBytes("UTF-8")), MyJournalExporter.Format.CSV, false);
+        assertEquals(2, result.rowsInserted);
+
+        Cursor cursor = mContext.getContentResolver().query(MyJournalEntry.CONTENT_URI,
+                new String[]{MyJournalEntry.COLUMN_JOURNAL_THOUGHT}, null, null, MyJournalEntry._ID);
+        try {
+            cursor.moveToFirst();
+            assertEquals("Rain, then \"sun\"\r\nall day", cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int countThoughts() {
+        Cursor cursor = mDatabase.rawQuery("SELECT COUNT(*) FROM " + MyJournalEntry.TABLE_NAME, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
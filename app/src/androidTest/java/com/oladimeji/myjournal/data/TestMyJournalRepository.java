@@ -0,0 +1,242 @@
+package com.oladimeji.myjournal.data;
+
+import android.app.Instrumentation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class TestMyJournalRepository {
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final Instrumentation mInstrumentation = InstrumentationRegistry.getInstrumentation();
+
+    /* The user whose journal the provider had open, switched back to after the test */
+    private String mPreviousUserId;
+
+    private final List<Cursor> mDelivered = Collections.synchronizedList(new ArrayList<Cursor>());
+
+    private MyJournalRepository mRepository;
+    private MyJournalRepository.Subscription mSubscription;
+
+    @Before
+    public void setUp() {
+        mPreviousUserId = TestUtilities.useDefaultJournal(mContext);
+        new MyJournalDbHelper(mContext).getWritableDatabase().delete(MyJournalEntry.TABLE_NAME, null, null);
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository = new MyJournalRepository(mContext.getContentResolver());
+                mSubscription = mRepository.subscribe(new MyJournalRepository.Observer() {
+                    @Override
+                    public Uri getQueryUri() {
+                        return MyJournalEntry.CONTENT_URI;
+                    }
+
+                    @Override
+                    public String[] getQueryProjection() {
+                        return MyJournalEntry.LIST_PROJECTION;
+                    }
+
+                    @Override
+                    public void onThoughtsChanged(Cursor thoughts) {
+                        mDelivered.add(thoughts);
+                    }
+                });
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.release();
+            }
+        });
+        // The delivered cursors belong to the observer
+        for (Cursor thoughts : mDelivered) {
+            thoughts.close();
+        }
+        TestUtilities.switchUser(mContext, mPreviousUserId);
+    }
+
+    /**
+     * Starting again without any change delivers nothing, while a change delivers new thoughts
+     * once started.
+     */
+    @Test
+    public void testRequeriesOnlyAfterChanges() throws Exception {
+        start();
+        awaitDeliveries(1);
+        assertEquals(0, mDelivered.get(0).getCount());
+
+        stop();
+        start();
+        Thread.sleep(MyJournalChangeNotifier.DEFAULT_WINDOW_MILLIS * 3);
+        assertEquals(1, mDelivered.size());
+
+        // Changes made while stopped are picked up on the next start
+        stop();
+        ContentValues values = new ContentValues();
+        values.put(MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+        values.put(MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+        values.put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "My thinking");
+        mContext.getContentResolver().insert(MyJournalEntry.CONTENT_URI, values);
+        Thread.sleep(MyJournalChangeNotifier.DEFAULT_WINDOW_MILLIS * 3);
+        assertEquals(1, mDelivered.size());
+
+        start();
+        awaitDeliveries(2);
+        assertEquals(1, mDelivered.get(1).getCount());
+    }
+
+    /**
+     * A subscription started while the prefetch runs is sent its thoughts, once.
+     */
+    @Test
+    public void testPrefetchIsDeliveredOnStart() throws Exception {
+        ContentValues values = new ContentValues();
+        values.put(MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+        values.put(MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+        values.put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "My thinking");
+        mContext.getContentResolver().insert(MyJournalEntry.CONTENT_URI, values);
+        Thread.sleep(MyJournalChangeNotifier.DEFAULT_WINDOW_MILLIS * 3);
+
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.prefetch(MyJournalEntry.CONTENT_URI, MyJournalEntry.LIST_PROJECTION);
+                mSubscription.start();
+            }
+        });
+        awaitDeliveries(1);
+        assertEquals(1, mDelivered.get(0).getCount());
+        Thread.sleep(MyJournalChangeNotifier.DEFAULT_WINDOW_MILLIS * 3);
+        assertEquals(1, mDelivered.size());
+    }
+
+    /**
+     * The repository hands its cursors over: one delivered earlier is left open for the
+     * observer to close, even once newer thoughts were delivered.
+     */
+    @Test
+    public void testDeliveredCursorsBelongToTheObserver() throws Exception {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.prefetch(MyJournalEntry.CONTENT_URI, MyJournalEntry.LIST_PROJECTION);
+                mSubscription.start();
+            }
+        });
+        awaitDeliveries(1);
+
+        ContentValues values = new ContentValues();
+        values.put(MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+        values.put(MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+        values.put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "My thinking");
+        mContext.getContentResolver().insert(MyJournalEntry.CONTENT_URI, values);
+        awaitDeliveries(2);
+        assertFalse(mDelivered.get(0).isClosed());
+        assertFalse(mDelivered.get(1).isClosed());
+    }
+
+    /**
+     * Cancelling the signal of a superseded query, as the repository does, stops the query in
+     * SQLite while it runs rather than after it read every row.
+     */
+    @Test
+    public void testQueryCancelledWhileRunning() throws Exception {
+        ContentValues[] thoughts = new ContentValues[100];
+        for (int i = 0; i < thoughts.length; i++) {
+            thoughts[i] = new ContentValues();
+            thoughts[i].put(MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+            thoughts[i].put(MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+            thoughts[i].put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "My thinking " + i);
+        }
+        mContext.getContentResolver().bulkInsert(MyJournalEntry.CONTENT_URI, thoughts);
+
+        // Counting the rows of the table joined with itself five times takes hours
+        final String table = MyJournalEntry.TABLE_NAME;
+        final String slowSelection = "(SELECT COUNT(*) FROM " + table + " a, " + table + " b, " + table + " c, "
+                + table + " d, " + table + " e) >= 0";
+        final CancellationSignal signal = new CancellationSignal();
+        final Throwable[] thrown = new Throwable[1];
+        Thread query = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Cursor cursor = mContext.getContentResolver().query(MyJournalEntry.CONTENT_URI,
+                            new String[]{MyJournalEntry._ID}, slowSelection, null, null, signal);
+                    try {
+                        cursor.getCount();
+                    } finally {
+                        cursor.close();
+                    }
+                } catch (Throwable t) {
+                    thrown[0] = t;
+                }
+            }
+        });
+        query.start();
+        // Let the query get into SQLite before cancelling it
+        Thread.sleep(500);
+        assertTrue(query.isAlive());
+
+        long cancelled = SystemClock.elapsedRealtime();
+        signal.cancel();
+        query.join(5000);
+        assertFalse("The query ran on after being cancelled", query.isAlive());
+        assertTrue("Stopped in " + (SystemClock.elapsedRealtime() - cancelled) + " ms",
+                thrown[0] instanceof OperationCanceledException);
+    }
+
+    private void start() {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mSubscription.start();
+            }
+        });
+    }
+
+    private void stop() {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mSubscription.stop();
+            }
+        });
+    }
+
+    private void awaitDeliveries(final int count) {
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return mDelivered.size() >= count;
+            }
+        }.run();
+    }
+}
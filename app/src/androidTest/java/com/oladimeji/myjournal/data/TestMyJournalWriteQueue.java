@@ -0,0 +1,140 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class TestMyJournalWriteQueue {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final MyJournalWriteQueue mWriteQueue = new MyJournalWriteQueue(mContext.getContentResolver());
+
+    /* The user whose journal the provider had open, switched back to after the test */
+    private String mPreviousUserId;
+
+    @Before
+    public void setUp() {
+        mPreviousUserId = TestUtilities.useDefaultJournal(mContext);
+        new MyJournalDbHelper(mContext).getWritableDatabase().delete(MyJournalEntry.TABLE_NAME, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtilities.switchUser(mContext, mPreviousUserId);
+    }
+
+    /**
+     * Writes queued at once are all committed, each future holding its own result.
+     */
+    @Test
+    public void testWritesAreCommitted() throws Exception {
+        List<MyJournalWriteQueue.WriteFuture> writes = new ArrayList<>();
+        for (int i = 0; i < MyJournalWriteQueue.MAX_GROUP_SIZE + 20; i++) {
+            writes.add(mWriteQueue.insert(MyJournalEntry.CONTENT_URI, thought("Queued thought " + i)));
+        }
+        for (MyJournalWriteQueue.WriteFuture write : writes) {
+            assertNotNull(write.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).uri);
+        }
+        assertEquals(writes.size(), countThoughts(mContext.getContentResolver()));
+
+        Uri first = writes.get(0).get().uri;
+        ContentValues values = thought("Updated thought");
+        assertEquals(1, (int) mWriteQueue.update(first, values, null, null)
+                .get(TIMEOUT_SECONDS, TimeUnit.SECONDS).count);
+        assertEquals(1, (int) mWriteQueue.delete(first, null, null)
+                .get(TIMEOUT_SECONDS, TimeUnit.SECONDS).count);
+        assertEquals(writes.size() - 1, countThoughts(mContext.getContentResolver()));
+    }
+
+    /**
+     * A write that fails does not fail the writes committed along with it.
+     */
+    @Test
+    public void testFailedWriteIsIsolated() throws Exception {
+        MyJournalWriteQueue.WriteFuture before = mWriteQueue.insert(MyJournalEntry.CONTENT_URI, thought("Before"));
+        MyJournalWriteQueue.WriteFuture failing = mWriteQueue.update(
+                MyJournalEntry.CONTENT_URI.buildUpon().appendPath("unknown").build(), thought("Nowhere"), null, null);
+        MyJournalWriteQueue.WriteFuture after = mWriteQueue.insert(MyJournalEntry.CONTENT_URI, thought("After"));
+
+        assertNotNull(before.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).uri);
+        assertNotNull(after.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).uri);
+        try {
+            failing.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("Updating an unknown URI should fail");
+        } catch (ExecutionException e) {
+            // Expected
+        }
+        assertEquals(2, countThoughts(mContext.getContentResolver()));
+    }
+
+    /**
+     * A cancelled write is never made, and one that cannot be cancelled any more is committed.
+     */
+    @Test
+    public void testCancelledWriteIsNotCommitted() throws Exception {
+        List<MyJournalWriteQueue.WriteFuture> writes = new ArrayList<>();
+        for (int i = 0; i < MyJournalWriteQueue.MAX_GROUP_SIZE * 3; i++) {
+            writes.add(mWriteQueue.insert(MyJournalEntry.CONTENT_URI, thought("Queued thought " + i)));
+        }
+        // The last writes are likely still queued, the first one is likely taken already
+        int cancelled = 0;
+        for (int i = writes.size() - 1; i >= 0; i -= MyJournalWriteQueue.MAX_GROUP_SIZE / 2) {
+            if (writes.get(i).cancel(false)) {
+                cancelled++;
+            }
+        }
+        for (MyJournalWriteQueue.WriteFuture write : writes) {
+            try {
+                assertNotNull(write.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).uri);
+                assertFalse(write.isCancelled());
+            } catch (CancellationException e) {
+                assertTrue(write.isCancelled());
+            }
+            assertFalse("A done write cannot be cancelled", write.cancel(false));
+        }
+        assertEquals(writes.size() - cancelled, countThoughts(mContext.getContentResolver()));
+    }
+
+    private static ContentValues thought(String text) {
+        ContentValues values = new ContentValues();
+        values.put(MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+        values.put(MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+        values.put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, text);
+        return values;
+    }
+
+    private static int countThoughts(ContentResolver contentResolver) {
+        Cursor cursor = contentResolver.query(MyJournalEntry.CONTENT_URI, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+import com.oladimeji.myjournal.data.MyJournalContract.RevisionEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * Syncs two copies of the journal, as on two devices, through a {@link FakeSyncServer}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestSyncEngine {
+
+    private static final String FIRST_DATABASE = "sync_first.db";
+    private static final String SECOND_DATABASE = "sync_second.db";
+
+    /* Smaller than the journal, so that pushes and pulls take several batches */
+    private static final int BATCH_SIZE = 4;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private FakeSyncServer mServer;
+    private MyJournalDbHelper mFirstHelper;
+    private MyJournalDbHelper mSecondHelper;
+    private SyncEngine mFirst;
+    private SyncEngine mSecond;
+
+    @Before
+    public void setUp() {
+        mContext.deleteDatabase(FIRST_DATABASE);
+        mContext.deleteDatabase(SECOND_DATABASE);
+        mServer = new FakeSyncServer();
+        mFirstHelper = new MyJournalDbHelper(mContext, FIRST_DATABASE, MyJournalDbHelper.Profile.DEFAULT);
+        mSecondHelper = new MyJournalDbHelper(mContext, SECOND_DATABASE, MyJournalDbHelper.Profile.DEFAULT);
+        mFirst = new SyncEngine(mFirstHelper, BATCH_SIZE);
+        mSecond = new SyncEngine(mSecondHelper, BATCH_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        mFirstHelper.close();
+        mSecondHelper.close();
+        mContext.deleteDatabase(FIRST_DATABASE);
+        mContext.deleteDatabase(SECOND_DATABASE);
+    }
+
+    /**
+     * Thoughts written, edited and deleted on one device show up on the other.
+     */
+    @Test
+    public void testChangesReachOtherDevice() throws Exception {
+        SQLiteDatabase first = mFirstHelper.getWritableDatabase();
+        for (int i = 0; i < 10; i++) {
+            insert(first, "Thought " + i);
+        }
+        assertEquals(10, mFirst.sync(mServer).pushed);
+        assertEquals(10, mSecond.sync(mServer).pulled);
+        assertEquals(10, count(mSecondHelper.getWritableDatabase()));
+
+        SQLiteDatabase second = mSecondHelper.getWritableDatabase();
+        String edited = syncIdOf(second, "Thought 3");
+        String deleted = syncIdOf(second, "Thought 4");
+        edit(second, edited, "Thought 3, edited", System.currentTimeMillis());
+        second.delete(MyJournalEntry.TABLE_NAME, MyJournalEntry.COLUMN_SYNC_ID + "=?", new String[]{deleted});
+        assertEquals(2, mSecond.sync(mServer).pushed);
+        mFirst.sync(mServer);
+
+        assertEquals("Thought 3, edited", thoughtOf(first, edited));
+        assertNull(thoughtOf(first, deleted));
+        assertEquals(9, count(first));
+
+        // Nothing changed since, so there is nothing left to push
+        assertEquals(0, mFirst.sync(mServer).pushed);
+        assertEquals(0, mSecond.sync(mServer).pushed);
+    }
+
+    /**
+     * A thought edited on both devices before either synced ends up with the last edit on both.
+     */
+    @Test
+    public void testConcurrentEditsConverge() throws Exception {
+        SQLiteDatabase first = mFirstHelper.getWritableDatabase();
+        SQLiteDatabase second = mSecondHelper.getWritableDatabase();
+        insert(first, "Original");
+        mFirst.sync(mServer);
+        mSecond.sync(mServer);
+        String syncId = syncIdOf(second, "Original");
+
+        long now = System.currentTimeMillis();
+        edit(first, syncId, "Edited on the first device", now + 1000);
+        edit(second, syncId, "Edited on the second device", now);
+
+        mSecond.sync(mServer);
+        SyncEngine.Result result = mFirst.sync(mServer);
+        assertEquals(1, result.conflicts);
+        mSecond.sync(mServer);
+
+        assertEquals("Edited on the first device", thoughtOf(first, syncId));
+        assertEquals("Edited on the first device", thoughtOf(second, syncId));
+        assertEquals("Edited on the first device", mServer.get(syncId).thought);
+    }
+
+    /**
+     * Changes that could not be pushed are pushed by the next sync.
+     */
+    @Test
+    public void testFailedPushIsRetried() throws Exception {
+        insert(mFirstHelper.getWritableDatabase(), "Written offline");
+        mServer.failNext(1);
+        try {
+            mFirst.sync(mServer);
+            fail("The sync should have failed");
+        } catch (IOException expected) {
+            // The thought stays in the change log
+        }
+        assertEquals(1, mFirst.sync(mServer).pushed);
+        mSecond.sync(mServer);
+        assertTrue(syncIdOf(mSecondHelper.getWritableDatabase(), "Written offline") != null);
+    }
+
+    /**
+     * Edits pulled between local ones, and edits made without a revision, are kept in the
+     * revision history of the thought, and every revision can still be rebuilt.
+     */
+    @Test
+    public void testRevisionsAcrossPulls() throws Exception {
+        SQLiteDatabase first = mFirstHelper.getWritableDatabase();
+        SQLiteDatabase second = mSecondHelper.getWritableDatabase();
+        insert(first, "Original");
+        mFirst.sync(mServer);
+        mSecond.sync(mServer);
+        String syncId = syncIdOf(first, "Original");
+        long id = Long.parseLong(queryString(first, MyJournalEntry._ID, MyJournalEntry.COLUMN_SYNC_ID, syncId));
+
+        List<String> history = new ArrayList<>();
+        history.add("Original");
+        int edits = MyJournalRevisions.KEYFRAME_INTERVAL + 3;
+        for (int i = 1; i <= edits; i++) {
+            String local = "Original, edit " + i;
+            editWithRevision(first, syncId, local);
+            history.add(local);
+            if (i % 5 == 0) {
+                // The second device pulls the edit and edits further, then the first pulls that
+                mFirst.sync(mServer);
+                mSecond.sync(mServer);
+                String remote = local + " on the second device";
+                edit(second, syncId, remote, System.currentTimeMillis());
+                mSecond.sync(mServer);
+                mFirst.sync(mServer);
+                assertEquals(remote, thoughtOf(first, syncId));
+                history.add(remote);
+            }
+            if (i == MyJournalRevisions.KEYFRAME_INTERVAL) {
+                // Written around the provider, so no revision is recorded
+                String unrecorded = local + " without a revision";
+                edit(first, syncId, unrecorded, System.currentTimeMillis());
+                history.add(unrecorded);
+            }
+        }
+
+        Cursor revisions = MyJournalRevisions.list(first, id);
+        try {
+            assertEquals(history.size(), revisions.getCount());
+        } finally {
+            revisions.close();
+        }
+        for (int revision = 0; revision < history.size(); revision++) {
+            Cursor cursor = MyJournalRevisions.reconstruct(first, id, revision);
+            try {
+                assertTrue("No revision " + revision, cursor.moveToFirst());
+                assertEquals(history.get(revision),
+                        cursor.getString(cursor.getColumnIndex(RevisionEntry.COLUMN_THOUGHT)));
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    private static void insert(SQLiteDatabase db, String thought) {
+        ContentValues values = new ContentValues();
+        values.put(MyJournalEntry.COLUMN_JOURNAL_DATE, "6/28/2018");
+        values.put(MyJournalEntry.COLUMN_JOURNAL_TIME, "12:20");
+        values.put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, thought);
+        db.insert(MyJournalEntry.TABLE_NAME, null, values);
+    }
+
+    /**
+     * Edit a thought as the provider does, dating the edit.
+     */
+    private static void edit(SQLiteDatabase db, String syncId, String thought, long updatedAt) {
+        ContentValues values = new ContentValues();
+        values.put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, thought);
+        values.put(MyJournalEntry.COLUMN_UPDATED_AT, updatedAt);
+        db.update(MyJournalEntry.TABLE_NAME, values, MyJournalEntry.COLUMN_SYNC_ID + "=?", new String[]{syncId});
+    }
+
+    /**
+     * Edit a thought as the provider does, keeping the edit in its revision history.
+     */
+    private static void editWithRevision(SQLiteDatabase db, String syncId, String thought) {
+        String[] whereArgs = {syncId};
+        Map<Long, MyJournalRevisions.Version> previousVersions = MyJournalRevisions.readVersions(db,
+                MyJournalContentProvider.queryIds(db, MyJournalEntry.COLUMN_SYNC_ID + "=?", whereArgs));
+        edit(db, syncId, thought, System.currentTimeMillis());
+        MyJournalRevisions.recordChanges(db, previousVersions);
+    }
+
+    private static String syncIdOf(SQLiteDatabase db, String thought) {
+        return queryString(db, MyJournalEntry.COLUMN_SYNC_ID, MyJournalEntry.COLUMN_JOURNAL_THOUGHT, thought);
+    }
+
+    private static String thoughtOf(SQLiteDatabase db, String syncId) {
+        return queryString(db, MyJournalEntry.COLUMN_JOURNAL_THOUGHT, MyJournalEntry.COLUMN_SYNC_ID, syncId);
+    }
+
+    private static String queryString(SQLiteDatabase db, String column, String whereColumn, String value) {
+        Cursor cursor = db.query(MyJournalEntry.TABLE_NAME, new String[]{column}, whereColumn + "=?",
+                new String[]{value}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static int count(SQLiteDatabase db) {
+        Cursor cursor = db.query(MyJournalEntry.TABLE_NAME, null, null, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
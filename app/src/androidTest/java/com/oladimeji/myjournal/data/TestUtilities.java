@@ -1,17 +1,40 @@
 package com.oladimeji.myjournal.data;
 
 
+import android.content.Context;
 import android.database.ContentObserver;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.HandlerThread;
 
-class TestUtilities {
+public class TestUtilities {
 
     static TestContentObserver getTestContentObserver() {
         return TestContentObserver.getTestContentObserver();
     }
 
+    /**
+     * Point the provider at the journal used while nobody is signed in, the one tests open
+     * through {@code new MyJournalDbHelper(context)}. The provider otherwise reopens the journal
+     * of the user signed in last.
+     *
+     * @return the user whose journal was open, to switch back to with {@link #switchUser}
+     */
+    public static String useDefaultJournal(Context context) {
+        String userId = context.getSharedPreferences(MyJournalContentProvider.PREFERENCES_NAME,
+                Context.MODE_PRIVATE).getString(MyJournalContentProvider.PREFERENCE_USER_ID, null);
+        switchUser(context, null);
+        return userId;
+    }
+
+    /**
+     * Point the provider at the journal of the given user, or the default one for null.
+     */
+    public static void switchUser(Context context, String userId) {
+        context.getContentResolver().call(MyJournalContract.MyJournalEntry.CONTENT_URI,
+                MyJournalContract.METHOD_SWITCH_USER, userId, null);
+    }
+
     /**
      * Students: The test functions for insert and delete use TestContentObserver to test
      * the ContentObserver callbacks using the PollingCheck class from the Android Compatibility
@@ -4,7 +4,10 @@ import android.app.AlertDialog;
 import android.app.DatePickerDialog;
 import android.app.LoaderManager;
 import android.app.TimePickerDialog;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.CursorLoader;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -14,7 +17,9 @@ import android.net.Uri;
 import android.support.v4.app.NavUtils;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
@@ -25,7 +30,10 @@ import android.widget.TimePicker;
 import android.widget.Toast;
 
 import com.google.firebase.auth.FirebaseAuth;
+import com.oladimeji.myjournal.data.MyJournalContract.DraftEntry;
 import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+import com.oladimeji.myjournal.data.MyJournalDraftAutosaver;
+import com.oladimeji.myjournal.data.MyJournalWriteQueue;
 
 import java.util.Calendar;
 
@@ -37,6 +45,11 @@ public class AddThoughtActivity extends AppCompatActivity implements LoaderManag
      */
     private static final int EXISTING_THOUGHT_LOADER = 0;
 
+    /**
+     * Identifier for the loader of the draft left by a previous editor
+     */
+    private static final int DRAFT_LOADER = 1;
+
     /**
      * Content URI for the existing thought (null if it's a new thought)
      */
@@ -62,6 +75,43 @@ public class AddThoughtActivity extends AppCompatActivity implements LoaderManag
      */
     private boolean mThoughtHasChanged = false;
 
+    /**
+     * Saves the edits as a draft until the thought is saved or they are discarded
+     */
+    private MyJournalDraftAutosaver mAutosaver;
+
+    /**
+     * Whether the fields show a restored draft, which the saved thought must not overwrite
+     */
+    private boolean mDraftRestored;
+
+    /**
+     * Whether the fields are being filled in code, with content already stored, which is no edit
+     */
+    private boolean mFillingFields;
+
+    /**
+     * TextWatcher handing every edit of the fields over to the autosaver
+     */
+    private final TextWatcher mAutosaveWatcher = new TextWatcher() {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            if (mFillingFields) {
+                return;
+            }
+            mAutosaver.onEdited(mDateEditText.getText().toString(), mTimeEditText.getText().toString(),
+                    mThoughtEditText.getText().toString());
+        }
+    };
+
 
 
     //DatePickerDialog Identifier
@@ -109,6 +159,14 @@ public class AddThoughtActivity extends AppCompatActivity implements LoaderManag
             getLoaderManager().initLoader(EXISTING_THOUGHT_LOADER, null, this);
         }
 
+        // Bring back what was typed before the editor was last closed without saving. After a
+        // configuration change the fields restore their own text.
+        long thoughtId = mCurrentThoughtUri == null ? DraftEntry.NEW_THOUGHT_ID : ContentUris.parseId(mCurrentThoughtUri);
+        mAutosaver = new MyJournalDraftAutosaver(getContentResolver(), thoughtId);
+        if (savedInstanceState == null) {
+            getLoaderManager().initLoader(DRAFT_LOADER, null, this);
+        }
+
         // Find all relevant views that we will need to read user input from
         mDateEditText = findViewById(R.id.date_thought);
         mTimeEditText = findViewById(R.id.time_thought);
@@ -172,9 +230,35 @@ public class AddThoughtActivity extends AppCompatActivity implements LoaderManag
         mDateEditText.setOnTouchListener(mTouchListener);
         mTimeEditText.setOnTouchListener(mTouchListener);
         mThoughtEditText.setOnTouchListener(mTouchListener);
+
+        mDateEditText.addTextChangedListener(mAutosaveWatcher);
+        mTimeEditText.addTextChangedListener(mAutosaveWatcher);
+        mThoughtEditText.addTextChangedListener(mAutosaveWatcher);
+    }
+
+    /**
+     * The fields bring back their text after a configuration change. It was saved as a draft when
+     * the previous editor paused, so it is no edit either.
+     */
+    @Override
+    protected void onRestoreInstanceState(Bundle savedInstanceState) {
+        mFillingFields = true;
+        super.onRestoreInstanceState(savedInstanceState);
+        mFillingFields = false;
+        mAutosaver.onLoaded(mDateEditText.getText().toString(), mTimeEditText.getText().toString(),
+                mThoughtEditText.getText().toString());
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // The process may be killed any time from now on, keep the edits
+        mAutosaver.flush();
     }
 
-    //Get user input and save thoughts in the database.
+    //Get user input and save thoughts in the database. The save is handed over to the write
+    //queue, so the activity can close right away, and its outcome is shown once committed.
+    //The draft is only deleted then, it is restored next time if the save failed.
 
     private void saveThought() {
         //Read from input fields
@@ -190,6 +274,7 @@ public class AddThoughtActivity extends AppCompatActivity implements LoaderManag
                 TextUtils.isEmpty(thoughtsString)) {
             // Since no fields were modified, we can return early without creating a new thought.
             // No need to create ContentValues and no need to do any ContentProvider operations.
+            mAutosaver.discard();
             return;
         }
         // Create a ContentValues object where column names are the keys,
@@ -199,39 +284,53 @@ public class AddThoughtActivity extends AppCompatActivity implements LoaderManag
         values.put(MyJournalEntry.COLUMN_JOURNAL_TIME, timeString);
         values.put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, thoughtsString);
 
+        // The toast outlives the activity, so it is shown in the application's context
+        final Context context = getApplicationContext();
+        final MyJournalDraftAutosaver autosaver = mAutosaver;
+        autosaver.stop();
+        MyJournalWriteQueue writeQueue = ((MyJournalApplication) getApplication()).getWriteQueue();
+
         // Determine if this is a new or existing thought by checking if mCurrentThoughtUri is null or not
         if (mCurrentThoughtUri == null) {
             // This is a NEW thought, so insert a new thought into the provider,
-            // returning the content URI for the new thought.
-            Uri newUri = getContentResolver().insert(MyJournalEntry.CONTENT_URI, values);
-
-            // Show a toast message depending on whether or not the insertion was successful.
-            if (newUri == null) {
-                // If the new content URI is null, then there was an error with insertion.
-                Toast.makeText(this, getString(R.string.error_save),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the insertion was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.save_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            // the result holding the content URI for the new thought.
+            writeQueue.insert(MyJournalEntry.CONTENT_URI, values).addCallback(new MyJournalWriteQueue.Callback() {
+                @Override
+                public void onWriteDone(ContentProviderResult result) {
+                    // Show a toast message depending on whether or not the insertion was successful.
+                    if (result == null || result.uri == null) {
+                        // If there is no new content URI, then there was an error with insertion.
+                        Toast.makeText(context, context.getString(R.string.error_save),
+                                Toast.LENGTH_SHORT).show();
+                    } else {
+                        // Otherwise, the insertion was successful and we can display a toast.
+                        autosaver.discard();
+                        Toast.makeText(context, context.getString(R.string.save_successful),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
         } else {
             // Otherwise this is an EXISTING thought, so update the thought with content URI: mCurrentThoughtUri
             // and pass in the new ContentValues. Pass in null for the selection and selection args
             // because mCurrentThoughtUri will already identify the correct row in the database that
             // we want to modify.
-            int rowsAffected = getContentResolver().update(mCurrentThoughtUri, values, null, null);
-
-            // Show a toast message depending on whether or not the update was successful.
-            if (rowsAffected == 0) {
-                // If no rows were affected, then there was an error with the update.
-                Toast.makeText(this, getString(R.string.error_update),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the update was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.update_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            writeQueue.update(mCurrentThoughtUri, values, null, null).addCallback(new MyJournalWriteQueue.Callback() {
+                @Override
+                public void onWriteDone(ContentProviderResult result) {
+                    // Show a toast message depending on whether or not the update was successful.
+                    if (result == null || result.count == null || result.count == 0) {
+                        // If no rows were affected, then there was an error with the update.
+                        Toast.makeText(context, context.getString(R.string.error_update),
+                                Toast.LENGTH_SHORT).show();
+                    } else {
+                        // Otherwise, the update was successful and we can display a toast.
+                        autosaver.discard();
+                        Toast.makeText(context, context.getString(R.string.update_successful),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
         }
     }
 
@@ -248,7 +347,7 @@ public class AddThoughtActivity extends AppCompatActivity implements LoaderManag
         switch (item.getItemId()) {
             // Respond to a click on the "Save" menu option
             case R.id.action_save:
-                //Save Thought
+                //Save Thought, the draft is deleted once the save is committed
                 saveThought();
                 //Exit activity
                 finish();
@@ -258,6 +357,7 @@ public class AddThoughtActivity extends AppCompatActivity implements LoaderManag
                 // If the the hasn't changed, continue with navigating up to parent activity
                 // which is the {@link MainActivity}.
                 if (!mThoughtHasChanged) {
+                    mAutosaver.discard();
                     NavUtils.navigateUpFromSameTask(AddThoughtActivity.this);
                     return true;
                 }
@@ -269,6 +369,7 @@ public class AddThoughtActivity extends AppCompatActivity implements LoaderManag
                             @Override
                             public void onClick(DialogInterface dialogInterface, int i) {
                                 // User clicked "Discard" button, navigate to parent activity.
+                                mAutosaver.discard();
                                 NavUtils.navigateUpFromSameTask(AddThoughtActivity.this);
                             }
                         };
@@ -287,6 +388,7 @@ public class AddThoughtActivity extends AppCompatActivity implements LoaderManag
     public void onBackPressed() {
         // If the thought hasn't changed, continue with handling back button press
         if (!mThoughtHasChanged) {
+            mAutosaver.discard();
             super.onBackPressed();
             return;
         }
@@ -297,6 +399,7 @@ public class AddThoughtActivity extends AppCompatActivity implements LoaderManag
                     @Override
                     public void onClick(DialogInterface dialogInterface, int i) {
                         // User clicked "Discard" button, close the current activity.
+                        mAutosaver.discard();
                         finish();
                     }
                 };
@@ -307,6 +410,10 @@ public class AddThoughtActivity extends AppCompatActivity implements LoaderManag
 
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        if (id == DRAFT_LOADER) {
+            return new CursorLoader(this, mAutosaver.getDraftUri(), new String[]{DraftEntry.COLUMN_DATE,
+                    DraftEntry.COLUMN_TIME, DraftEntry.COLUMN_THOUGHT}, null, null, null);
+        }
         // Since the Addthought shows all pet attributes, define a projection that contains
         // all columns from the thought table
         String[] projection = {MyJournalEntry._ID,
@@ -329,6 +436,14 @@ public class AddThoughtActivity extends AppCompatActivity implements LoaderManag
         if (data == null || data.getCount() < 1) {
             return;
         }
+        if (loader.getId() == DRAFT_LOADER) {
+            restoreDraft(data);
+            return;
+        }
+        // A restored draft is newer than the saved thought
+        if (mDraftRestored) {
+            return;
+        }
         // Proceed with moving to the first row of the cursor and reading data from it
         // (This should be the only row in the cursor)
         if (data.moveToFirst()){
@@ -343,18 +458,45 @@ public class AddThoughtActivity extends AppCompatActivity implements LoaderManag
             String thought = data.getString(thoughtColumnIndex);
 
             //Update the views on the screen with the values from the database
-            mDateEditText.setText(date);
-            mTimeEditText.setText(time);
-            mThoughtEditText.setText(thought);
+            fillFields(date, time, thought);
         }
     }
 
+    /**
+     * Show the draft in the fields, as unsaved changes.
+     */
+    private void restoreDraft(Cursor draft) {
+        if (mDraftRestored || !draft.moveToFirst()) {
+            return;
+        }
+        mDraftRestored = true;
+        String date = draft.getString(draft.getColumnIndex(DraftEntry.COLUMN_DATE));
+        String time = draft.getString(draft.getColumnIndex(DraftEntry.COLUMN_TIME));
+        String thought = draft.getString(draft.getColumnIndex(DraftEntry.COLUMN_THOUGHT));
+        fillFields(date, time, thought);
+        mThoughtHasChanged = true;
+        Toast.makeText(this, R.string.draft_restored, Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Show content already stored in the fields, without the autosaver taking it for an edit.
+     */
+    private void fillFields(String date, String time, String thought) {
+        mFillingFields = true;
+        mDateEditText.setText(date);
+        mTimeEditText.setText(time);
+        mThoughtEditText.setText(thought);
+        mFillingFields = false;
+        mAutosaver.onLoaded(date, time, thought);
+    }
+
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
+        if (loader.getId() == DRAFT_LOADER) {
+            return;
+        }
         // If the loader is invalidated, clear out all the data from the input fields.
-        mDateEditText.setText("");
-        mTimeEditText.setText("");
-        mThoughtEditText.setText("");
+        fillFields("", "", "");
 
     }
 
@@ -1,41 +1,41 @@
 package com.oladimeji.myjournal;
 
-import android.app.LoaderManager;
 import android.content.ContentUris;
 import android.content.Intent;
-import android.content.Loader;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.design.widget.FloatingActionButton;
+import android.support.design.widget.Snackbar;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.support.v7.widget.DividerItemDecoration;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.helper.ItemTouchHelper;
-import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
-import android.support.v4.content.AsyncTaskLoader;
 import android.widget.RelativeLayout;
 import android.widget.Toast;
 
 import com.firebase.ui.auth.AuthUI;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.oladimeji.myjournal.data.MyJournalCompactionService;
+import com.oladimeji.myjournal.data.MyJournalContract;
 import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+import com.oladimeji.myjournal.data.MyJournalRepository;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class MainActivity extends AppCompatActivity implements android.support.v4.app.LoaderManager.LoaderCallbacks<Cursor>, MyJournalAdapter.ListItemClickListener {
+public class MainActivity extends AppCompatActivity implements MyJournalRepository.Observer, MyJournalAdapter.ListItemClickListener {
 
-    // Constants for logging and referring to a unique loader
+    // Constant for logging
     private static final String TAG = MainActivity.class.getSimpleName();
-    private static final int THOUGHT_LOADER_ID = 0;
 
     //SignIn identifier for firebase authentication
 
@@ -45,22 +45,36 @@ public class MainActivity extends AppCompatActivity implements android.support.v
 
     private FirebaseAuth mFirebaseAuth;
     private FirebaseAuth.AuthStateListener mAuthStateListener;
+    private boolean mAuthStateListenerAdded;
+
+    // Adds the auth listener once the first frame is drawn, see onResume
+    private final Runnable mAddAuthStateListener = new Runnable() {
+        @Override
+        public void run() {
+            mFirebaseAuth = ((MyJournalApplication) getApplication()).getFirebaseAuth();
+            mFirebaseAuth.addAuthStateListener(mAuthStateListener);
+            mAuthStateListenerAdded = true;
+        }
+    };
 
     // Member variables for the adapter and RecyclerView
     private MyJournalAdapter mAdapter;
+    private MyJournalPageLoader mPageLoader;
     RecyclerView mRecyclerView;
 
+    // Source of the thoughts, shared through the application
+    private MyJournalRepository mRepository;
+    private MyJournalRepository.Subscription mThoughtsSubscription;
+    private boolean mReportedFullyDrawn;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // Query the first page while the views are inflated, the subscription below waits for it
+        mRepository = ((MyJournalApplication) getApplication()).getRepository();
+        mRepository.prefetch(MyJournalApplication.FIRST_PAGE_URI, MyJournalEntry.LIST_PROJECTION);
         setContentView(R.layout.activity_main);
 
-
-        //Get firebase instance
-        mFirebaseAuth = FirebaseAuth.getInstance();
-
-
-
         // Set the RecyclerView to its corresponding view
         mRecyclerView = findViewById(R.id.recyclerViewThoughts);
         mRecyclerView.addItemDecoration(new DividerItemDecoration(mRecyclerView.getContext(), DividerItemDecoration.VERTICAL));
@@ -89,6 +103,10 @@ public class MainActivity extends AppCompatActivity implements android.support.v
         mAdapter = new MyJournalAdapter(this, this);
         mRecyclerView.setAdapter(mAdapter);
 
+        // Only the first page is loaded up front, the rest follows the scroll position
+        mPageLoader = new MyJournalPageLoader(getContentResolver(), mAdapter,
+                MyJournalContract.DEFAULT_PAGE_SIZE);
+
         /*
          Add a touch helper to the RecyclerView to recognize when a user swipes to delete an item.
          An ItemTouchHelper enables touch behavior (like swipe and move) on each ViewHolder,
@@ -105,20 +123,26 @@ public class MainActivity extends AppCompatActivity implements android.support.v
             public void onSwiped(RecyclerView.ViewHolder viewHolder, int swipeDir) {
                 // Here is where I implemented swipe to delete
 
-                // the URI for the item to delete
+                // the URI for the item to delete, the item id is the _id of the thought
 
-                int id = (int) viewHolder.itemView.getTag();
+                final long id = viewHolder.getItemId();
 
-                // Build appropriate uri with String row id appended
-                String stringId = Integer.toString(id);
-                Uri uri = MyJournalEntry.CONTENT_URI;
-                uri = uri.buildUpon().appendPath(stringId).build();
+                // Build appropriate uri with the row id appended
+                Uri uri = ContentUris.withAppendedId(MyJournalEntry.CONTENT_URI, id);
 
-                //  Delete a single row of data using a ContentResolver
+                //  Delete a single row of data using a ContentResolver, the repository hears
+                //  of the change and re-queries by itself. The thought is only marked as
+                //  deleted, so it can be brought back from the snackbar.
                 getContentResolver().delete(uri, null, null);
-
-                //  Restart the loader to re-query for all thoughts after a deletion
-                getSupportLoaderManager().restartLoader(THOUGHT_LOADER_ID, null, MainActivity.this);
+                Snackbar.make(mRecyclerView, R.string.thought_deleted, Snackbar.LENGTH_LONG)
+                        .setAction(R.string.undo, new View.OnClickListener() {
+                            @Override
+                            public void onClick(View view) {
+                                getContentResolver().call(MyJournalEntry.CONTENT_URI,
+                                        MyJournalContract.METHOD_RESTORE, String.valueOf(id), null);
+                            }
+                        })
+                        .show();
 
             }
         }).attachToRecyclerView(mRecyclerView);
@@ -131,9 +155,11 @@ public class MainActivity extends AppCompatActivity implements android.support.v
             public void onAuthStateChanged(@NonNull FirebaseAuth firebaseAuth) {
                 FirebaseUser user = firebaseAuth.getCurrentUser();
                 if (user != null) {
-                    //User is signed in
-                    mRecyclerView.setAdapter(mAdapter);
+                    //User is signed in, show their own journal
+                    switchJournal(user.getUid());
                 } else {
+                    //Nobody's thoughts stay on screen behind the sign in
+                    switchJournal(null);
                     List<AuthUI.IdpConfig> selectedProviders = new ArrayList<>();
                     selectedProviders.add(new AuthUI.IdpConfig.Builder(AuthUI.GOOGLE_PROVIDER).build());
                     startActivityForResult(
@@ -147,6 +173,9 @@ public class MainActivity extends AppCompatActivity implements android.support.v
             }
         };
 
+        // Purge the deleted thoughts in the background once they can no longer be restored
+        MyJournalCompactionService.schedule(this);
+
         // Setup FAB to open AddThoughtActivity
         FloatingActionButton fab = findViewById(R.id.fab);
         fab.setOnClickListener(new View.OnClickListener() {
@@ -161,32 +190,65 @@ public class MainActivity extends AppCompatActivity implements android.support.v
 
 
 
-        getSupportLoaderManager().initLoader(THOUGHT_LOADER_ID, null, this);
+        // The first page is delivered from the prefetch
+        mThoughtsSubscription = mRepository.subscribe(this);
+
+    }
 
+    /**
+     * The subscription only queries again if the thoughts changed while the activity was in the
+     * background, for instance after new data was inserted through an AddThoughtActivity.
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        mThoughtsSubscription.start();
     }
 
     /**
-     * This method is called after this activity has been paused or restarted.
-     * Often, this is after new data has been inserted through an AddThoughtActivity,
-     * so this restarts the loader to re-query the underlying data for any changes.
+     * The auth listener is added once the first frame is drawn, as Firebase may still be
+     * initializing in the background. The thoughts shown meanwhile are those of the journal the
+     * last user opened, who is still signed in unless they signed out.
      */
     @Override
     protected void onResume() {
         super.onResume();
-
-        // re-queries for all thoughts
-        mFirebaseAuth.addAuthStateListener(mAuthStateListener);
-        getSupportLoaderManager().restartLoader(THOUGHT_LOADER_ID, null, this);
+        mRecyclerView.post(mAddAuthStateListener);
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        if (mAuthStateListener != null) {
+        mRecyclerView.removeCallbacks(mAddAuthStateListener);
+        if (mAuthStateListenerAdded) {
             mFirebaseAuth.removeAuthStateListener(mAuthStateListener);
+            mAuthStateListenerAdded = false;
         }
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        mThoughtsSubscription.stop();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mThoughtsSubscription.close();
+        // The adapter owns the delivered cursors, this closes them
+        mAdapter.swapCursor(null);
+    }
+
+    /**
+     * Open the journal of the given user, or the one used while nobody is signed in. The
+     * repository hears of the switch and loads the thoughts of that journal.
+     */
+    private void switchJournal(String userId) {
+        getContentResolver().call(MyJournalEntry.CONTENT_URI, MyJournalContract.METHOD_SWITCH_USER,
+                userId, null);
+    }
+
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
@@ -203,78 +265,38 @@ public class MainActivity extends AppCompatActivity implements android.support.v
 
 
     /**
-     * Instantiates and returns a new AsyncTaskLoader with the given ID.
-     * This loader will return thought data as a Cursor or null if an error occurs.
-     *
-     * Implements the required callbacks to take care of loading data at all stages of loading.
+     * Returns the first page of thoughts to query. On a reload the page covers every row already
+     * shown, so the diff does not drop the scrolled rows; the page loader takes care of the
+     * following pages.
      */
     @Override
-    public android.support.v4.content.Loader onCreateLoader(int id, Bundle args) {
-        return new AsyncTaskLoader<Cursor>(this) {
-
-            // Initialize a Cursor, this will hold all the thought data
-            Cursor mThoughtData = null;
-
-            // onStartLoading() is called when a loader first starts loading data
-
-            @Override
-            protected void onStartLoading() {
-                if (mThoughtData != null) {
-                    // Delivers any previously loaded data immediately
-                    deliverResult(mThoughtData);
-                } else {
-                    // Force a new load
-                    forceLoad();
-                }
-            }
-
-            // loadInBackground() performs asynchronous loading of data
-            @Override
-            public Cursor loadInBackground() {
-
-                // Will implement to load data
-
-                // Query and load all thought data in the background; sort by date
-                // [Hint] use a try/catch block to catch any errors in loading data
-                try {
-                    return getContentResolver().query(MyJournalEntry.CONTENT_URI,
-                            null,
-                            null,
-                            null,
-                            null);
-
-                } catch (Exception e) {
-                    Log.e(TAG, "Failed to asynchronously load data.");
-                    e.printStackTrace();
-                    return null;
-                }
-            }
-
-            // deliverResult sends the result of the load, a Cursor, to the registered listener
-            public void deliverResult(Cursor data) {
-                mThoughtData = data;
-                super.deliverResult(data);
-            }
-            };
+    public Uri getQueryUri() {
+        int limit = Math.max(MyJournalContract.DEFAULT_PAGE_SIZE, mAdapter.getItemCount());
+        return MyJournalEntry.buildPageUri(0, limit);
     }
 
-
     /**
-     * Called when a previously created loader has finished its load.
-     *
-     * @param loader The Loader that has finished.
-     * @param data The data generated by the Loader.
+     * The list only shows the preview of each thought, the editor reads the full text.
      */
     @Override
-    public void onLoadFinished(android.support.v4.content.Loader<Cursor> loader, Cursor data) {
-        // Update the data that the adapter uses to create ViewHolders
-        mAdapter.swapCursor(data);
+    public String[] getQueryProjection() {
+        return MyJournalEntry.LIST_PROJECTION;
     }
 
+    /**
+     * Called with the thoughts whenever they changed.
+     *
+     * @param thoughts The first page of thoughts.
+     */
     @Override
-    public void onLoaderReset(android.support.v4.content.Loader loader) {
-        mAdapter.swapCursor(null);
-
+    public void onThoughtsChanged(Cursor thoughts) {
+        // Update the data that the adapter uses to create ViewHolders
+        mAdapter.swapCursor(thoughts);
+        if (!mReportedFullyDrawn && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            // Marks the end of the start up in the "Fully drawn" line of the system log
+            reportFullyDrawn();
+            mReportedFullyDrawn = true;
+        }
     }
 
 
@@ -307,6 +329,8 @@ public class MainActivity extends AppCompatActivity implements android.support.v
 
         switch (item.getItemId()) {
             case R.id.action_sign_out:
+                // AuthUI needs Firebase, which may not be initialized yet
+                ((MyJournalApplication) getApplication()).getFirebaseAuth();
                 AuthUI.getInstance().signOut(this);
                 return true;
             default:
@@ -6,8 +6,10 @@ package com.oladimeji.myjournal;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -15,15 +17,48 @@ import android.widget.TextView;
 
 import com.oladimeji.myjournal.data.MyJournalContract;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
 /**
  * This MyJournalAdapter creates and binds ViewHolders, that hold the date, time and thoughts entered,
  * to a RecyclerView to efficiently display data.
  */
-public class MyJournalAdapter extends RecyclerView.Adapter<MyJournalAdapter.MyJournalViewHolder> {
+public class MyJournalAdapter extends RecyclerView.Adapter<MyJournalAdapter.MyJournalViewHolder>
+        implements ThoughtSnapshot.ThoughtSource {
 
    private Cursor mCursor;
    private Context mContext;
 
+    // mCursor is the first page, handed in through swapCursor; these are the pages appended
+    // after it. The adapter owns them all and closes them when they are swapped out.
+    private final List<Cursor> mExtraPages = new ArrayList<>();
+
+    // Index of the shown text, the preview or else the thought, in the pages, resolved once per
+    // swap rather than on every bind
+    private int mThoughtIndex = -1;
+
+    // Loads the following pages as the list is scrolled, may be null
+    private MyJournalPageLoader mPageLoader;
+
+    // The loaded rows, in cursor order. Binding reads from here rather than from the cursor,
+    // and diffs are computed on it so the background thread never touches the bound cursor.
+    private ThoughtSnapshot mSnapshot = ThoughtSnapshot.EMPTY;
+
+    // When true the thought texts are copied into the snapshot while it is built in the
+    // background, instead of being read from the cursor the first time a row is bound
+    private volatile boolean mMaterializeThoughts;
+
+    // Incremented on every swap so that a diff computed for a superseded cursor is dropped
+    private int mSwapGeneration;
+
+    // Diffs are computed off the main thread, one at a time, and dispatched back on it
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
 
 
     // An on-lick handler that i defined to make it easy for editing of thoughts
@@ -43,6 +78,16 @@ public class MyJournalAdapter extends RecyclerView.Adapter<MyJournalAdapter.MyJo
     public MyJournalAdapter(Context mContext, ListItemClickListener listener){
         this.mContext = mContext;
         mOnClickListener = listener;
+        // Item ids are the _id of each thought
+        setHasStableIds(true);
+    }
+
+    /**
+     * Choose whether the whole thought texts are copied into memory with each load, which makes
+     * the first bind of every row cheaper at the cost of holding all the texts.
+     */
+    public void setMaterializeThoughts(boolean materializeThoughts) {
+        mMaterializeThoughts = materializeThoughts;
     }
 
     /**
@@ -61,34 +106,86 @@ public class MyJournalAdapter extends RecyclerView.Adapter<MyJournalAdapter.MyJo
 
     /**
      * Called by the RecyclerView to display data at a specified position in the Cursor.
+     * The values come from the snapshot, so a row that was bound before costs no allocation.
      *
      * @param holder The ViewHolder to bind Cursor data to
      * @param position The position of the data in the Cursor
      */
     @Override
     public void onBindViewHolder(MyJournalViewHolder holder, int position) {
-        // Indices for the _id, date, time, thoughts columns
-        int idIndex = mCursor.getColumnIndex(MyJournalContract.MyJournalEntry._ID);
-        int dateIndex = mCursor.getColumnIndex(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_DATE);
-        int timeIndex = mCursor.getColumnIndex(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_TIME);
-        int thoughtsIndex = mCursor.getColumnIndex(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT);
+        //Set Values
+        holder.dateView.setText(mSnapshot.getDate(position));
+        holder.timeView.setText(mSnapshot.getTime(position));
+        holder.thoughtView.setText(mSnapshot.getThought(position));
 
-        mCursor.moveToPosition(position); // get to the right location in the cursor
+        // Let the page loader fetch ahead of the scroll position
+        if (mPageLoader != null) {
+            mPageLoader.onBind(position, getItemCount());
+        }
+    }
 
-        //Determine the values of the wanted data
-        final int id = mCursor.getInt(idIndex);
-        String date = mCursor.getString(dateIndex);
-        String time = mCursor.getString(timeIndex);
-        String thoughts = mCursor.getString(thoughtsIndex);
+    /**
+     * Returns the _id of the thought at the given position.
+     */
+    @Override
+    public long getItemId(int position) {
+        return mSnapshot.getId(position);
+    }
 
-        //Set Values
-        holder.itemView.setTag(id);
-        holder.dateView.setText(date);
-        holder.timeView.setText(time);
-        holder.thoughtView.setText(thoughts);
+    /**
+     * Read the text shown for a row, its preview or thought, from the page holding it, the first
+     * time the row is shown.
+     */
+    @Override
+    public String loadThought(int position) {
+        if (mCursor == null || mThoughtIndex < 0) {
+            return null;
+        }
+        Cursor page = mCursor;
+        int offset = position;
+        for (int i = 0; offset >= page.getCount() && i < mExtraPages.size(); i++) {
+            offset -= page.getCount();
+            page = mExtraPages.get(i);
+        }
+        if (!page.moveToPosition(offset)) {
+            return null;
+        }
+        return page.getString(mThoughtIndex);
+    }
 
+    /**
+     * Attach the loader that is told about binds in order to load the next page.
+     */
+    void setPageLoader(MyJournalPageLoader pageLoader) {
+        mPageLoader = pageLoader;
+    }
 
+    /**
+     * Returns the _id of the last loaded row, or -1 if nothing is loaded.
+     */
+    long getLastId() {
+        int size = mSnapshot.size();
+        return size == 0 ? -1 : mSnapshot.getId(size - 1);
+    }
 
+    /**
+     * Add a page of rows after the rows already loaded. The adapter owns the page from
+     * now on and closes it when the data is swapped out.
+     *
+     * @param page         the rows of the page
+     * @param pageSnapshot the snapshot of the page, built with {@link #readSnapshot} off the
+     *                     main thread
+     */
+    void appendPage(Cursor page, ThoughtSnapshot pageSnapshot) {
+        if (mCursor == null || page.getCount() == 0) {
+            page.close();
+            return;
+        }
+        int start = getItemCount();
+        mExtraPages.add(page);
+        mSnapshot = mSnapshot.concat(pageSnapshot);
+        mSnapshot.setThoughtSource(this);
+        notifyItemRangeInserted(start, page.getCount());
     }
 
     /**
@@ -96,29 +193,168 @@ public class MyJournalAdapter extends RecyclerView.Adapter<MyJournalAdapter.MyJo
      */
     @Override
     public int getItemCount() {
-        if (mCursor == null) {
-            return 0;
-        }
-        return mCursor.getCount();
+        return mSnapshot.size();
     }
 
     /**
      * When data changes and a re-query occurs, this function swaps the old Cursor
      * with a newly updated Cursor (Cursor c) that is passed in.
+     *
+     * Rather than rebinding the whole list, the rows of the new cursor are compared with the
+     * loaded ones by _id on a background thread, and only the rows that were inserted, removed,
+     * moved or changed are dispatched to the RecyclerView. The old cursor stays bound until
+     * then, and is closed once the changes are dispatched.
+     *
+     * The adapter owns the cursor from now on and closes it when it is swapped out in turn, or
+     * right away if a newer cursor is swapped in before its diff is done; pass null to close the
+     * cursors when the list goes away.
      */
-    public Cursor swapCursor(Cursor c){
+    public void swapCursor(final Cursor c){
         // check if this cursor is the same as the previous cursor (mCursor)
         if (mCursor == c) {
-            return null; // bc nothing has changed
+            return; // bc nothing has changed
+        }
+        int generation = ++mSwapGeneration;
+
+        //With nothing to compare with, or nothing to show, there is no diff to compute
+        if (c == null || mCursor == null) {
+            applySwap(c, c == null ? ThoughtSnapshot.EMPTY : readSnapshot(c), null);
+            return;
         }
-        Cursor temp = mCursor;
+        diffAndSwap(c, generation);
+    }
+
+    /**
+     * Compute the diff between the loaded rows and the new cursor in the background, then swap
+     * the cursor in on the main thread, provided no newer cursor arrived in the meantime.
+     */
+    private void diffAndSwap(final Cursor c, final int generation) {
+        final ThoughtSnapshot oldSnapshot = mSnapshot;
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ThoughtSnapshot newSnapshot = readSnapshot(c);
+                final DiffUtil.DiffResult diff =
+                        DiffUtil.calculateDiff(new SnapshotDiffCallback(oldSnapshot, newSnapshot));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mSwapGeneration) {
+                            // A newer cursor was swapped in meanwhile, it has its own diff
+                            c.close();
+                            return;
+                        }
+                        if (oldSnapshot != mSnapshot) {
+                            // A page was appended while diffing, compare again with it included
+                            diffAndSwap(c, generation);
+                            return;
+                        }
+                        applySwap(c, newSnapshot, diff);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Bind the adapter to the new cursor and tell the RecyclerView what changed, either through
+     * the diff or, without one, as a whole new data set. The old cursor is closed afterwards.
+     */
+    private void applySwap(Cursor c, ThoughtSnapshot snapshot, DiffUtil.DiffResult diff) {
+        Cursor old = mCursor;
         this.mCursor = c; // new cursor value assigned
+        this.mSnapshot = snapshot;
+        mSnapshot.setThoughtSource(this);
+        mThoughtIndex = c == null ? -1 : textColumnIndex(c);
 
-        //check if this is a valid cursor, then update the cursor
-        if (c != null) {
+        // The appended pages belong to the old data, close them
+        for (Cursor page : mExtraPages) {
+            page.close();
+        }
+        mExtraPages.clear();
+        if (mPageLoader != null) {
+            mPageLoader.reset(c == null ? 0 : c.getCount());
+        }
+
+        if (diff != null) {
+            diff.dispatchUpdatesTo(this);
+        } else {
             this.notifyDataSetChanged();
         }
-        return temp;
+        // The rows now come from the new snapshot, nothing reads the old cursor any more
+        if (old != null) {
+            old.close();
+        }
+    }
+
+    /**
+     * Read every row of a cursor into a snapshot. This walks the whole cursor so it belongs on
+     * a background thread, before the cursor is handed to the adapter.
+     */
+    ThoughtSnapshot readSnapshot(Cursor cursor) {
+        // Indices for the _id, date, time, thoughts columns
+        int idIndex = cursor.getColumnIndex(MyJournalContract.MyJournalEntry._ID);
+        int dateIndex = cursor.getColumnIndex(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_DATE);
+        int timeIndex = cursor.getColumnIndex(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_TIME);
+        int thoughtsIndex = textColumnIndex(cursor);
+        // The preview only covers the start of the thought, the content hash covers the rest
+        int hashIndex = cursor.getColumnIndex(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_HASH);
+        boolean materialize = mMaterializeThoughts;
+
+        ThoughtSnapshot.Builder builder = new ThoughtSnapshot.Builder(cursor.getCount());
+        for (int i = 0; cursor.moveToPosition(i); i++) {
+            String date = cursor.getString(dateIndex);
+            String time = cursor.getString(timeIndex);
+            String thought = cursor.getString(thoughtsIndex);
+            String contentHash = hashIndex < 0 ? null : cursor.getString(hashIndex);
+            int hash = Arrays.hashCode(new Object[]{date, time, thought, contentHash});
+            builder.add(cursor.getLong(idIndex), date, time, hash, materialize ? thought : null);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the index of the text shown for each row: the preview when the cursor was queried
+     * with {@link MyJournalContract.MyJournalEntry#LIST_PROJECTION}, the thought otherwise.
+     */
+    private static int textColumnIndex(Cursor cursor) {
+        int previewIndex = cursor.getColumnIndex(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_PREVIEW);
+        return previewIndex >= 0 ? previewIndex
+                : cursor.getColumnIndex(MyJournalContract.MyJournalEntry.COLUMN_JOURNAL_THOUGHT);
+    }
+
+    /**
+     * Compares two snapshots: the same _id is the same item, and an item whose content hash
+     * differs has been edited and needs rebinding.
+     */
+    private static final class SnapshotDiffCallback extends DiffUtil.Callback {
+        private final ThoughtSnapshot mOld;
+        private final ThoughtSnapshot mNew;
+
+        SnapshotDiffCallback(ThoughtSnapshot oldSnapshot, ThoughtSnapshot newSnapshot) {
+            mOld = oldSnapshot;
+            mNew = newSnapshot;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOld.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNew.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOld.getId(oldItemPosition) == mNew.getId(newItemPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOld.getContentHash(oldItemPosition) == mNew.getContentHash(newItemPosition);
+        }
     }
 
     //Inner class for creating ViewHolders
@@ -152,12 +388,10 @@ public class MyJournalAdapter extends RecyclerView.Adapter<MyJournalAdapter.MyJo
         public void onClick(View v) {
 
             int clickedPosition = getAdapterPosition();
-            //int id = mCursor.getColumnIndex(MyJournalContract.MyJournalEntry._ID);
-            //Log.e("Thiss", String.valueOf(id));
-            mCursor.moveToPosition(clickedPosition);
-          int id =   mCursor.getInt(mCursor.getColumnIndex(MyJournalContract.MyJournalEntry._ID));
-            mOnClickListener.onListItemClick(id);
-            Log.e("neww", String.valueOf(id));
+            if (clickedPosition == RecyclerView.NO_POSITION) {
+                return;
+            }
+            mOnClickListener.onListItemClick((int) mSnapshot.getId(clickedPosition));
         }
     }
 }
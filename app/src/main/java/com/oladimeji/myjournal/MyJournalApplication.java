@@ -0,0 +1,85 @@
+package com.oladimeji.myjournal;
+
+import android.app.Application;
+import android.net.Uri;
+import android.os.Process;
+
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.oladimeji.myjournal.data.MyJournalContract;
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+import com.oladimeji.myjournal.data.MyJournalRepository;
+import com.oladimeji.myjournal.data.MyJournalWriteQueue;
+
+/**
+ * Holds what the screens share for the life of the process, and starts the work the first
+ * screen waits for as soon as the process is created:
+ *
+ * - the repository of the thoughts, whose first page {@link MainActivity} prefetches when it
+ *   is created, so the query runs alongside the inflation of its views. The process also starts
+ *   for the content provider, the compaction or a sync, where no list would use the page, so it
+ *   is not queried from here;
+ * - Firebase, whose content provider is removed from the manifest so it does not initialize on
+ *   the main thread before anything else, is initialized on a background thread.
+ */
+public class MyJournalApplication extends Application {
+
+    /* The page MainActivity queries first, see MainActivity#getQueryUri */
+    static final Uri FIRST_PAGE_URI = MyJournalEntry.buildPageUri(0, MyJournalContract.DEFAULT_PAGE_SIZE);
+
+    // Shared by the screens so the thoughts prefetched by one of them outlive it
+    private MyJournalRepository mRepository;
+
+    // Saves handed over by the screens, committed after they close
+    private MyJournalWriteQueue mWriteQueue;
+
+    private FirebaseAuth mFirebaseAuth;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        startRepository();
+        mWriteQueue = new MyJournalWriteQueue(getContentResolver());
+
+        Thread firebaseInit = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                getFirebaseAuth();
+            }
+        }, "MyJournalFirebaseInit");
+        firebaseInit.start();
+    }
+
+    /**
+     * Replace the repository with a new one. Called on the main thread.
+     */
+    void startRepository() {
+        if (mRepository != null) {
+            mRepository.release();
+        }
+        mRepository = new MyJournalRepository(getContentResolver());
+    }
+
+    public MyJournalRepository getRepository() {
+        return mRepository;
+    }
+
+    public MyJournalWriteQueue getWriteQueue() {
+        return mWriteQueue;
+    }
+
+    /**
+     * Returns the Firebase authentication, initializing Firebase first if the background thread
+     * did not get to it yet.
+     */
+    public synchronized FirebaseAuth getFirebaseAuth() {
+        if (mFirebaseAuth == null) {
+            if (FirebaseApp.getApps(this).isEmpty()) {
+                FirebaseApp.initializeApp(this);
+            }
+            mFirebaseAuth = FirebaseAuth.getInstance();
+        }
+        return mFirebaseAuth;
+    }
+}
@@ -0,0 +1,118 @@
+package com.oladimeji.myjournal;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.os.AsyncTask;
+import android.util.Log;
+import android.util.Pair;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+/**
+ * Loads the thoughts list one page at a time for {@link MyJournalAdapter}.
+ * The adapter reports every bind, and once the user scrolls within {@link #PREFETCH_DISTANCE}
+ * rows of the end of what is loaded, the next page is queried in the background using the last
+ * _id in the adapter as the key. This way the first screen only costs one page, however large
+ * the journal grows.
+ */
+public class MyJournalPageLoader {
+
+    private static final String TAG = MyJournalPageLoader.class.getSimpleName();
+
+    /**
+     * How many rows before the end of the loaded data the next page is requested
+     */
+    static final int PREFETCH_DISTANCE = 15;
+
+    private final ContentResolver mContentResolver;
+    private final MyJournalAdapter mAdapter;
+    private final int mPageSize;
+
+    // True while a page query is running, so only one is in flight at a time
+    private boolean mLoading;
+    // True once a page came back short, meaning there is nothing left to load
+    private boolean mExhausted;
+    // Incremented on every reset so that a page started for older data is thrown away
+    private int mGeneration;
+
+    /**
+     * @param contentResolver used to query the pages
+     * @param adapter         the adapter the pages are appended to
+     * @param pageSize        number of rows per page
+     */
+    public MyJournalPageLoader(ContentResolver contentResolver, MyJournalAdapter adapter, int pageSize) {
+        mContentResolver = contentResolver;
+        mAdapter = adapter;
+        mPageSize = pageSize;
+        mAdapter.setPageLoader(this);
+    }
+
+    /**
+     * Called when the adapter has been given a fresh first page.
+     *
+     * @param firstPageCount number of rows in the first page
+     */
+    public void reset(int firstPageCount) {
+        mGeneration++;
+        mLoading = false;
+        mExhausted = firstPageCount < mPageSize;
+    }
+
+    /**
+     * Called by the adapter for every bound position; requests the next page when the bound
+     * position gets close to the end of the loaded rows.
+     */
+    void onBind(int position, int itemCount) {
+        if (position >= itemCount - PREFETCH_DISTANCE) {
+            loadNextPage();
+        }
+    }
+
+    private void loadNextPage() {
+        if (mLoading || mExhausted) {
+            return;
+        }
+        final long afterId = mAdapter.getLastId();
+        if (afterId < 0) {
+            return;
+        }
+        mLoading = true;
+        final int generation = mGeneration;
+
+        new AsyncTask<Void, Void, Pair<Cursor, ThoughtSnapshot>>() {
+            @Override
+            protected Pair<Cursor, ThoughtSnapshot> doInBackground(Void... params) {
+                try {
+                    Cursor page = mContentResolver.query(
+                            MyJournalEntry.buildPageUri(afterId, mPageSize), MyJournalEntry.LIST_PROJECTION,
+                            null, null, null);
+                    if (page == null) {
+                        return null;
+                    }
+                    // Reading the snapshot here also fills the cursor window off the main thread
+                    return Pair.create(page, mAdapter.readSnapshot(page));
+                } catch (Exception e) {
+                    Log.e(TAG, "Failed to load the page after " + afterId, e);
+                    return null;
+                }
+            }
+
+            @Override
+            protected void onPostExecute(Pair<Cursor, ThoughtSnapshot> page) {
+                if (generation != mGeneration) {
+                    // The list was reloaded in the meantime, this page no longer fits
+                    if (page != null) {
+                        page.first.close();
+                    }
+                    return;
+                }
+                mLoading = false;
+                if (page == null) {
+                    return;
+                }
+                mExhausted = page.first.getCount() < mPageSize;
+                mAdapter.appendPage(page.first, page.second);
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+}
@@ -0,0 +1,165 @@
+package com.oladimeji.myjournal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact in-memory copy of the rows shown by {@link MyJournalAdapter}.
+ *
+ * Ids and content hashes are kept in primitive arrays, and the dates and times are interned so
+ * that the many thoughts written on the same day share one String. The thought text, by far the
+ * largest column, is only read when a row is first bound and is then kept, so scrolling back
+ * over rows that were already shown allocates nothing.
+ *
+ * Snapshots are built on a background thread and are then only used from the main thread.
+ */
+final class ThoughtSnapshot {
+
+    /**
+     * Supplies the thought text of a row the first time it is needed.
+     */
+    interface ThoughtSource {
+        String loadThought(int position);
+    }
+
+    static final ThoughtSnapshot EMPTY = new Builder(0).build();
+
+    private final long[] mIds;
+    private final String[] mDates;
+    private final String[] mTimes;
+    private final int[] mHashes;
+    private final String[] mThoughts;
+    private ThoughtSource mThoughtSource;
+
+    private ThoughtSnapshot(long[] ids, String[] dates, String[] times, int[] hashes, String[] thoughts) {
+        mIds = ids;
+        mDates = dates;
+        mTimes = times;
+        mHashes = hashes;
+        mThoughts = thoughts;
+    }
+
+    int size() {
+        return mIds.length;
+    }
+
+    long getId(int position) {
+        return mIds[position];
+    }
+
+    String getDate(int position) {
+        return mDates[position];
+    }
+
+    String getTime(int position) {
+        return mTimes[position];
+    }
+
+    /**
+     * Hash of the displayed columns, used to tell whether a row was edited.
+     */
+    int getContentHash(int position) {
+        return mHashes[position];
+    }
+
+    /**
+     * Returns the thought text of the row, reading it from the {@link ThoughtSource} the first
+     * time and from memory afterwards.
+     */
+    String getThought(int position) {
+        String thought = mThoughts[position];
+        if (thought == null && mThoughtSource != null) {
+            thought = mThoughtSource.loadThought(position);
+            mThoughts[position] = thought;
+        }
+        return thought;
+    }
+
+    /**
+     * Set where the thought text of rows not read yet comes from. Positions passed to the
+     * source are positions in this snapshot.
+     */
+    void setThoughtSource(ThoughtSource thoughtSource) {
+        mThoughtSource = thoughtSource;
+    }
+
+    /**
+     * Returns a snapshot with the rows of this one followed by the rows of the next one.
+     * Texts already read are carried over.
+     */
+    ThoughtSnapshot concat(ThoughtSnapshot next) {
+        int size = mIds.length + next.mIds.length;
+        long[] ids = Arrays.copyOf(mIds, size);
+        System.arraycopy(next.mIds, 0, ids, mIds.length, next.mIds.length);
+        String[] dates = Arrays.copyOf(mDates, size);
+        System.arraycopy(next.mDates, 0, dates, mDates.length, next.mDates.length);
+        String[] times = Arrays.copyOf(mTimes, size);
+        System.arraycopy(next.mTimes, 0, times, mTimes.length, next.mTimes.length);
+        int[] hashes = Arrays.copyOf(mHashes, size);
+        System.arraycopy(next.mHashes, 0, hashes, mHashes.length, next.mHashes.length);
+        String[] thoughts = Arrays.copyOf(mThoughts, size);
+        System.arraycopy(next.mThoughts, 0, thoughts, mThoughts.length, next.mThoughts.length);
+        return new ThoughtSnapshot(ids, dates, times, hashes, thoughts);
+    }
+
+    /**
+     * Collects rows one at a time into a snapshot.
+     */
+    static final class Builder {
+        private final long[] mIds;
+        private final String[] mDates;
+        private final String[] mTimes;
+        private final int[] mHashes;
+        private final String[] mThoughts;
+        private int mSize;
+
+        // Pool used to share equal date and time strings between rows
+        private final Map<String, String> mPool = new HashMap<>();
+
+        /**
+         * @param capacity the exact number of rows that will be added
+         */
+        Builder(int capacity) {
+            mIds = new long[capacity];
+            mDates = new String[capacity];
+            mTimes = new String[capacity];
+            mHashes = new int[capacity];
+            mThoughts = new String[capacity];
+        }
+
+        /**
+         * Add the next row.
+         *
+         * @param thought the text to keep in memory right away, or null to read it on first bind
+         */
+        Builder add(long id, String date, String time, int contentHash, String thought) {
+            mIds[mSize] = id;
+            mDates[mSize] = intern(date);
+            mTimes[mSize] = intern(time);
+            mHashes[mSize] = contentHash;
+            mThoughts[mSize] = thought;
+            mSize++;
+            return this;
+        }
+
+        ThoughtSnapshot build() {
+            if (mSize != mIds.length) {
+                throw new IllegalStateException("Expected " + mIds.length + " rows, got " + mSize);
+            }
+            return new ThoughtSnapshot(mIds, mDates, mTimes, mHashes, mThoughts);
+        }
+
+        private String intern(String value) {
+            if (value == null) {
+                return null;
+            }
+            String pooled = mPool.get(value);
+            if (pooled == null) {
+                mPool.put(value, value);
+                pooled = value;
+            }
+            return pooled;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.oladimeji.myjournal.data;
+
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.CursorWrapper;
+
+/**
+ * Wraps a query result to count, in the metrics of its endpoint, the cursor windows filled
+ * while it is read and the rows it returned. A window is filled by the move that first lands
+ * outside of the rows already in memory, so the time of that move is the time of the fill.
+ */
+class MeteredCursor extends CursorWrapper {
+
+    private final MyJournalMetrics.Endpoint mEndpoint;
+
+    // The database cursor whose window is watched, null for in-memory results
+    private final AbstractWindowedCursor mWindowed;
+    private CursorWindow mWindow;
+    private int mWindowStart = -1;
+    private boolean mFilled;
+
+    MeteredCursor(Cursor cursor, MyJournalMetrics.Endpoint endpoint) {
+        super(cursor);
+        mEndpoint = endpoint;
+        Cursor inner = cursor;
+        while (inner instanceof CursorWrapper) {
+            inner = ((CursorWrapper) inner).getWrappedCursor();
+        }
+        mWindowed = inner instanceof AbstractWindowedCursor ? (AbstractWindowedCursor) inner : null;
+    }
+
+    @Override
+    public int getCount() {
+        long start = System.nanoTime();
+        int count = super.getCount();
+        checkWindow(start);
+        return count;
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        long start = System.nanoTime();
+        boolean moved = super.moveToPosition(position);
+        checkWindow(start);
+        return moved;
+    }
+
+    @Override
+    public boolean move(int offset) {
+        long start = System.nanoTime();
+        boolean moved = super.move(offset);
+        checkWindow(start);
+        return moved;
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        long start = System.nanoTime();
+        boolean moved = super.moveToFirst();
+        checkWindow(start);
+        return moved;
+    }
+
+    @Override
+    public boolean moveToLast() {
+        long start = System.nanoTime();
+        boolean moved = super.moveToLast();
+        checkWindow(start);
+        return moved;
+    }
+
+    @Override
+    public boolean moveToNext() {
+        long start = System.nanoTime();
+        boolean moved = super.moveToNext();
+        checkWindow(start);
+        return moved;
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        long start = System.nanoTime();
+        boolean moved = super.moveToPrevious();
+        checkWindow(start);
+        return moved;
+    }
+
+    @Override
+    public void close() {
+        if (!isClosed()) {
+            // The row count is known once a window was filled, asking earlier would fill one
+            mEndpoint.recordRows(mFilled || mWindowed == null ? super.getCount() : 0);
+        }
+        super.close();
+    }
+
+    private void checkWindow(long start) {
+        if (mWindowed == null) {
+            return;
+        }
+        CursorWindow window = mWindowed.getWindow();
+        if (window != null && (window != mWindow || window.getStartPosition() != mWindowStart)) {
+            mWindow = window;
+            mWindowStart = window.getStartPosition();
+            mFilled = true;
+            mEndpoint.recordWindowFill(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.oladimeji.myjournal.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.oladimeji.myjournal.data.MyJournalContract.CalendarEntry;
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the calendar of the journal, see {@link CalendarEntry}.
+ *
+ * The counts are materialized: triggers on the thoughts table add every live thought to its
+ * day and month when it is inserted or restored, and take it off again when it is edited,
+ * deleted or purged, so the tables are right whichever code path writes the thoughts. A write
+ * costs two primary key updates per table, and reading the calendar never touches the
+ * thoughts.
+ */
+final class MyJournalCalendar {
+
+    /* A day key divided by this is the key of its month */
+    private static final int MONTH_OF_DAY = 100;
+
+    private MyJournalCalendar() {}
+
+    /**
+     * Create the calendar tables and the triggers keeping them up to date. The tables start
+     * empty, see {@link #rebuild} for a journal that already has thoughts.
+     */
+    static void createTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + CalendarEntry.DAYS_TABLE_NAME + " ("
+                + CalendarEntry.COLUMN_DAY + " INTEGER PRIMARY KEY, "
+                + CalendarEntry.COLUMN_ENTRIES + " INTEGER NOT NULL, "
+                + CalendarEntry.COLUMN_WORDS + " INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE " + CalendarEntry.MONTHS_TABLE_NAME + " ("
+                + CalendarEntry.COLUMN_MONTH + " INTEGER PRIMARY KEY, "
+                + CalendarEntry.COLUMN_ENTRIES + " INTEGER NOT NULL, "
+                + CalendarEntry.COLUMN_WORDS + " INTEGER NOT NULL)");
+
+        final String table = MyJournalEntry.TABLE_NAME;
+        db.execSQL("CREATE TRIGGER calendar_after_insert AFTER INSERT ON " + table
+                + " BEGIN " + add("new") + " END");
+        db.execSQL("CREATE TRIGGER calendar_after_delete AFTER DELETE ON " + table
+                + " BEGIN " + remove("old") + " END");
+        // Only the columns the counts depend on, so most updates do not fire it
+        db.execSQL("CREATE TRIGGER calendar_after_update AFTER UPDATE OF "
+                + MyJournalEntry.COLUMN_JOURNAL_DAY + ", " + MyJournalEntry.COLUMN_JOURNAL_WORD_COUNT + ", "
+                + MyJournalEntry.COLUMN_DELETED_AT + " ON " + table
+                + " BEGIN " + remove("old") + " " + add("new") + " END");
+    }
+
+    /**
+     * Count every live thought again, for a journal whose thoughts were written before the
+     * triggers existed.
+     */
+    static void rebuild(SQLiteDatabase db) {
+        db.delete(CalendarEntry.DAYS_TABLE_NAME, null, null);
+        db.delete(CalendarEntry.MONTHS_TABLE_NAME, null, null);
+        db.execSQL("INSERT INTO " + CalendarEntry.DAYS_TABLE_NAME + " SELECT "
+                + MyJournalEntry.COLUMN_JOURNAL_DAY + ", COUNT(*), SUM(COALESCE("
+                + MyJournalEntry.COLUMN_JOURNAL_WORD_COUNT + ", 0)) FROM " + MyJournalEntry.TABLE_NAME
+                + " WHERE " + live("") + " GROUP BY " + MyJournalEntry.COLUMN_JOURNAL_DAY);
+        db.execSQL("INSERT INTO " + CalendarEntry.MONTHS_TABLE_NAME + " SELECT "
+                + CalendarEntry.COLUMN_DAY + "/" + MONTH_OF_DAY + ", SUM(" + CalendarEntry.COLUMN_ENTRIES
+                + "), SUM(" + CalendarEntry.COLUMN_WORDS + ") FROM " + CalendarEntry.DAYS_TABLE_NAME
+                + " GROUP BY " + CalendarEntry.COLUMN_DAY + "/" + MONTH_OF_DAY);
+    }
+
+    /**
+     * Returns the days, or the months, whose key is in [from, to) in order, with the key as
+     * their _id. Either bound can be null.
+     */
+    static Cursor query(SQLiteDatabase db, boolean months, Long from, Long to) {
+        String table = months ? CalendarEntry.MONTHS_TABLE_NAME : CalendarEntry.DAYS_TABLE_NAME;
+        String key = months ? CalendarEntry.COLUMN_MONTH : CalendarEntry.COLUMN_DAY;
+        StringBuilder selection = new StringBuilder();
+        List<String> selectionArgs = new ArrayList<>(2);
+        if (from != null) {
+            selection.append(key).append(">=?");
+            selectionArgs.add(String.valueOf(from));
+        }
+        if (to != null) {
+            selection.append(selection.length() > 0 ? " AND " : "").append(key).append("<?");
+            selectionArgs.add(String.valueOf(to));
+        }
+        // The bounds are a range scan of the primary key
+        return db.query(table, new String[]{key + " AS " + CalendarEntry._ID, key,
+                        CalendarEntry.COLUMN_ENTRIES, CalendarEntry.COLUMN_WORDS},
+                selection.length() > 0 ? selection.toString() : null,
+                selectionArgs.toArray(new String[selectionArgs.size()]), null, null, key);
+    }
+
+    /** SQL adding the thought of the given trigger row to its day and month, if it is live */
+    private static String add(String row) {
+        return count(row, CalendarEntry.DAYS_TABLE_NAME, CalendarEntry.COLUMN_DAY, dayKey(row), "+")
+                + count(row, CalendarEntry.MONTHS_TABLE_NAME, CalendarEntry.COLUMN_MONTH, monthKey(row), "+");
+    }
+
+    /** SQL taking the thought of the given trigger row off its day and month, if it was live */
+    private static String remove(String row) {
+        return count(row, CalendarEntry.DAYS_TABLE_NAME, CalendarEntry.COLUMN_DAY, dayKey(row), "-")
+                + count(row, CalendarEntry.MONTHS_TABLE_NAME, CalendarEntry.COLUMN_MONTH, monthKey(row), "-");
+    }
+
+    private static String count(String row, String table, String key, String keyValue, String sign) {
+        String words = "COALESCE(" + row + "." + MyJournalEntry.COLUMN_JOURNAL_WORD_COUNT + ", 0)";
+        String update = "UPDATE " + table + " SET " + CalendarEntry.COLUMN_ENTRIES + "="
+                + CalendarEntry.COLUMN_ENTRIES + sign + "1, " + CalendarEntry.COLUMN_WORDS + "="
+                + CalendarEntry.COLUMN_WORDS + sign + words + " WHERE " + key + "=" + keyValue
+                + " AND " + live(row + ".") + ";";
+        if ("+".equals(sign)) {
+            // SQLite has no upsert here, the row is created empty first if need be
+            return "INSERT OR IGNORE INTO " + table + " SELECT " + keyValue + ", 0, 0 WHERE "
+                    + live(row + ".") + "; " + update + " ";
+        }
+        // Periods without thoughts are dropped, so the tables only hold active days
+        return update + " DELETE FROM " + table + " WHERE " + key + "=" + keyValue + " AND "
+                + CalendarEntry.COLUMN_ENTRIES + "<=0; ";
+    }
+
+    private static String live(String prefix) {
+        return prefix + MyJournalEntry.COLUMN_DELETED_AT + " IS NULL AND " + prefix
+                + MyJournalEntry.COLUMN_JOURNAL_DAY + " IS NOT NULL";
+    }
+
+    private static String dayKey(String row) {
+        return row + "." + MyJournalEntry.COLUMN_JOURNAL_DAY;
+    }
+
+    private static String monthKey(String row) {
+        return row + "." + MyJournalEntry.COLUMN_JOURNAL_DAY + "/" + MONTH_OF_DAY;
+    }
+}
@@ -0,0 +1,206 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Coalesces the change notifications of {@link MyJournalContentProvider}.
+ *
+ * Changes are collected for a short window starting with the first one, then sent together:
+ * content observers are notified of each changed thought URI, or of the thoughts directory once
+ * when more than {@link #MAX_ITEM_URIS} thoughts changed or when the changed rows are not known,
+ * and the listeners of this process receive the whole window as a single {@link ChangeSet}.
+ * A burst of edits thus costs observers one re-query instead of one per edit.
+ */
+public class MyJournalChangeNotifier {
+
+    /** How long changes are collected before being sent */
+    public static final long DEFAULT_WINDOW_MILLIS = 100;
+
+    /** Most thought URIs notified for one window, above which the directory is notified instead */
+    public static final int MAX_ITEM_URIS = 16;
+
+    /**
+     * Receives the changes of the journal made in this process.
+     */
+    public interface ChangeListener {
+        /**
+         * Called on the main thread with everything that changed during one window.
+         */
+        void onJournalChanged(ChangeSet changes);
+    }
+
+    /**
+     * The thoughts changed during one window.
+     */
+    public static final class ChangeSet {
+        // The changed _ids, sorted, or null when the whole table may have changed
+        private final long[] mIds;
+
+        ChangeSet(long[] ids) {
+            mIds = ids;
+        }
+
+        /**
+         * Returns true when any thought may have changed, for instance after a delete with a
+         * selection. {@link #getIds()} is then empty.
+         */
+        public boolean isWholeTable() {
+            return mIds == null;
+        }
+
+        /**
+         * Returns the sorted _ids of the changed thoughts.
+         */
+        public long[] getIds() {
+            return mIds == null ? new long[0] : mIds.clone();
+        }
+
+        /**
+         * Returns true if the given thought may have changed.
+         */
+        public boolean contains(long id) {
+            return mIds == null || Arrays.binarySearch(mIds, id) >= 0;
+        }
+
+        @Override
+        public String toString() {
+            return mIds == null ? "ChangeSet{all}" : "ChangeSet" + Arrays.toString(mIds);
+        }
+    }
+
+    private static final List<ChangeListener> sListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Register a listener for the changes made to the journal in this process.
+     */
+    public static void addListener(ChangeListener listener) {
+        if (!sListeners.contains(listener)) {
+            sListeners.add(listener);
+        }
+    }
+
+    public static void removeListener(ChangeListener listener) {
+        sListeners.remove(listener);
+    }
+
+    private final ContentResolver mContentResolver;
+    private final long mWindowMillis;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    // Changes of the current window, guarded by this
+    private final Set<Long> mPendingIds = new HashSet<>();
+    private boolean mPendingTable;
+    private boolean mFlushScheduled;
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public MyJournalChangeNotifier(ContentResolver contentResolver, long windowMillis) {
+        mContentResolver = contentResolver;
+        mWindowMillis = windowMillis;
+    }
+
+    /**
+     * Record that one thought changed.
+     */
+    public synchronized void notifyItem(long id) {
+        if (!mPendingTable) {
+            mPendingIds.add(id);
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Record that the first {@code count} thoughts of {@code ids} changed.
+     */
+    public synchronized void notifyItems(long[] ids, int count) {
+        if (!mPendingTable) {
+            for (int i = 0; i < count; i++) {
+                mPendingIds.add(ids[i]);
+            }
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Record that any thought may have changed.
+     */
+    public synchronized void notifyTable() {
+        mPendingTable = true;
+        mPendingIds.clear();
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            mHandler.postDelayed(mFlush, mWindowMillis);
+        }
+    }
+
+    /**
+     * Send the changes collected so far.
+     */
+    void flush() {
+        long[] ids;
+        synchronized (this) {
+            mFlushScheduled = false;
+            mHandler.removeCallbacks(mFlush);
+            if (mPendingTable) {
+                ids = null;
+            } else if (mPendingIds.isEmpty()) {
+                return;
+            } else {
+                ids = new long[mPendingIds.size()];
+                int i = 0;
+                for (Long id : mPendingIds) {
+                    ids[i++] = id;
+                }
+                Arrays.sort(ids);
+            }
+            mPendingTable = false;
+            mPendingIds.clear();
+        }
+
+        if (ids == null || ids.length > MAX_ITEM_URIS) {
+            mContentResolver.notifyChange(MyJournalEntry.CONTENT_URI, null);
+        } else {
+            for (long id : ids) {
+                mContentResolver.notifyChange(ContentUris.withAppendedId(MyJournalEntry.CONTENT_URI, id), null);
+            }
+        }
+
+        final ChangeSet changes = new ChangeSet(ids);
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            dispatch(changes);
+        } else {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    dispatch(changes);
+                }
+            });
+        }
+    }
+
+    private static void dispatch(ChangeSet changes) {
+        for (ChangeListener listener : sListeners) {
+            listener.onJournalChanged(changes);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.oladimeji.myjournal.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+/**
+ * Purges softly deleted thoughts and shrinks the database file. Work is done in small chunks,
+ * each one committed on its own, so writers are never held up for long.
+ */
+final class MyJournalCompaction {
+
+    /** Number of thoughts purged per transaction */
+    static final int PURGE_CHUNK_SIZE = 500;
+
+    /** Number of free pages handed back to the file system per step */
+    static final int VACUUM_CHUNK_PAGES = 256;
+
+    /* Value of PRAGMA auto_vacuum for incremental mode */
+    private static final long AUTO_VACUUM_INCREMENTAL = 2;
+
+    private MyJournalCompaction() {}
+
+    /**
+     * Delete for good the thoughts deleted before the given time. Returns the number purged.
+     */
+    static int purge(SQLiteDatabase db, long deletedBefore) {
+        String selection = MyJournalEntry._ID + " IN (SELECT " + MyJournalEntry._ID + " FROM "
+                + MyJournalEntry.TABLE_NAME + " WHERE " + MyJournalEntry.COLUMN_DELETED_AT + "<? LIMIT "
+                + PURGE_CHUNK_SIZE + ")";
+        String[] selectionArgs = {String.valueOf(deletedBefore)};
+        int purged = 0;
+        int chunk;
+        do {
+            db.beginTransaction();
+            try {
+                // The triggers unindex plain text thoughts and keep tombstones for sync
+                MyJournalContentProvider.unindexCompressedThoughts(db, selection, selectionArgs);
+                chunk = db.delete(MyJournalEntry.TABLE_NAME, selection, selectionArgs);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            purged += chunk;
+        } while (chunk == PURGE_CHUNK_SIZE);
+        return purged;
+    }
+
+    /**
+     * Hand the free pages of the file back to the file system. Returns the number of pages
+     * freed. Files created before incremental vacuum was turned on are converted with one full
+     * VACUUM first.
+     */
+    static long vacuum(SQLiteDatabase db) {
+        long before = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+        if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) != AUTO_VACUUM_INCREMENTAL) {
+            db.execSQL("PRAGMA auto_vacuum=INCREMENTAL");
+            db.execSQL("VACUUM");
+        } else {
+            long freePages = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+            while (freePages > 0) {
+                // Each step of the statement frees one page, reading the cursor runs all of them
+                Cursor steps = db.rawQuery("PRAGMA incremental_vacuum(" + VACUUM_CHUNK_PAGES + ")", null);
+                try {
+                    steps.getCount();
+                } finally {
+                    steps.close();
+                }
+                long left = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+                if (left >= freePages) {
+                    // Nothing could be freed, e.g. while a reader holds the pages
+                    break;
+                }
+                freePages = left;
+            }
+        }
+        return before - DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+    }
+}
@@ -0,0 +1,50 @@
+package com.oladimeji.myjournal.data;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.AsyncTask;
+import android.os.Build;
+
+/**
+ * Runs the daily compaction as a job, on API 21 and later, see
+ * {@link MyJournalCompactionService#schedule}. Jobs run while the app is in the background,
+ * where starting a service from an alarm is refused since API 26.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class MyJournalCompactionJobService extends JobService {
+
+    // The compaction in flight, a job is started on the main thread
+    private AsyncTask<Void, Void, Void> mCompaction;
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        mCompaction = new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... voids) {
+                MyJournalCompactionService.compact(getApplicationContext());
+                return null;
+            }
+
+            @Override
+            protected void onPostExecute(Void result) {
+                mCompaction = null;
+                jobFinished(params, false);
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        return true;
+    }
+
+    /**
+     * Called when the device is no longer idle or charging. The provider call cannot be
+     * interrupted and runs to its end; the job is not retried, the next period comes anyway.
+     */
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        if (mCompaction != null) {
+            mCompaction.cancel(false);
+            mCompaction = null;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,93 @@
+package com.oladimeji.myjournal.data;
+
+import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+/**
+ * Compacts the journal in the background once a day, see {@link MyJournalContract#METHOD_COMPACT}.
+ *
+ * On API 21 and later the compaction is a job of {@link MyJournalCompactionJobService}, run
+ * while the device is idle and charging. This service only runs it from an alarm on the older
+ * versions, which have no JobScheduler; from API 26 on, the alarm could not start it while the
+ * app is in the background.
+ */
+public class MyJournalCompactionService extends IntentService {
+
+    private static final String LOG_TAG = MyJournalCompactionService.class.getSimpleName();
+
+    /* Id of the compaction job, unique within the app */
+    private static final int JOB_ID = 1;
+
+    public MyJournalCompactionService() {
+        super(LOG_TAG);
+    }
+
+    /**
+     * Schedule the daily compaction, unless it already is. Neither the job nor the alarm wakes
+     * the device up, the system runs them along with other work.
+     */
+    public static void schedule(Context context) {
+        Intent intent = new Intent(context, MyJournalCompactionService.class);
+        PendingIntent alarm = PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_NO_CREATE);
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            if (alarm != null) {
+                // Set by an older version of the app, the job replaces it
+                alarmManager.cancel(alarm);
+                alarm.cancel();
+            }
+            scheduleJob(context);
+            return;
+        }
+        if (alarm != null) {
+            return;
+        }
+        PendingIntent operation = PendingIntent.getService(context, 0, intent, 0);
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + AlarmManager.INTERVAL_DAY, AlarmManager.INTERVAL_DAY, operation);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void scheduleJob(Context context) {
+        JobScheduler jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : jobScheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        jobScheduler.schedule(new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, MyJournalCompactionJobService.class))
+                .setPeriodic(AlarmManager.INTERVAL_DAY)
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .build());
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        compact(this);
+    }
+
+    /**
+     * Compact the journal on the current thread, which must not be the main thread.
+     */
+    static void compact(Context context) {
+        Bundle result = context.getContentResolver().call(MyJournalEntry.CONTENT_URI,
+                MyJournalContract.METHOD_COMPACT, null, null);
+        Log.i(LOG_TAG, "Purged " + result.getInt(MyJournalContract.KEY_PURGED_ROWS) + " thoughts, freed "
+                + result.getLong(MyJournalContract.KEY_FREED_PAGES) + " pages");
+    }
+}
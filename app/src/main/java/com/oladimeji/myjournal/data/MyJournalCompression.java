@@ -0,0 +1,81 @@
+package com.oladimeji.myjournal.data;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes the thoughts stored in {@link MyJournalContract.MyJournalEntry#COLUMN_JOURNAL_THOUGHT_BLOB}
+ * and computes their previews.
+ */
+public final class MyJournalCompression {
+
+    /** Number of characters of a thought kept in its preview */
+    public static final int PREVIEW_LENGTH = 200;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private MyJournalCompression() {}
+
+    /**
+     * Returns the thought deflated, or null if compressing does not make it smaller than the
+     * given threshold in bytes.
+     */
+    public static byte[] compress(String thought, int threshold) {
+        byte[] text = thought.getBytes(UTF_8);
+        if (text.length < threshold) {
+            return null;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(text);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(text.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            // Text that does not compress, such as very short or random text, stays as it is
+            return out.size() < text.length ? out.toByteArray() : null;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns the thought stored by {@link #compress}.
+     */
+    public static String decompress(byte[] blob) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blob);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(blob.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && inflater.needsInput()) {
+                    throw new IllegalArgumentException("Truncated compressed thought");
+                }
+                out.write(buffer, 0, length);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed thought", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Returns the first {@link #PREVIEW_LENGTH} characters of the thought, without splitting a
+     * surrogate pair, so it matches substr() in SQLite.
+     */
+    public static String preview(String thought) {
+        if (thought.codePointCount(0, thought.length()) <= PREVIEW_LENGTH) {
+            return thought;
+        }
+        return thought.substring(0, thought.offsetByCodePoints(0, PREVIEW_LENGTH));
+    }
+}
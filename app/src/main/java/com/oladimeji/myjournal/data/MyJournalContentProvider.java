@@ -5,22 +5,59 @@ package com.oladimeji.myjournal.data;
  */
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
+import com.oladimeji.myjournal.R;
+import com.oladimeji.myjournal.data.MyJournalContract.CalendarEntry;
+import com.oladimeji.myjournal.data.MyJournalContract.DraftEntry;
 import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+import com.oladimeji.myjournal.data.MyJournalContract.RevisionEntry;
+import com.oladimeji.myjournal.data.MyJournalContract.TagEntry;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
 /**
  * {@link ContentProvider} for MyJournal app.
  */
 public class MyJournalContentProvider extends ContentProvider {
 
+    /** Tag for the log messages */
+    private static final String LOG_TAG = MyJournalContentProvider.class.getSimpleName();
+
     /**
      * URI matcher code for the content URI for the thoughts table
      */
@@ -29,6 +66,34 @@ public class MyJournalContentProvider extends ContentProvider {
      * URI matcher code for the content URI for a single thought in the thoughts table
      */
     private static final int THOUGHTS_ID = 101;
+    /**
+     * URI matcher code for the content URI for full-text search over the thoughts table
+     */
+    private static final int THOUGHTS_SEARCH = 102;
+    /**
+     * URI matcher code for the content URI streaming an export of the thoughts table
+     */
+    private static final int THOUGHTS_EXPORT = 103;
+    /**
+     * URI matcher code for the content URI for the editor draft of a thought
+     */
+    private static final int DRAFTS_ID = 104;
+    /**
+     * URI matcher code for the content URI listing the revisions of a thought
+     */
+    private static final int THOUGHT_REVISIONS = 105;
+    /**
+     * URI matcher code for the content URI for one revision of a thought
+     */
+    private static final int THOUGHT_REVISIONS_ID = 106;
+    /**
+     * URI matcher code for the content URI for the calendar of the thoughts
+     */
+    private static final int THOUGHTS_CALENDAR = 107;
+    /**
+     * URI matcher code for the content URI for the tags of the thoughts
+     */
+    private static final int TAGS = 108;
 
     /**
      * UriMatcher object to match a content URI to a corresponding code.
@@ -55,10 +120,115 @@ public class MyJournalContentProvider extends ContentProvider {
         //In this case, the # wildcard is used where "#" can be substituted for an integer.
         //for example "contents://com.exmple.android.pets/pets/3" matches
         sUriMatcher.addURI(MyJournalContract.CONTENT_AUTHORITY, MyJournalContract.PATH_JOURNAL + "/#", THOUGHTS_ID);
+
+        //The content URI of the form "content://com.oladimeji.myjournal/thoughts/search" will map
+        //to the integer code {@link #THOUGHTS_SEARCH}. The text to look for is given in the "q"
+        //query parameter.
+        sUriMatcher.addURI(MyJournalContract.CONTENT_AUTHORITY,
+                MyJournalContract.PATH_JOURNAL + "/" + MyJournalContract.PATH_SEARCH, THOUGHTS_SEARCH);
+
+        //The content URI of the form "content://com.oladimeji.myjournal/thoughts/export" will map
+        //to the integer code {@link #THOUGHTS_EXPORT}. It is opened as a file rather than queried.
+        sUriMatcher.addURI(MyJournalContract.CONTENT_AUTHORITY,
+                MyJournalContract.PATH_JOURNAL + "/" + MyJournalContract.PATH_EXPORT, THOUGHTS_EXPORT);
+
+        //The content URI of the form "content://com.oladimeji.myjournal/drafts/#" will map to the
+        //integer code {@link #DRAFTS_ID}, the # being the id of the thought the draft is for.
+        sUriMatcher.addURI(MyJournalContract.CONTENT_AUTHORITY, MyJournalContract.PATH_DRAFTS + "/#", DRAFTS_ID);
+
+        //The content URIs of the form "content://com.oladimeji.myjournal/thoughts/#/revisions"
+        //and ".../revisions/#" map to {@link #THOUGHT_REVISIONS} and {@link #THOUGHT_REVISIONS_ID},
+        //listing the revisions of a thought and rebuilding one of them.
+        sUriMatcher.addURI(MyJournalContract.CONTENT_AUTHORITY,
+                MyJournalContract.PATH_JOURNAL + "/#/" + MyJournalContract.PATH_REVISIONS, THOUGHT_REVISIONS);
+        sUriMatcher.addURI(MyJournalContract.CONTENT_AUTHORITY,
+                MyJournalContract.PATH_JOURNAL + "/#/" + MyJournalContract.PATH_REVISIONS + "/#", THOUGHT_REVISIONS_ID);
+
+        //The content URI of the form "content://com.oladimeji.myjournal/thoughts/calendar" will map
+        //to the integer code {@link #THOUGHTS_CALENDAR}, the counts of thoughts per day or month.
+        sUriMatcher.addURI(MyJournalContract.CONTENT_AUTHORITY,
+                MyJournalContract.PATH_JOURNAL + "/" + MyJournalContract.PATH_CALENDAR, THOUGHTS_CALENDAR);
+
+        //The content URI of the form "content://com.oladimeji.myjournal/tags" will map to the
+        //integer code {@link #TAGS}, the tags of the thoughts.
+        sUriMatcher.addURI(MyJournalContract.CONTENT_AUTHORITY, MyJournalContract.PATH_TAGS, TAGS);
     }
 
-    /*Database helper object*/
-    private MyJournalDbHelper mdbHelper;
+    /** Name of the preferences remembering whose journal is open */
+    static final String PREFERENCES_NAME = "journal_provider";
+    static final String PREFERENCE_USER_ID = "user_id";
+    /** Set once the journal written before there was one per user was given to a user */
+    static final String PREFERENCE_LEGACY_ADOPTED = "legacy_adopted";
+
+    /*Database helper object of the journal of the current user*/
+    private volatile MyJournalDbHelper mdbHelper;
+
+    /*
+     * Helpers of every journal opened since the provider started, by file name. Switching back
+     * to a user reuses their open connections instead of opening the file again.
+     */
+    private final Map<String, MyJournalDbHelper> mHelpers = new HashMap<>();
+
+    /* Connection settings of the journals */
+    private MyJournalDbHelper.Profile mProfile;
+
+    private SharedPreferences mPreferences;
+
+    /* Id of the user whose journal is open, null when nobody is signed in */
+    private String mUserId;
+
+    /* The preview column, falling back to the start of the thought when it was not stored */
+    private static final String PREVIEW_COLUMN = "COALESCE(" + MyJournalEntry.COLUMN_JOURNAL_PREVIEW
+            + ", substr(" + MyJournalEntry.COLUMN_JOURNAL_THOUGHT + ", 1, " + MyJournalCompression.PREVIEW_LENGTH
+            + ")) AS " + MyJournalEntry.COLUMN_JOURNAL_PREVIEW;
+
+    /* Selection of the thoughts that were not deleted, applied to every read and write */
+    private static final String LIVE_SELECTION = MyJournalEntry.COLUMN_DELETED_AT + " IS NULL";
+
+    /* Size in bytes from which thoughts are stored compressed, 0 to never compress */
+    private int mCompressionThreshold;
+
+    /** Number of thoughts kept by the row cache */
+    private static final int THOUGHT_CACHE_SIZE = 64;
+
+    /* Recently read thoughts, serving the single thought queries of the editor */
+    private final ThoughtCache mThoughtCache = new ThoughtCache(THOUGHT_CACHE_SIZE);
+
+    /**
+     * Set while {@link #applyBatch} runs on the current thread. The single operations then leave
+     * the change notification to the batch, which sends one once everything is committed.
+     */
+    private final ThreadLocal<Boolean> mApplyingBatch = new ThreadLocal<>();
+
+    /* Operations measured by the metrics, first index of mEndpoints */
+    private static final int OP_QUERY = 0;
+    private static final int OP_INSERT = 1;
+    private static final int OP_BULK_INSERT = 2;
+    private static final int OP_APPLY_BATCH = 3;
+    private static final int OP_UPDATE = 4;
+    private static final int OP_DELETE = 5;
+    private static final int OP_CALL = 6;
+    private static final int OP_OPEN_FILE = 7;
+    private static final String[] OPERATION_NAMES = {"query", "insert", "bulkInsert", "applyBatch",
+            "update", "delete", "call", "openFile"};
+
+    /* Names of the URI match codes in the metrics, from THOUGHTS on, after the unmatched URIs */
+    private static final String[] MATCH_NAMES = {"unknown", "thoughts", "thoughts/#", "thoughts/search",
+            "thoughts/export", "drafts/#", "thoughts/#/revisions", "thoughts/#/revisions/#",
+            "thoughts/calendar", "tags"};
+
+    /* Timings and counts of the provider operations, see dump */
+    private final MyJournalMetrics mMetrics = new MyJournalMetrics();
+
+    /* Endpoints of mMetrics by operation and match code, looked up once each */
+    private final MyJournalMetrics.Endpoint[][] mEndpoints =
+            new MyJournalMetrics.Endpoint[OPERATION_NAMES.length][MATCH_NAMES.length];
+
+    /* Collects the changes and sends them to observers in batches */
+    private MyJournalChangeNotifier mChangeNotifier;
+
+    /* Syncs the journal with the remote store, created on the first sync */
+    private SyncEngine mSyncEngine;
 
     /**
      * Initialize the provider and the database helper object
@@ -66,13 +236,47 @@ public class MyJournalContentProvider extends ContentProvider {
 
     @Override
     public boolean onCreate() {
-        mdbHelper = new MyJournalDbHelper(getContext());
+        // Compressed storage of long thoughts is opted into through a resource
+        boolean compress = getContext().getResources().getBoolean(R.bool.compress_long_thoughts);
+        mProfile = compress ? MyJournalDbHelper.Profile.COMPRESSED : MyJournalDbHelper.Profile.DEFAULT;
+        // Reopen the journal of the user signed in last, so it is ready before the app checks
+        mPreferences = getContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        mUserId = mPreferences.getString(PREFERENCE_USER_ID, null);
+        mdbHelper = openJournal(mUserId);
+        mCompressionThreshold = mdbHelper.getCompressionThreshold();
+        mChangeNotifier = new MyJournalChangeNotifier(getContext().getContentResolver(),
+                MyJournalChangeNotifier.DEFAULT_WINDOW_MILLIS);
         return true;
     }
 
 
     @Override
-    public Cursor query(Uri uri, String[] projection,  String selection, String[] selectionArgs,  String sortOrder) {
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        return query(uri, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * The signal is handed down to SQLite, which stops a query cancelled while it runs, the
+     * rows being read as the cursor fills its window.
+     */
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder,
+                        CancellationSignal cancellationSignal) {
+        MyJournalMetrics.Endpoint endpoint = endpoint(OP_QUERY, sUriMatcher.match(uri));
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Cursor cursor = doQuery(uri, projection, selection, selectionArgs, sortOrder, cancellationSignal);
+            failed = false;
+            // The rows are counted, and the windows timed, as the caller reads them
+            return new MeteredCursor(cursor, endpoint);
+        } finally {
+            endpoint.recordCall(System.nanoTime() - start, failed);
+        }
+    }
+
+    private Cursor doQuery(Uri uri, String[] projection,  String selection, String[] selectionArgs,  String sortOrder,
+                           CancellationSignal cancellationSignal) {
        // Get readable database
         SQLiteDatabase database = mdbHelper.getReadableDatabase();
 
@@ -82,10 +286,22 @@ public class MyJournalContentProvider extends ContentProvider {
         int match = sUriMatcher.match(uri);
         switch (match){
             case THOUGHTS:
+                //Restrict the rows to the "from"/"to" time range and to the tags when the URI
+                //carries them
+                selection = combineSelection(dateRangeSelection(uri), selection);
+                selection = combineSelection(tagSelection(database, uri), selection);
+
+                //If the URI carries an "after" parameter, return one page of rows instead of
+                //the whole table.
+                if (uri.getQueryParameter(MyJournalContract.QUERY_PARAMETER_AFTER) != null) {
+                    cursor = queryPage(database, uri, projection, selection, selectionArgs, cancellationSignal);
+                    break;
+                }
                 //for the THOUGHTS code, query the thoughts table directly with the given
                 //projection, selection, selection arguments and sort order, The cursor
                 //could contain multiple rows at the thoughts table.
-                cursor = database.query(MyJournalEntry.TABLE_NAME, projection, selection, selectionArgs, null, null, sortOrder);
+                cursor = queryThoughts(database, projection, selection, selectionArgs, sortOrder, null,
+                        cancellationSignal);
                 break;
 
             case THOUGHTS_ID:
@@ -101,9 +317,51 @@ public class MyJournalContentProvider extends ContentProvider {
                 selection = MyJournalEntry._ID + "=?";
                 selectionArgs = new String[]{ String.valueOf(ContentUris.parseId(uri)) };
 
+                //Serve the thought from the row cache when the projection allows it
+                if (ThoughtCache.canServe(projection)) {
+                    cursor = queryCachedThought(database, ContentUris.parseId(uri), projection,
+                            cancellationSignal);
+                    break;
+                }
+
                 //This will perform a query on the thoughts table where thr _id equals 2 to return a
                 //Cursor containing that row of the table.
-                cursor = database.query(MyJournalEntry.TABLE_NAME, projection, selection, selectionArgs, null, null, sortOrder);
+                cursor = queryThoughts(database, projection, selection, selectionArgs, sortOrder, null,
+                        cancellationSignal);
+                break;
+
+            case THOUGHTS_SEARCH:
+                //for the THOUGHTS_SEARCH code, look the text up in the full-text index and
+                //return the matches ranked by relevance.
+                cursor = querySearch(database, uri, cancellationSignal);
+                break;
+
+            case DRAFTS_ID:
+                //for the DRAFTS_ID code, return the draft of the thought whose id ends the URI
+                cursor = database.query(false, DraftEntry.TABLE_NAME, projection, DraftEntry.COLUMN_THOUGHT_ID + "=?",
+                        new String[]{String.valueOf(ContentUris.parseId(uri))}, null, null, null, null,
+                        cancellationSignal);
+                break;
+
+            case THOUGHT_REVISIONS:
+                //for the THOUGHT_REVISIONS code, list the revisions of the thought, oldest first
+                cursor = MyJournalRevisions.list(database, parseId(uri.getPathSegments().get(1)));
+                break;
+
+            case THOUGHT_REVISIONS_ID:
+                //for the THOUGHT_REVISIONS_ID code, rebuild the thought as of the revision
+                cursor = MyJournalRevisions.reconstruct(database, parseId(uri.getPathSegments().get(1)),
+                        (int) ContentUris.parseId(uri));
+                break;
+
+            case THOUGHTS_CALENDAR:
+                //for the THOUGHTS_CALENDAR code, read the counts of the days or months asked for
+                cursor = queryCalendar(database, uri);
+                break;
+
+            case TAGS:
+                //for the TAGS code, list the tags of the live thoughts
+                cursor = MyJournalTags.list(database);
                 break;
 
             default:
@@ -112,44 +370,453 @@ public class MyJournalContentProvider extends ContentProvider {
         // Set notification URI on the Cursor,
         // so we know what content URI the Cursor was created for.
         // If the data at this URI changes, then we know we need to update the Cursor.
-        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        // Query parameters are dropped so that a page is notified like the whole directory.
+        // The calendar and the tags come from every thought, so they watch the whole directory
+        // too, which is also notified of the changes of single thoughts.
+        Uri notificationUri = match == THOUGHTS_CALENDAR || match == TAGS ? MyJournalEntry.CONTENT_URI
+                : uri.buildUpon().clearQuery().build();
+        cursor.setNotificationUri(getContext().getContentResolver(), notificationUri);
 
         // Return the cursor
         return cursor;
     }
 
+    /**
+     * Query one page of the thoughts table using keyset pagination on _id. Rather than skipping
+     * rows with OFFSET, the page starts right after the last _id the caller has seen, so the
+     * cost of a page is bounded by its size no matter how deep into the table it is.
+     */
+    private Cursor queryPage(SQLiteDatabase database, Uri uri, String[] projection,
+                             String selection, String[] selectionArgs, CancellationSignal cancellationSignal) {
+        long afterId = parseLongParameter(uri, MyJournalContract.QUERY_PARAMETER_AFTER, 0);
+        long limit = parseLongParameter(uri, MyJournalContract.QUERY_PARAMETER_LIMIT,
+                MyJournalContract.DEFAULT_PAGE_SIZE);
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive " + uri);
+        }
+
+        // Combine the key condition with any selection given by the caller
+        String pageSelection = combineSelection(MyJournalEntry._ID + ">?", selection);
+        String[] pageArgs = prependArg(String.valueOf(afterId), selectionArgs);
+
+        // The sort order must follow the key, otherwise the next page cannot be located
+        return queryThoughts(database, projection, pageSelection, pageArgs,
+                MyJournalEntry._ID + " ASC", String.valueOf(limit), cancellationSignal);
+    }
+
+    /**
+     * Query the thoughts table, returning compressed thoughts decompressed in the thought
+     * column. When the thought column is asked for, the blob column is read along with it.
+     * The preview column is computed from the thought for rows written without one. Deleted
+     * thoughts are left out.
+     */
+    private static Cursor queryThoughts(SQLiteDatabase database, String[] projection, String selection,
+                                        String[] selectionArgs, String sortOrder, String limit,
+                                        CancellationSignal cancellationSignal) {
+        selection = combineSelection(LIVE_SELECTION, selection);
+        String[] columns = projection;
+        if (projection != null) {
+            List<String> projected = Arrays.asList(projection);
+            if (projected.contains(MyJournalEntry.COLUMN_JOURNAL_THOUGHT)
+                    && !projected.contains(MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB)) {
+                columns = Arrays.copyOf(projection, projection.length + 1);
+                columns[projection.length] = MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB;
+            }
+            int previewIndex = projected.indexOf(MyJournalEntry.COLUMN_JOURNAL_PREVIEW);
+            if (previewIndex >= 0) {
+                columns = columns == projection ? projection.clone() : columns;
+                columns[previewIndex] = PREVIEW_COLUMN;
+            }
+        }
+        return ThoughtDecodingCursor.wrap(database.query(false, MyJournalEntry.TABLE_NAME, columns,
+                selection, selectionArgs, null, null, sortOrder, limit, cancellationSignal));
+    }
+
+    /**
+     * Return a single thought from the row cache, reading it from the database on a miss.
+     */
+    private Cursor queryCachedThought(SQLiteDatabase database, long id, String[] projection,
+                                      CancellationSignal cancellationSignal) {
+        Object[] row = mThoughtCache.get(id);
+        if (row == null) {
+            long readToken = mThoughtCache.beginRead();
+            Cursor found = queryThoughts(database, ThoughtCache.COLUMNS,
+                    MyJournalEntry._ID + "=?", new String[]{String.valueOf(id)}, null, null, cancellationSignal);
+            try {
+                if (found.moveToFirst()) {
+                    row = ThoughtCache.readRow(found);
+                    mThoughtCache.put(id, row, readToken);
+                }
+            } finally {
+                found.close();
+            }
+        }
+        return ThoughtCache.toCursor(row, projection);
+    }
+
+    /**
+     * Run a full-text search for the "q" parameter of the URI. The index finds the matching
+     * rows without scanning the table. A first pass reads only the id and matchinfo() of each
+     * match, computes its BM25 relevance and keeps the best {@code limit} in a bounded heap; a
+     * second pass reads the date, time and a snippet of the text around the matched words for
+     * those rows only. The ranking still costs one small row per match, the snippets only one
+     * per row returned. The rows come most relevant first.
+     */
+    private Cursor querySearch(SQLiteDatabase database, Uri uri, CancellationSignal cancellationSignal) {
+        String[] columns = {MyJournalEntry._ID, MyJournalEntry.COLUMN_JOURNAL_DATE,
+                MyJournalEntry.COLUMN_JOURNAL_TIME, MyJournalEntry.COLUMN_JOURNAL_TIMESTAMP,
+                MyJournalEntry.COLUMN_SEARCH_SNIPPET, MyJournalEntry.COLUMN_SEARCH_RANK};
+        String matchQuery = MyJournalSearch.toMatchQuery(
+                uri.getQueryParameter(MyJournalContract.QUERY_PARAMETER_QUERY));
+        long limit = parseLongParameter(uri, MyJournalContract.QUERY_PARAMETER_LIMIT,
+                MyJournalContract.DEFAULT_PAGE_SIZE);
+        if (matchQuery == null || limit <= 0) {
+            return new MatrixCursor(columns, 0);
+        }
+
+        final String fts = MyJournalEntry.FTS_TABLE_NAME;
+        final String table = MyJournalEntry.TABLE_NAME;
+        String from = " FROM " + fts + " JOIN " + table
+                + " ON " + table + "." + MyJournalEntry._ID + "=" + fts + ".docid"
+                + " WHERE " + fts + " MATCH ? AND " + table + "." + LIVE_SELECTION;
+
+        // Each best match as {id, rank, order found}, the least relevant at the head to be
+        // dropped first; of two as relevant, the one found later goes first
+        PriorityQueue<Object[]> best = new PriorityQueue<>(11, new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] first, Object[] second) {
+                int byRank = Double.compare((Double) first[1], (Double) second[1]);
+                return byRank != 0 ? byRank : (Integer) second[2] - (Integer) first[2];
+            }
+        });
+        Cursor ranked = database.rawQuery("SELECT " + fts + ".docid, matchinfo(" + fts + ", '"
+                + MyJournalSearch.MATCHINFO_FORMAT + "')" + from, new String[]{matchQuery}, cancellationSignal);
+        try {
+            int found = 0;
+            while (ranked.moveToNext()) {
+                Object[] match = {ranked.getLong(0), MyJournalSearch.bm25(ranked.getBlob(1)), found++};
+                if (best.size() < limit) {
+                    best.add(match);
+                } else if (best.comparator().compare(match, best.peek()) > 0) {
+                    best.poll();
+                    best.add(match);
+                }
+            }
+        } finally {
+            ranked.close();
+        }
+        if (best.isEmpty()) {
+            return new MatrixCursor(columns, 0);
+        }
+
+        // The ids are numbers read from the table, so they are placed in the SQL as they are
+        StringBuilder ids = new StringBuilder();
+        for (Object[] match : best) {
+            ids.append(ids.length() == 0 ? "" : ",").append(match[0]);
+        }
+        Map<Long, Object[]> rows = new HashMap<>();
+        Cursor details = database.rawQuery("SELECT " + table + "." + MyJournalEntry._ID + ", "
+                + MyJournalEntry.COLUMN_JOURNAL_DATE + ", "
+                + MyJournalEntry.COLUMN_JOURNAL_TIME + ", "
+                + MyJournalEntry.COLUMN_JOURNAL_TIMESTAMP + ", "
+                // Compressed thoughts are not in the content table, their preview stands in
+                + "CASE WHEN " + MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB + " IS NULL"
+                + " THEN snippet(" + fts + ", '<b>', '</b>', '...', -1, 12)"
+                + " ELSE " + MyJournalEntry.COLUMN_JOURNAL_PREVIEW + " END"
+                + from + " AND " + fts + ".docid IN (" + ids + ")",
+                new String[]{matchQuery}, cancellationSignal);
+        try {
+            while (details.moveToNext()) {
+                rows.put(details.getLong(0), new Object[]{details.getLong(0), details.getString(1),
+                        details.getString(2), details.isNull(3) ? null : details.getLong(3),
+                        details.getString(4), null});
+            }
+        } finally {
+            details.close();
+        }
+
+        // The heap gives the least relevant first
+        Object[][] ordered = new Object[best.size()][];
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            ordered[i] = best.poll();
+        }
+        MatrixCursor cursor = new MatrixCursor(columns, ordered.length);
+        for (Object[] match : ordered) {
+            Object[] row = rows.get(match[0]);
+            // A thought deleted between the two passes is left out
+            if (row != null) {
+                row[5] = match[1];
+                cursor.addRow(row);
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Query the calendar for the period and the "from"/"to" keys of the URI. The counts are
+     * kept by triggers, see {@link MyJournalCalendar}, so this only reads the rows returned.
+     */
+    private static Cursor queryCalendar(SQLiteDatabase database, Uri uri) {
+        String period = uri.getQueryParameter(MyJournalContract.QUERY_PARAMETER_PERIOD);
+        boolean months = MyJournalContract.PERIOD_MONTH.equals(period);
+        if (!months && period != null && !MyJournalContract.PERIOD_DAY.equals(period)) {
+            throw new IllegalArgumentException("Unknown calendar period " + period + " in " + uri);
+        }
+        Long from = null;
+        if (uri.getQueryParameter(MyJournalContract.QUERY_PARAMETER_FROM) != null) {
+            from = parseLongParameter(uri, MyJournalContract.QUERY_PARAMETER_FROM, 0);
+        }
+        Long to = null;
+        if (uri.getQueryParameter(MyJournalContract.QUERY_PARAMETER_TO) != null) {
+            to = parseLongParameter(uri, MyJournalContract.QUERY_PARAMETER_TO, 0);
+        }
+        return MyJournalCalendar.query(database, months, from, to);
+    }
+
+    /**
+     * Build the selection for the "tags" query parameter of the URI, or return null when there
+     * is none. See {@link MyJournalTags#selection}.
+     */
+    private static String tagSelection(SQLiteDatabase database, Uri uri) {
+        String tags = uri.getQueryParameter(MyJournalContract.QUERY_PARAMETER_TAGS);
+        if (tags == null) {
+            return null;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (String tag : tags.split(",")) {
+            String name = MyJournalHashtags.normalize(tag);
+            if (name == null) {
+                throw new IllegalArgumentException("Invalid tag " + tag + " in " + uri);
+            }
+            names.add(name);
+        }
+        return MyJournalTags.selection(database, names);
+    }
+
+    /**
+     * Build the selection for the "from"/"to" query parameters of the URI, or return null when
+     * there are none. The bounds are parsed as numbers before being placed in the SQL.
+     */
+    private static String dateRangeSelection(Uri uri) {
+        String range = null;
+        if (uri.getQueryParameter(MyJournalContract.QUERY_PARAMETER_FROM) != null) {
+            long from = parseLongParameter(uri, MyJournalContract.QUERY_PARAMETER_FROM, 0);
+            range = MyJournalEntry.COLUMN_JOURNAL_TIMESTAMP + ">=" + from;
+        }
+        if (uri.getQueryParameter(MyJournalContract.QUERY_PARAMETER_TO) != null) {
+            long to = parseLongParameter(uri, MyJournalContract.QUERY_PARAMETER_TO, 0);
+            range = combineSelection(range, MyJournalEntry.COLUMN_JOURNAL_TIMESTAMP + "<" + to);
+        }
+        return range;
+    }
+
+    /**
+     * Join two selections with AND, either of which may be null or empty.
+     */
+    private static String combineSelection(String first, String second) {
+        if (first == null || first.isEmpty()) {
+            return second;
+        }
+        if (second == null || second.isEmpty()) {
+            return first;
+        }
+        return first + " AND (" + second + ")";
+    }
+
+    /**
+     * Read a numeric query parameter from the URI, falling back to the default when absent.
+     */
+    private static long parseLongParameter(Uri uri, String name, long defaultValue) {
+        String value = uri.getQueryParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " parameter in " + uri);
+        }
+    }
+
+    /**
+     * Return a new selection arguments array with the given argument placed first.
+     */
+    private static String[] prependArg(String first, String[] selectionArgs) {
+        if (selectionArgs == null) {
+            return new String[]{ first };
+        }
+        String[] args = new String[selectionArgs.length + 1];
+        args[0] = first;
+        System.arraycopy(selectionArgs, 0, args, 1, selectionArgs.length);
+        return args;
+    }
+
 
     @Override
     public String getType(Uri uri) {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case THOUGHTS:
+            case THOUGHTS_SEARCH:
                 return  MyJournalEntry.CONTENT_LIST_TYPE;
             case THOUGHTS_ID:
                 return MyJournalEntry.CONTENT_ITEM_TYPE;
+            case THOUGHTS_EXPORT:
+                if (Boolean.parseBoolean(uri.getQueryParameter(MyJournalContract.QUERY_PARAMETER_GZIP))) {
+                    return "application/gzip";
+                }
+                return exportFormat(uri) == MyJournalExporter.Format.CSV ? "text/csv" : "application/json";
+            case DRAFTS_ID:
+                return DraftEntry.CONTENT_ITEM_TYPE;
+            case THOUGHT_REVISIONS:
+                return RevisionEntry.CONTENT_LIST_TYPE;
+            case THOUGHT_REVISIONS_ID:
+                return RevisionEntry.CONTENT_ITEM_TYPE;
+            case THOUGHTS_CALENDAR:
+                return CalendarEntry.CONTENT_LIST_TYPE;
+            case TAGS:
+                return TagEntry.CONTENT_LIST_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
     }
 
+    /**
+     * Open the export URI as a pipe the journal is streamed into. The export runs on a
+     * background thread and reads the thoughts page by page, so the reader gets the first bytes
+     * right away and memory use does not depend on the size of the journal.
+     */
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode) throws FileNotFoundException {
+        if (sUriMatcher.match(uri) != THOUGHTS_EXPORT) {
+            throw new FileNotFoundException("No file for " + uri);
+        }
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("Exports can only be read " + uri);
+        }
+        final MyJournalExporter.Format format = exportFormat(uri);
+        final boolean gzip = Boolean.parseBoolean(uri.getQueryParameter(MyJournalContract.QUERY_PARAMETER_GZIP));
+        return openPipeHelper(uri, getType(uri), null, null, new PipeDataWriter<Void>() {
+            @Override
+            public void writeDataToPipe(@NonNull ParcelFileDescriptor output, @NonNull Uri uri,
+                                        @NonNull String mimeType, Bundle opts, Void args) {
+                long start = System.nanoTime();
+                boolean failed = false;
+                try {
+                    new MyJournalExporter(getContext().getContentResolver()).export(
+                            new ParcelFileDescriptor.AutoCloseOutputStream(output), format, gzip, null);
+                } catch (IOException e) {
+                    // Usually the reader closed its end before the end of the export
+                    Log.e(LOG_TAG, "Export to " + uri + " stopped", e);
+                    failed = true;
+                }
+                endpoint(OP_OPEN_FILE, THOUGHTS_EXPORT).recordCall(System.nanoTime() - start, failed);
+            }
+        });
+    }
+
+    private static MyJournalExporter.Format exportFormat(Uri uri) {
+        String format = uri.getQueryParameter(MyJournalContract.QUERY_PARAMETER_FORMAT);
+        if (format == null || MyJournalContract.EXPORT_FORMAT_JSON.equals(format)) {
+            return MyJournalExporter.Format.JSON;
+        }
+        if (MyJournalContract.EXPORT_FORMAT_CSV.equals(format)) {
+            return MyJournalExporter.Format.CSV;
+        }
+        throw new IllegalArgumentException("Unknown export format " + format);
+    }
+
 
     @Override
     public Uri insert(Uri uri, ContentValues values) {
+        MyJournalMetrics.Endpoint endpoint = endpoint(OP_INSERT, sUriMatcher.match(uri));
+        long start = System.nanoTime();
+        Uri inserted = null;
+        try {
+            inserted = doInsert(uri, values);
+            return inserted;
+        } finally {
+            // A failed insert returns null rather than throwing
+            endpoint.recordCall(System.nanoTime() - start, inserted == null);
+            if (inserted != null) {
+                endpoint.recordRows(1);
+            }
+        }
+    }
+
+    private Uri doInsert(Uri uri, ContentValues values) {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case THOUGHTS:
                 return insertThought(uri, values);
+            case DRAFTS_ID:
+                return insertDraft(uri, values);
             default:
                 throw new IllegalArgumentException("Insertion is not supported for " + uri);
         }
     }
 
+    /**
+     * Write the draft of the thought whose id ends the URI, replacing the previous one.
+     * Drafts are only read back by the editor when it opens, so their writes notify nobody.
+     */
+    private Uri insertDraft(Uri uri, ContentValues values) {
+        values = new ContentValues(values);
+        values.put(DraftEntry.COLUMN_THOUGHT_ID, ContentUris.parseId(uri));
+        if (!values.containsKey(DraftEntry.COLUMN_UPDATED_AT)) {
+            values.put(DraftEntry.COLUMN_UPDATED_AT, System.currentTimeMillis());
+        }
+        long id = mdbHelper.getWritableDatabase().insertWithOnConflict(DraftEntry.TABLE_NAME, null, values,
+                SQLiteDatabase.CONFLICT_REPLACE);
+        return id == -1 ? null : uri;
+    }
+
     /**
      * Insert a thought into the database with the given content values. Return the new content URI
      * for that specific row in the database.
      */
 
     private Uri insertThought(Uri uri, ContentValues values){
+        validateNewThought(values);
+        String thought = values.getAsString(MyJournalEntry.COLUMN_JOURNAL_THOUGHT);
+        values = withDerivedColumns(values);
+
+        // Get writable database
+        SQLiteDatabase database = mdbHelper.getWritableDatabase();
+
+        // Insert the new thought/event with the given values, indexing it for search in the
+        // same transaction when the triggers cannot, and filing it under its tags
+        long id;
+        database.beginTransaction();
+        try {
+            id = database.insert(MyJournalEntry.TABLE_NAME, null, values);
+            if (id != -1 && isCompressed(values)) {
+                indexThought(database, id, thought);
+            }
+            if (id != -1) {
+                MyJournalTags.index(database, id, thought);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        // If the ID is -1, then the insertion failed.
+        if (id == -1) {
+            return null;
+        }
+        // the new URI with the ID  (of the newly inserted row) appended to the end of it
+        Uri thoughtUri = ContentUris.withAppendedId(uri, id);
+
+        //Notify all listeners that the data has changed for the new thought
+        // uri: content://com.oladimeji.myjournal/thoughts/<id>
+        notifyChange(thoughtUri);
+        return thoughtUri;
+    }
+
+    /**
+     * Check that the content values hold everything a new thought requires.
+     */
+    private static void validateNewThought(ContentValues values) {
         // Check that the date value is not null
         String date = values.getAsString(MyJournalEntry.COLUMN_JOURNAL_DATE);
         if (date == null){
@@ -158,33 +825,503 @@ public class MyJournalContentProvider extends ContentProvider {
         // Check that the time value is not null
         String time = values.getAsString(MyJournalEntry.COLUMN_JOURNAL_TIME);
         if (time == null){
-            throw new IllegalArgumentException("Date is required");
+            throw new IllegalArgumentException("Time is required");
         }
         // Check that the thought value is not null
         String thought = values.getAsString(MyJournalEntry.COLUMN_JOURNAL_THOUGHT);
         if (thought == null){
-            throw new IllegalArgumentException("Date is required");
+            throw new IllegalArgumentException("Kindly enter your thoughts");
         }
+    }
+
+    /**
+     * Return a copy of the content values with the columns derived from the date, time and
+     * thought filled in: the timestamp, unless the caller already supplied one, the day, the
+     * word count, the content hash, and the stored form of the thought. The caller's values are
+     * left untouched.
+     */
+    private ContentValues withDerivedColumns(ContentValues values) {
+        ContentValues rowValues = new ContentValues(values);
+        String date = values.getAsString(MyJournalEntry.COLUMN_JOURNAL_DATE);
+        String time = values.getAsString(MyJournalEntry.COLUMN_JOURNAL_TIME);
+        String thought = values.getAsString(MyJournalEntry.COLUMN_JOURNAL_THOUGHT);
+        if (!rowValues.containsKey(MyJournalEntry.COLUMN_JOURNAL_TIMESTAMP)) {
+            rowValues.put(MyJournalEntry.COLUMN_JOURNAL_TIMESTAMP, MyJournalDates.parseTimestamp(date, time));
+        }
+        rowValues.put(MyJournalEntry.COLUMN_JOURNAL_DAY, MyJournalDates.parseDay(date));
+        rowValues.put(MyJournalEntry.COLUMN_JOURNAL_WORD_COUNT, MyJournalSearch.countWords(thought));
+        rowValues.put(MyJournalEntry.COLUMN_JOURNAL_HASH, MyJournalHashes.contentHash(date, time, thought));
+        putStoredThought(rowValues, thought);
+        return rowValues;
+    }
+
+    /**
+     * Put the preview of the thought in the values, and the thought itself either in plain
+     * text or, when long enough and compression is on, deflated in the blob column with the
+     * thought column left empty.
+     */
+    private void putStoredThought(ContentValues values, String thought) {
+        values.put(MyJournalEntry.COLUMN_JOURNAL_PREVIEW, MyJournalCompression.preview(thought));
+        byte[] blob = mCompressionThreshold > 0 ? MyJournalCompression.compress(thought, mCompressionThreshold) : null;
+        if (blob == null) {
+            values.put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, thought);
+            values.putNull(MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB);
+        } else {
+            values.put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, "");
+            values.put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB, blob);
+        }
+    }
+
+    private static boolean isCompressed(ContentValues storedValues) {
+        return storedValues.getAsByteArray(MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB) != null;
+    }
+
+    /**
+     * Add a compressed thought to the full-text index, which the triggers only do for thoughts
+     * in plain text.
+     */
+    private static void indexThought(SQLiteDatabase database, long id, String thought) {
+        SQLiteStatement index = database.compileStatement("INSERT INTO " + MyJournalEntry.FTS_TABLE_NAME
+                + "(docid, " + MyJournalEntry.COLUMN_JOURNAL_THOUGHT + ") VALUES(?, ?)");
+        try {
+            index.bindLong(1, id);
+            index.bindString(2, thought);
+            index.executeInsert();
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Remove the compressed thoughts matching the selection from the full-text index. Must run
+     * before they are updated or deleted. The index of an external content table needs the
+     * old text to find its entries, which the content table does not hold for these thoughts.
+     */
+    static void unindexCompressedThoughts(SQLiteDatabase database, String selection,
+                                          String[] selectionArgs) {
+        String compressed = combineSelection(MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB + " IS NOT NULL", selection);
+        Cursor cursor = database.query(MyJournalEntry.TABLE_NAME,
+                new String[]{MyJournalEntry._ID, MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB},
+                compressed, selectionArgs, null, null, null);
+        if (cursor.getCount() == 0) {
+            cursor.close();
+            return;
+        }
+        final String fts = MyJournalEntry.FTS_TABLE_NAME;
+        SQLiteStatement unindex = database.compileStatement("INSERT INTO " + fts + "(" + fts + ", docid, "
+                + MyJournalEntry.COLUMN_JOURNAL_THOUGHT + ") VALUES('delete', ?, ?)");
+        try {
+            while (cursor.moveToNext()) {
+                unindex.bindLong(1, cursor.getLong(0));
+                unindex.bindString(2, MyJournalCompression.decompress(cursor.getBlob(1)));
+                unindex.executeInsert();
+            }
+        } finally {
+            unindex.close();
+            cursor.close();
+        }
+    }
+
+    /**
+     * Insert many thoughts at once. All rows are validated first, then written in a single
+     * transaction, so the batch costs one commit instead of one per row, and listeners
+     * are notified once at the end. Returns the number of rows inserted, which is less than the
+     * number given when duplicates were skipped.
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        MyJournalMetrics.Endpoint endpoint = endpoint(OP_BULK_INSERT, sUriMatcher.match(uri));
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            int rowsInserted = doBulkInsert(uri, values);
+            failed = false;
+            endpoint.recordRows(rowsInserted);
+            return rowsInserted;
+        } finally {
+            endpoint.recordCall(System.nanoTime() - start, failed);
+        }
+    }
+
+    private int doBulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        final int match = sUriMatcher.match(uri);
+        if (match != THOUGHTS) {
+            throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+        // Validate everything up front so that a bad row does not leave half a batch behind
+        for (ContentValues value : values) {
+            validateNewThought(value);
+        }
+
+        // With ?dedupe=true, thoughts whose content hash is already in the journal are skipped,
+        // including duplicates within the batch itself
+        boolean dedupe = Boolean.parseBoolean(uri.getQueryParameter(MyJournalContract.QUERY_PARAMETER_DEDUPE));
 
-        // Get writable database
         SQLiteDatabase database = mdbHelper.getWritableDatabase();
+        int rowsInserted = 0;
+        long[] insertedIds = new long[values.length];
+        database.beginTransaction();
+        SQLiteStatement exists = dedupe ? database.compileStatement("SELECT EXISTS(SELECT 1 FROM "
+                + MyJournalEntry.TABLE_NAME + " WHERE " + MyJournalEntry.COLUMN_JOURNAL_HASH + "=? AND "
+                + LIVE_SELECTION + ")") : null;
+        try {
+            for (ContentValues value : values) {
+                ContentValues rowValues = withDerivedColumns(value);
+                if (exists != null) {
+                    exists.bindString(1, rowValues.getAsString(MyJournalEntry.COLUMN_JOURNAL_HASH));
+                    if (exists.simpleQueryForLong() != 0) {
+                        continue;
+                    }
+                }
+                long id = database.insert(MyJournalEntry.TABLE_NAME, null, rowValues);
+                if (id != -1) {
+                    String thought = value.getAsString(MyJournalEntry.COLUMN_JOURNAL_THOUGHT);
+                    if (isCompressed(rowValues)) {
+                        indexThought(database, id, thought);
+                    }
+                    MyJournalTags.index(database, id, thought);
+                    insertedIds[rowsInserted++] = id;
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            if (exists != null) {
+                exists.close();
+            }
+            database.endTransaction();
+        }
 
-        // Insert the new thought/event with the given values
-        long id = database.insert(MyJournalEntry.TABLE_NAME, null, values);
-        // If the ID is -1, then the insertion failed.
-        if (id == -1) {
+        if (rowsInserted != 0) {
+            mChangeNotifier.notifyItems(insertedIds, rowsInserted);
+        }
+        return rowsInserted;
+    }
+
+    /**
+     * Apply a batch of insert/update/delete operations in a single transaction. Either all the
+     * operations are committed or none is, and listeners get a single notification for the
+     * whole thoughts directory once the batch is committed.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        // The operations of the batch are also counted on their own endpoints
+        MyJournalMetrics.Endpoint endpoint = endpoint(OP_APPLY_BATCH, THOUGHTS);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            ContentProviderResult[] results = doApplyBatch(operations);
+            failed = false;
+            endpoint.recordRows(results.length);
+            return results;
+        } finally {
+            endpoint.recordCall(System.nanoTime() - start, failed);
+        }
+    }
+
+    private ContentProviderResult[] doApplyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase database = mdbHelper.getWritableDatabase();
+        ContentProviderResult[] results;
+        database.beginTransaction();
+        mApplyingBatch.set(Boolean.TRUE);
+        try {
+            results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+        } finally {
+            mApplyingBatch.remove();
+            database.endTransaction();
+            // Rows read by other threads before the commit may have been cached meanwhile
+            mThoughtCache.invalidateAll();
+        }
+
+        if (results.length != 0) {
+            notifyChange(MyJournalEntry.CONTENT_URI);
+        }
+        return results;
+    }
+
+    /**
+     * Drop the cached thoughts a write to the given URI may have changed. Called once the write
+     * is committed, so that no reader can cache the old values after this point.
+     */
+    private void invalidateCache(Uri uri) {
+        if (sUriMatcher.match(uri) == THOUGHTS_ID) {
+            mThoughtCache.invalidate(ContentUris.parseId(uri));
+        } else {
+            mThoughtCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Handle provider calls that are not queries. {@link MyJournalContract#METHOD_GET_CACHE_STATS}
+     * returns the hit and miss counts and the size of the row cache,
+     * {@link MyJournalContract#METHOD_SWITCH_USER} opens the journal of the user given as arg,
+     * {@link MyJournalContract#METHOD_RESTORE} restores the deleted thought whose id is given
+     * as arg, {@link MyJournalContract#METHOD_COMPACT} purges the old deleted thoughts and
+     * {@link MyJournalContract#METHOD_GET_METRICS} returns the provider metrics.
+     */
+    @Override
+    public Bundle call(@NonNull String method, String arg, Bundle extras) {
+        MyJournalMetrics.Endpoint endpoint = endpoint(OP_CALL, THOUGHTS);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Bundle result = doCall(method, arg, extras);
+            failed = false;
+            return result;
+        } finally {
+            endpoint.recordCall(System.nanoTime() - start, failed);
+        }
+    }
+
+    private Bundle doCall(@NonNull String method, String arg, Bundle extras) {
+        if (MyJournalContract.METHOD_GET_CACHE_STATS.equals(method)) {
+            Bundle stats = new Bundle();
+            stats.putInt(MyJournalContract.KEY_CACHE_HITS, mThoughtCache.hitCount());
+            stats.putInt(MyJournalContract.KEY_CACHE_MISSES, mThoughtCache.missCount());
+            stats.putInt(MyJournalContract.KEY_CACHE_SIZE, mThoughtCache.size());
+            return stats;
+        }
+        if (MyJournalContract.METHOD_SWITCH_USER.equals(method)) {
+            switchUser(arg);
+            return null;
+        }
+        if (MyJournalContract.METHOD_RESTORE.equals(method)) {
+            restoreThought(parseId(arg));
             return null;
         }
-        //Notify all listeners that the data has changed for the thought content URI
-        // uri: content://com.oladimeji.myjournal/thoughts
-        getContext().getContentResolver().notifyChange(uri, null);
+        if (MyJournalContract.METHOD_COMPACT.equals(method)) {
+            return compact();
+        }
+        if (MyJournalContract.METHOD_GET_METRICS.equals(method)) {
+            return getMetrics(arg);
+        }
+        return super.call(method, arg, extras);
+    }
+
+    /**
+     * Returns the metrics as text, written to the named file of the app's files directory as
+     * well when a name is given.
+     */
+    private Bundle getMetrics(String fileName) {
+        StringWriter text = new StringWriter();
+        mMetrics.dump(new PrintWriter(text));
+        if (fileName != null) {
+            if (fileName.indexOf(File.separatorChar) >= 0) {
+                throw new IllegalArgumentException("Invalid metrics file name " + fileName);
+            }
+            File file = new File(getContext().getFilesDir(), fileName);
+            try {
+                PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+                try {
+                    writer.print(text);
+                } finally {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot write the metrics to " + file, e);
+            }
+        }
+        Bundle result = new Bundle();
+        result.putString(MyJournalContract.KEY_METRICS, text.toString());
+        return result;
+    }
+
+    /**
+     * Write the metrics for {@code adb shell dumpsys activity provider
+     * com.oladimeji.myjournal/.data.MyJournalContentProvider}.
+     */
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        mMetrics.dump(writer);
+    }
+
+    /**
+     * Returns the metrics endpoint of an operation on the URIs of the given match code.
+     */
+    private MyJournalMetrics.Endpoint endpoint(int operation, int match) {
+        int slot = match >= THOUGHTS && match < THOUGHTS + MATCH_NAMES.length - 1 ? match - THOUGHTS + 1 : 0;
+        MyJournalMetrics.Endpoint endpoint = mEndpoints[operation][slot];
+        if (endpoint == null) {
+            // Racing threads get the same endpoint from the registry
+            endpoint = mMetrics.endpoint(OPERATION_NAMES[operation] + " " + MATCH_NAMES[slot]);
+            mEndpoints[operation][slot] = endpoint;
+        }
+        return endpoint;
+    }
+
+    private static long parseId(String id) {
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid thought id " + id);
+        }
+    }
+
+    /**
+     * Bring back a deleted thought that was not purged yet.
+     */
+    private void restoreThought(long id) {
+        ContentValues restored = new ContentValues();
+        restored.putNull(MyJournalEntry.COLUMN_DELETED_AT);
+        restored.put(MyJournalEntry.COLUMN_UPDATED_AT, System.currentTimeMillis());
+        int rowsRestored = mdbHelper.getWritableDatabase().update(MyJournalEntry.TABLE_NAME, restored,
+                MyJournalEntry._ID + "=? AND " + MyJournalEntry.COLUMN_DELETED_AT + " IS NOT NULL",
+                new String[]{String.valueOf(id)});
+        if (rowsRestored != 0) {
+            notifyChange(ContentUris.withAppendedId(MyJournalEntry.CONTENT_URI, id));
+        }
+    }
+
+    /**
+     * Purge the thoughts deleted longer ago than they can be restored, then shrink the file.
+     */
+    private Bundle compact() {
+        SQLiteDatabase database = mdbHelper.getWritableDatabase();
+        int purged = MyJournalCompaction.purge(database,
+                System.currentTimeMillis() - MyJournalContract.RESTORE_WINDOW_MILLIS);
+        long freedPages = MyJournalCompaction.vacuum(database);
+        Log.i(LOG_TAG, "Compaction purged " + purged + " thoughts and freed " + freedPages + " pages");
+
+        Bundle result = new Bundle();
+        result.putInt(MyJournalContract.KEY_PURGED_ROWS, purged);
+        result.putLong(MyJournalContract.KEY_FREED_PAGES, freedPages);
+        return result;
+    }
+
+    /**
+     * Route all further operations to the journal of the given user. Opening a helper does not
+     * touch the file yet, so this is cheap enough for the main thread.
+     */
+    private synchronized void switchUser(String userId) {
+        if (userId == null ? mUserId == null : userId.equals(mUserId)) {
+            return;
+        }
+        mdbHelper = openJournal(userId);
+        mUserId = userId;
+        mPreferences.edit().putString(PREFERENCE_USER_ID, userId).apply();
+        // Cached rows and the sync state belong to the journal switched from
+        mThoughtCache.invalidateAll();
+        mSyncEngine = null;
+        notifyChange(MyJournalEntry.CONTENT_URI);
+    }
+
+    /**
+     * Returns the helper of the journal of the given user, creating it on first use.
+     */
+    private synchronized MyJournalDbHelper openJournal(String userId) {
+        String name = MyJournalDbHelper.databaseName(userId);
+        MyJournalDbHelper helper = mHelpers.get(name);
+        if (helper == null) {
+            if (userId != null) {
+                adoptLegacyJournal(name);
+            }
+            helper = new MyJournalDbHelper(getContext(), name, mProfile);
+            mHelpers.put(name, helper);
+        }
+        return helper;
+    }
+
+    /**
+     * Give the journal written before there was one per user to the first user to sign in, by
+     * renaming its file, so their thoughts are kept without copying them. The adoption is only
+     * recorded once every file was moved; if a rename fails the moved files are put back, and
+     * the next sign in tries again.
+     */
+    private void adoptLegacyJournal(String name) {
+        if (mPreferences.getBoolean(PREFERENCE_LEGACY_ADOPTED, false)) {
+            return;
+        }
+        File legacy = getContext().getDatabasePath(MyJournalDbHelper.databaseName(null));
+        File target = getContext().getDatabasePath(name);
+        if (legacy.exists() && !target.exists()) {
+            MyJournalDbHelper legacyHelper = mHelpers.remove(legacy.getName());
+            if (legacyHelper != null) {
+                legacyHelper.close();
+            }
+            // The journal file comes with its rollback journal or write-ahead log, if any. They
+            // are moved first, so the journal never shows up under the user without them.
+            String[] suffixes = {"-journal", "-wal", "-shm", ""};
+            for (int i = 0; i < suffixes.length; i++) {
+                File file = new File(legacy.getPath() + suffixes[i]);
+                if (file.exists() && !file.renameTo(new File(target.getPath() + suffixes[i]))) {
+                    Log.e(LOG_TAG, "Failed to move " + file + " to the journal of the user");
+                    for (int j = i - 1; j >= 0; j--) {
+                        File moved = new File(target.getPath() + suffixes[j]);
+                        if (moved.exists() && !moved.renameTo(new File(legacy.getPath() + suffixes[j]))) {
+                            Log.e(LOG_TAG, "Failed to move " + moved + " back");
+                        }
+                    }
+                    return;
+                }
+            }
+        }
+        // Written at once: if the flag were lost, a journal kept later while signed out would be
+        // given to the next user to sign in
+        mPreferences.edit().putBoolean(PREFERENCE_LEGACY_ADOPTED, true).commit();
+    }
 
-        // return the new URI with the ID  (of the newly inserted row) appended to the end of it
-        return ContentUris.withAppendedId(uri, id);
+    /**
+     * Sync the journal with a remote store through the given transport, see {@link SyncEngine}.
+     * Reached through {@link android.content.ContentProviderClient#getLocalContentProvider}, as
+     * the transport cannot be passed to {@link #call}. Runs on the calling thread, which must
+     * not be the main thread.
+     */
+    public SyncEngine.Result sync(SyncTransport transport) throws IOException {
+        SyncEngine engine;
+        synchronized (this) {
+            if (mSyncEngine == null) {
+                mSyncEngine = new SyncEngine(mdbHelper);
+            }
+            engine = mSyncEngine;
+        }
+        SyncEngine.Result result;
+        try {
+            result = engine.sync(transport);
+        } finally {
+            // Pulled changes bypass the provider, so whatever was cached may be stale
+            mThoughtCache.invalidateAll();
+        }
+        if (result.pulled > 0) {
+            notifyChange(MyJournalEntry.CONTENT_URI);
+        }
+        return result;
+    }
+
+    /**
+     * Notify all listeners that the data at the given URI has changed, unless a batch is being
+     * applied on this thread, in which case the batch sends the notification when it is done.
+     * The notification is coalesced with the other changes of the next few milliseconds.
+     */
+    private void notifyChange(Uri uri) {
+        if (mApplyingBatch.get() != null) {
+            return;
+        }
+        if (sUriMatcher.match(uri) == THOUGHTS_ID) {
+            mChangeNotifier.notifyItem(ContentUris.parseId(uri));
+        } else {
+            mChangeNotifier.notifyTable();
+        }
     }
 
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
+        MyJournalMetrics.Endpoint endpoint = endpoint(OP_DELETE, sUriMatcher.match(uri));
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            int rowsDeleted = doDelete(uri, selection, selectionArgs);
+            failed = false;
+            endpoint.recordRows(rowsDeleted);
+            return rowsDeleted;
+        } finally {
+            endpoint.recordCall(System.nanoTime() - start, failed);
+        }
+    }
+
+    private int doDelete(Uri uri, String selection, String[] selectionArgs) {
         // Get writeable database
         SQLiteDatabase database = mdbHelper.getWritableDatabase();
 
@@ -195,22 +1332,33 @@ public class MyJournalContentProvider extends ContentProvider {
         switch (match) {
             case THOUGHTS:
                 // Delete all rows that match the selection and selection args
-                rowsDeleted = database.delete(MyJournalEntry.TABLE_NAME, selection, selectionArgs);
                 break;
             case THOUGHTS_ID:
                 // Delete a single row given by the ID in the URI
                 selection = MyJournalEntry._ID + "=?";
                 selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
-                rowsDeleted = database.delete(MyJournalEntry.TABLE_NAME, selection, selectionArgs);
                 break;
+            case DRAFTS_ID:
+                // Drafts are discarded for good, and without notifying, see insertDraft
+                return database.delete(DraftEntry.TABLE_NAME, DraftEntry.COLUMN_THOUGHT_ID + "=?",
+                        new String[] { String.valueOf(ContentUris.parseId(uri)) });
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
         }
+        // Thoughts are only marked as deleted, so they can be restored for a while. They are
+        // purged, and unindexed, later by METHOD_COMPACT.
+        long now = System.currentTimeMillis();
+        ContentValues deleted = new ContentValues();
+        deleted.put(MyJournalEntry.COLUMN_DELETED_AT, now);
+        deleted.put(MyJournalEntry.COLUMN_UPDATED_AT, now);
+        rowsDeleted = database.update(MyJournalEntry.TABLE_NAME, deleted,
+                combineSelection(LIVE_SELECTION, selection), selectionArgs);
+        invalidateCache(uri);
 
         // If 1 or more rows were deleted, then notify all listeners that the data at the
         // given URI has changed
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
 
         // Return the number of rows deleted
@@ -219,6 +1367,20 @@ public class MyJournalContentProvider extends ContentProvider {
 
     @Override
     public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        MyJournalMetrics.Endpoint endpoint = endpoint(OP_UPDATE, sUriMatcher.match(uri));
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            int rowsUpdated = doUpdate(uri, values, selection, selectionArgs);
+            failed = false;
+            endpoint.recordRows(rowsUpdated);
+            return rowsUpdated;
+        } finally {
+            endpoint.recordCall(System.nanoTime() - start, failed);
+        }
+    }
+
+    private int doUpdate(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
       final int match = sUriMatcher.match(uri);
       switch (match){
           case THOUGHTS:
@@ -274,18 +1436,130 @@ public class MyJournalContentProvider extends ContentProvider {
         }
         // Otherwise, get writeable database to update the data
         SQLiteDatabase database = mdbHelper.getWritableDatabase();
+        // Deleted thoughts cannot be edited, only restored
+        selection = combineSelection(LIVE_SELECTION, selection);
+
+        // Keep the timestamp and hash in step with the date, time and thought. When all three
+        // are given they can be computed right away, when only some are given the others have
+        // to be read from each row.
+        int givenColumns = 0;
+        for (String column : new String[]{MyJournalEntry.COLUMN_JOURNAL_DATE,
+                MyJournalEntry.COLUMN_JOURNAL_TIME, MyJournalEntry.COLUMN_JOURNAL_THOUGHT}) {
+            if (values.containsKey(column)) {
+                givenColumns++;
+            }
+        }
+        String newThought = values.getAsString(MyJournalEntry.COLUMN_JOURNAL_THOUGHT);
+        if (givenColumns == 3) {
+            values = withDerivedColumns(values);
+        } else if (values.containsKey(MyJournalEntry.COLUMN_JOURNAL_THOUGHT)) {
+            values = new ContentValues(values);
+            putStoredThought(values, newThought);
+        }
+        boolean thoughtChanged = values.containsKey(MyJournalEntry.COLUMN_JOURNAL_THOUGHT);
+        if (givenColumns > 0) {
+            // Edits are dated so that sync can tell which of two conflicting edits is the latest
+            values = new ContentValues(values);
+            values.put(MyJournalEntry.COLUMN_UPDATED_AT, System.currentTimeMillis());
+        }
 
         // Perform the update on the database and get the number of rows affected
-        int rowsUpdated = database.update(MyJournalEntry.TABLE_NAME, values, selection, selectionArgs);
+        int rowsUpdated;
+        database.beginTransaction();
+        try {
+            long[] staleIds = null;
+            if ((givenColumns > 0 && givenColumns < 3) || (thoughtChanged && isCompressed(values))) {
+                staleIds = queryIds(database, selection, selectionArgs);
+            }
+            // Edits of the date, time or text are kept in the revision history
+            long[] editedIds = null;
+            Map<Long, MyJournalRevisions.Version> previousVersions = null;
+            if (givenColumns > 0) {
+                editedIds = staleIds != null ? staleIds : queryIds(database, selection, selectionArgs);
+                previousVersions = MyJournalRevisions.readVersions(database, editedIds);
+            }
+            if (thoughtChanged) {
+                unindexCompressedThoughts(database, selection, selectionArgs);
+            }
+            rowsUpdated = database.update(MyJournalEntry.TABLE_NAME, values, selection, selectionArgs);
+            if (thoughtChanged && isCompressed(values)) {
+                for (long id : staleIds) {
+                    indexThought(database, id, newThought);
+                }
+            }
+            if (thoughtChanged) {
+                for (long id : editedIds) {
+                    MyJournalTags.index(database, id, newThought);
+                }
+            }
+            if (staleIds != null && givenColumns < 3) {
+                refreshDerivedColumns(database, staleIds);
+            }
+            if (previousVersions != null) {
+                MyJournalRevisions.recordChanges(database, previousVersions);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        invalidateCache(uri);
 
         // If 1 or more rows were updated, then notify all listeners that the data at the
         // given URI has changed
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
 
         // Return the number of rows updated
         return rowsUpdated;
     }
 
+    /**
+     * Return the _id of every thought matching the selection.
+     */
+    static long[] queryIds(SQLiteDatabase database, String selection, String[] selectionArgs) {
+        Cursor cursor = database.query(MyJournalEntry.TABLE_NAME, new String[]{MyJournalEntry._ID},
+                selection, selectionArgs, null, null, null);
+        try {
+            long[] ids = new long[cursor.getCount()];
+            int i = 0;
+            while (cursor.moveToNext()) {
+                ids[i++] = cursor.getLong(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Recompute the timestamp, day, word count and hash of the given thoughts from their stored
+     * values.
+     */
+    private static void refreshDerivedColumns(SQLiteDatabase database, long[] ids) {
+        String[] columns = {MyJournalEntry.COLUMN_JOURNAL_DATE, MyJournalEntry.COLUMN_JOURNAL_TIME,
+                MyJournalEntry.COLUMN_JOURNAL_THOUGHT, MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB};
+        ContentValues derivedValues = new ContentValues(4);
+        for (long id : ids) {
+            String[] idArgs = {String.valueOf(id)};
+            Cursor cursor = database.query(MyJournalEntry.TABLE_NAME, columns,
+                    MyJournalEntry._ID + "=?", idArgs, null, null, null);
+            try {
+                if (!cursor.moveToFirst()) {
+                    continue;
+                }
+                String date = cursor.getString(0);
+                String time = cursor.getString(1);
+                String thought = ThoughtDecodingCursor.readThought(cursor, 2, 3);
+                derivedValues.put(MyJournalEntry.COLUMN_JOURNAL_TIMESTAMP,
+                        MyJournalDates.parseTimestamp(date, time));
+                derivedValues.put(MyJournalEntry.COLUMN_JOURNAL_DAY, MyJournalDates.parseDay(date));
+                derivedValues.put(MyJournalEntry.COLUMN_JOURNAL_WORD_COUNT, MyJournalSearch.countWords(thought));
+                derivedValues.put(MyJournalEntry.COLUMN_JOURNAL_HASH, MyJournalHashes.contentHash(date, time, thought));
+            } finally {
+                cursor.close();
+            }
+            database.update(MyJournalEntry.TABLE_NAME, derivedValues, MyJournalEntry._ID + "=?", idArgs);
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.oladimeji.myjournal.data;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
@@ -34,6 +35,156 @@ public class MyJournalContract {
      */
     public static final String PATH_JOURNAL = "thoughts";
 
+    /**
+     * Path appended to the thoughts path for full-text search,
+     * content://com.oladimeji.myjournal/thoughts/search?q=...
+     */
+    public static final String PATH_SEARCH = "search";
+
+    /**
+     * Path appended to the thoughts path for a streamed export of the whole journal, opened
+     * with ContentResolver.openInputStream(),
+     * content://com.oladimeji.myjournal/thoughts/export?format=json&gzip=true
+     */
+    public static final String PATH_EXPORT = "export";
+
+    /**
+     * Path for the drafts of the thought editor, one per thought,
+     * content://com.oladimeji.myjournal/drafts/3
+     */
+    public static final String PATH_DRAFTS = "drafts";
+
+    /**
+     * Path appended to the URI of a thought for its revisions,
+     * content://com.oladimeji.myjournal/thoughts/3/revisions/12
+     */
+    public static final String PATH_REVISIONS = "revisions";
+
+    /**
+     * Path appended to the thoughts path for the number of thoughts and words per day or per
+     * month, content://com.oladimeji.myjournal/thoughts/calendar?period=month
+     */
+    public static final String PATH_CALENDAR = "calendar";
+
+    /**
+     * Path for the tags of the thoughts, content://com.oladimeji.myjournal/tags
+     */
+    public static final String PATH_TAGS = "tags";
+
+    /**
+     * Query parameter of the calendar choosing its rows, {@link #PERIOD_DAY} (the default) or
+     * {@link #PERIOD_MONTH}.
+     */
+    public static final String QUERY_PARAMETER_PERIOD = "period";
+    public static final String PERIOD_DAY = "day";
+    public static final String PERIOD_MONTH = "month";
+
+    /**
+     * Query parameter choosing the export format, {@link #EXPORT_FORMAT_JSON} (the default)
+     * or {@link #EXPORT_FORMAT_CSV}.
+     */
+    public static final String QUERY_PARAMETER_FORMAT = "format";
+    public static final String EXPORT_FORMAT_JSON = "json";
+    public static final String EXPORT_FORMAT_CSV = "csv";
+
+    /**
+     * Query parameter asking for a gzipped export when "true".
+     */
+    public static final String QUERY_PARAMETER_GZIP = "gzip";
+
+    /**
+     * Query parameter of a bulk insert into the thoughts directory; when "true", thoughts with
+     * the same content hash as a thought already in the journal are skipped.
+     */
+    public static final String QUERY_PARAMETER_DEDUPE = "dedupe";
+
+    /**
+     * Query parameter holding the text to search for.
+     */
+    public static final String QUERY_PARAMETER_QUERY = "q";
+
+    /**
+     * Query parameter holding the last _id the caller has already seen. When present, the
+     * thoughts directory is read as a page of rows with a larger _id (keyset pagination).
+     */
+    public static final String QUERY_PARAMETER_AFTER = "after";
+
+    /**
+     * Query parameter restricting the thoughts directory to the thoughts filed under all the
+     * given tags, separated by commas, e.g. thoughts?tags=beach,family. See
+     * {@link MyJournalEntry#buildTaggedUri}.
+     */
+    public static final String QUERY_PARAMETER_TAGS = "tags";
+
+    /**
+     * Query parameter holding the maximum number of rows to return for a page.
+     */
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+    /**
+     * Query parameters bounding the thoughts directory to a time range on
+     * {@link MyJournalEntry#COLUMN_JOURNAL_TIMESTAMP}, in epoch milliseconds.
+     * "from" is inclusive and "to" is exclusive; either can be left out.
+     * The calendar takes day or month keys instead, see {@link CalendarEntry}.
+     */
+    public static final String QUERY_PARAMETER_FROM = "from";
+    public static final String QUERY_PARAMETER_TO = "to";
+
+    /**
+     * Number of rows returned for a page when no limit is given.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * Provider call returning the statistics of the single-thought row cache, use with
+     * {@code ContentResolver.call(MyJournalEntry.CONTENT_URI, METHOD_GET_CACHE_STATS, null, null)}.
+     * The returned Bundle holds the {@link #KEY_CACHE_HITS}, {@link #KEY_CACHE_MISSES} and
+     * {@link #KEY_CACHE_SIZE} ints.
+     */
+    public static final String METHOD_GET_CACHE_STATS = "getCacheStats";
+    public static final String KEY_CACHE_HITS = "hits";
+    public static final String KEY_CACHE_MISSES = "misses";
+    public static final String KEY_CACHE_SIZE = "size";
+
+    /**
+     * Provider call switching the journal to the one of the given user, use with
+     * {@code ContentResolver.call(MyJournalEntry.CONTENT_URI, METHOD_SWITCH_USER, userId, null)}.
+     * Each user has a database of their own; a null user id selects the journal used while
+     * nobody is signed in. Observers of {@link MyJournalEntry#CONTENT_URI} are notified.
+     */
+    public static final String METHOD_SWITCH_USER = "switchUser";
+
+    /**
+     * Provider call bringing back a deleted thought, use with
+     * {@code ContentResolver.call(MyJournalEntry.CONTENT_URI, METHOD_RESTORE, String.valueOf(id), null)}.
+     * Deleted thoughts can be restored until they are purged by {@link #METHOD_COMPACT}, at
+     * least {@link #RESTORE_WINDOW_MILLIS} after their deletion.
+     */
+    public static final String METHOD_RESTORE = "restore";
+
+    /**
+     * Provider call purging the thoughts deleted more than {@link #RESTORE_WINDOW_MILLIS} ago
+     * and giving the freed pages back to the file system, in bounded chunks. The returned
+     * Bundle holds the {@link #KEY_PURGED_ROWS} int and the {@link #KEY_FREED_PAGES} long.
+     * Slow, not to be called from the main thread.
+     */
+    public static final String METHOD_COMPACT = "compact";
+    public static final String KEY_PURGED_ROWS = "purgedRows";
+    public static final String KEY_FREED_PAGES = "freedPages";
+
+    /**
+     * Provider call returning the call counts, row counts and latency percentiles of the
+     * provider operations as a text table, in the {@link #KEY_METRICS} string. When the arg is
+     * a file name, the table is also written to that file of the app's files directory.
+     */
+    public static final String METHOD_GET_METRICS = "getMetrics";
+    public static final String KEY_METRICS = "metrics";
+
+    /**
+     * How long deleted thoughts can be restored for.
+     */
+    public static final long RESTORE_WINDOW_MILLIS = 24 * 60 * 60 * 1000L;
+
     /**
      * Inner class that defines constant values for the journals database table.
      * Each entry in the table represents a single thought.
@@ -55,9 +206,93 @@ public class MyJournalContract {
                 ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_JOURNAL;
 
 
+        /**
+         * The content URI for full-text search over the thoughts. Results hold the _id, date,
+         * time and timestamp of each matching thought plus {@link #COLUMN_SEARCH_SNIPPET} and
+         * {@link #COLUMN_SEARCH_RANK}, best match first.
+         */
+        public static final Uri SEARCH_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SEARCH);
+
+        /**
+         * Builds the content URI searching the thoughts for the given text, returning at most
+         * {@code limit} matches.
+         */
+        public static Uri buildSearchUri(String text, int limit) {
+            return SEARCH_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_QUERY, text)
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+        /**
+         * Builds the content URI streaming an export of the whole journal.
+         *
+         * @param format {@link MyJournalContract#EXPORT_FORMAT_JSON} or
+         *               {@link MyJournalContract#EXPORT_FORMAT_CSV}
+         * @param gzip   whether the stream is gzipped
+         */
+        public static Uri buildExportUri(String format, boolean gzip) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(PATH_EXPORT)
+                    .appendQueryParameter(QUERY_PARAMETER_FORMAT, format)
+                    .appendQueryParameter(QUERY_PARAMETER_GZIP, String.valueOf(gzip))
+                    .build();
+        }
+
+        /**
+         * Builds the content URI for one page of thoughts, i.e. the rows whose _id is
+         * greater than {@code afterId}, ordered by _id.
+         * For instance, content://com.oladimeji.myjournal/thoughts?after=120&limit=50
+         *
+         * @param afterId the last _id of the previous page, 0 for the first page
+         * @param limit   the maximum number of rows in the page
+         */
+        public static Uri buildPageUri(long afterId, int limit) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_AFTER, String.valueOf(afterId))
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+        /**
+         * Builds the content URI for the thoughts whose timestamp falls in [from, to).
+         *
+         * @param from epoch milliseconds, inclusive
+         * @param to   epoch milliseconds, exclusive
+         */
+        public static Uri buildDateRangeUri(long from, long to) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_FROM, String.valueOf(from))
+                    .appendQueryParameter(QUERY_PARAMETER_TO, String.valueOf(to))
+                    .build();
+        }
+
+        /**
+         * Builds the content URI for the thoughts filed under every one of the given tags. Tags
+         * are found in the text of the thoughts as #hashtags, see {@link TagEntry}. Page and
+         * time range parameters can be added to the URI.
+         *
+         * @param tags with or without their '#', in any case
+         */
+        public static Uri buildTaggedUri(String... tags) {
+            StringBuilder list = new StringBuilder();
+            for (String tag : tags) {
+                if (list.length() > 0) {
+                    list.append(',');
+                }
+                list.append(tag);
+            }
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_TAGS, list.toString())
+                    .build();
+        }
+
         /** Name of database table for thoughts */
         public final static String TABLE_NAME = "thoughts";
 
+        /** Name of the full-text index over the thought column, kept in sync by triggers */
+        public final static String FTS_TABLE_NAME = "thoughts_fts";
+
 
         /**
          * Unique ID number for the thoughts (only for use in the database table).
@@ -85,5 +320,398 @@ public class MyJournalContract {
          * Type: TEXT
          */
         public final static String COLUMN_JOURNAL_THOUGHT = "thought";
+
+        /**
+         * When the event happened, in epoch milliseconds, derived from the date and time
+         * columns. Null when they could not be parsed. Indexed, so it is the column to sort
+         * and filter on.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_JOURNAL_TIMESTAMP = "timestamp";
+
+        /**
+         * Search results only: an excerpt of the thought around the matched words, which are
+         * wrapped in &lt;b&gt; tags.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_SEARCH_SNIPPET = "snippet";
+
+        /**
+         * Search results only: relevance of the match, higher is better.
+         *
+         * Type: REAL
+         */
+        public final static String COLUMN_SEARCH_RANK = "rank";
+
+        /**
+         * SHA-1 of the date, time and thought, see {@link MyJournalHashes}. Indexed, it lets
+         * imports skip thoughts the journal already holds.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_JOURNAL_HASH = "hash";
+
+        /**
+         * The thought, deflated, when it was stored compressed. The thought column is then
+         * empty; the provider decompresses the text into it on every read, so callers never
+         * need this column.
+         *
+         * Type: BLOB
+         */
+        public final static String COLUMN_JOURNAL_THOUGHT_BLOB = "thought_blob";
+
+        /**
+         * The first {@link MyJournalCompression#PREVIEW_LENGTH} characters of the thought, for
+         * lists that do not need the whole text.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_JOURNAL_PREVIEW = "preview";
+
+        /**
+         * Identifier of the thought shared by every device it is synced to, assigned when the
+         * thought is inserted.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_SYNC_ID = "sync_id";
+
+        /**
+         * The version vector of the thought as of its last sync, see {@link SyncEngine}.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_VERSION_VECTOR = "version_vector";
+
+        /**
+         * When the thought was last written, in epoch milliseconds. Settles conflicting edits
+         * from different devices, the latest one wins.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_UPDATED_AT = "updated_at";
+
+        /**
+         * When the thought was deleted, in epoch milliseconds, or null if it was not. Deleted
+         * thoughts are left out of every query until they are purged.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_DELETED_AT = "deleted_at";
+
+        /**
+         * The day the event happened as the number yyyymmdd, derived from the date column,
+         * see {@link MyJournalDates#parseDay}. Null when the date could not be parsed.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_JOURNAL_DAY = "day";
+
+        /**
+         * Number of words in the thought, derived from it, see {@link MyJournalSearch#countWords}.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_JOURNAL_WORD_COUNT = "word_count";
+
+        /**
+         * Columns needed to show thoughts in a list: the preview stands in for the thought, so
+         * the full text of long thoughts never fills the cursor window, and the content hash
+         * tells when a thought was edited past its preview.
+         */
+        public static final String[] LIST_PROJECTION = {_ID, COLUMN_JOURNAL_DATE, COLUMN_JOURNAL_TIME,
+                COLUMN_JOURNAL_TIMESTAMP, COLUMN_JOURNAL_PREVIEW, COLUMN_JOURNAL_HASH};
+
+        /** Sort order for thoughts from the most recent to the oldest, served by an index */
+        public static final String SORT_NEWEST_FIRST = COLUMN_JOURNAL_TIMESTAMP + " DESC";
+
+        /** Sort order for thoughts from the oldest to the most recent, served by an index */
+        public static final String SORT_OLDEST_FIRST = COLUMN_JOURNAL_TIMESTAMP + " ASC";
+    }
+
+    /**
+     * Constant values for the drafts table. A draft holds what was typed in the editor of a
+     * thought since it was last saved, so it survives the process being killed. The editor of a
+     * new thought uses the draft of {@link #NEW_THOUGHT_ID}.
+     */
+    public static final class DraftEntry implements BaseColumns {
+
+        /** The content URI of the drafts, a draft is always addressed by its thought's id */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_DRAFTS);
+
+        /**
+         * The MIME type of the URI of a single draft.
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_DRAFTS;
+
+        /** Thought id of the draft of a thought not saved yet */
+        public static final long NEW_THOUGHT_ID = 0;
+
+        /**
+         * Builds the URI of the draft of the given thought. Inserting into it replaces the
+         * draft, deleting it discards the draft.
+         */
+        public static Uri buildDraftUri(long thoughtId) {
+            return ContentUris.withAppendedId(CONTENT_URI, thoughtId);
+        }
+
+        /** Name of database table for drafts */
+        public final static String TABLE_NAME = "drafts";
+
+        /**
+         * Id of the thought being edited, {@link #NEW_THOUGHT_ID} for a new one. Unique.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_THOUGHT_ID = "thought_id";
+
+        /**
+         * Type: TEXT
+         */
+        public final static String COLUMN_DATE = MyJournalEntry.COLUMN_JOURNAL_DATE;
+
+        /**
+         * Type: TEXT
+         */
+        public final static String COLUMN_TIME = MyJournalEntry.COLUMN_JOURNAL_TIME;
+
+        /**
+         * Type: TEXT
+         */
+        public final static String COLUMN_THOUGHT = MyJournalEntry.COLUMN_JOURNAL_THOUGHT;
+
+        /**
+         * Content hash of the date, time and thought, see {@link MyJournalHashes}. Tells the
+         * autosaver whether the editor changed since the draft was written.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_HASH = MyJournalEntry.COLUMN_JOURNAL_HASH;
+
+        /**
+         * When the draft was written, in epoch milliseconds.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_UPDATED_AT = MyJournalEntry.COLUMN_UPDATED_AT;
+    }
+
+    /**
+     * Constant values for the revision history of the thoughts. Every edit of the date, time or
+     * text of a thought adds a revision, revision 0 being the thought as it was before its first
+     * edit. The text of a revision is stored as a delta against the previous one, with a full
+     * copy every few revisions, see {@link MyJournalRevisions}.
+     */
+    public static final class RevisionEntry implements BaseColumns {
+
+        /**
+         * The MIME type of the URI listing the revisions of a thought.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_REVISIONS;
+
+        /**
+         * The MIME type of the URI of a single revision.
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_REVISIONS;
+
+        /**
+         * Builds the URI listing the revisions of the given thought, oldest first. Rows hold
+         * {@link #COLUMN_REVISION}, {@link #COLUMN_CREATED_AT}, {@link #COLUMN_DATE},
+         * {@link #COLUMN_TIME}, {@link #COLUMN_KEYFRAME} and {@link #COLUMN_SIZE}.
+         */
+        public static Uri buildRevisionsUri(long thoughtId) {
+            return ContentUris.withAppendedId(MyJournalEntry.CONTENT_URI, thoughtId).buildUpon()
+                    .appendPath(PATH_REVISIONS)
+                    .build();
+        }
+
+        /**
+         * Builds the URI of one revision of the given thought. Its single row holds the
+         * thought as of that revision, rebuilt from the deltas, in {@link #COLUMN_THOUGHT}.
+         */
+        public static Uri buildRevisionUri(long thoughtId, int revision) {
+            return ContentUris.withAppendedId(buildRevisionsUri(thoughtId), revision);
+        }
+
+        /** Name of database table for revisions */
+        public final static String TABLE_NAME = "revisions";
+
+        /**
+         * Id of the thought the revision belongs to.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_THOUGHT_ID = "thought_id";
+
+        /**
+         * Number of the revision, counting from 0 for each thought.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_REVISION = "revision";
+
+        /**
+         * When the revision was written, in epoch milliseconds.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_CREATED_AT = "created_at";
+
+        /**
+         * Type: TEXT
+         */
+        public final static String COLUMN_DATE = MyJournalEntry.COLUMN_JOURNAL_DATE;
+
+        /**
+         * Type: TEXT
+         */
+        public final static String COLUMN_TIME = MyJournalEntry.COLUMN_JOURNAL_TIME;
+
+        /**
+         * Single revision only: the text of the thought as of the revision.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_THOUGHT = MyJournalEntry.COLUMN_JOURNAL_THOUGHT;
+
+        /**
+         * 1 if the revision stores the full text, 0 if it stores a delta.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_KEYFRAME = "keyframe";
+
+        /**
+         * List only: bytes of text stored for the revision.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SIZE = "size";
+    }
+
+    /**
+     * Constant values for the calendar of the journal: the number of thoughts and of words of
+     * every day and every month that has thoughts. The counts are kept in tables of their own
+     * by triggers on the thoughts table, so reading a year is a lookup of at most a few hundred
+     * rows on their primary key, however many thoughts the journal holds. Deleted thoughts do
+     * not count.
+     *
+     * Days are keyed by the number yyyymmdd and months by yyyymm, e.g. 20180627 and 201806,
+     * from the date entered with the thought; thoughts whose date cannot be parsed are left
+     * out. The "from" (inclusive) and "to" (exclusive) query parameters bound the keys.
+     */
+    public static final class CalendarEntry implements BaseColumns {
+
+        /** The content URI of the calendar, rows are days unless the URI asks for months */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(MyJournalEntry.CONTENT_URI, PATH_CALENDAR);
+
+        /**
+         * The MIME type of the calendar URIs.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_CALENDAR;
+
+        /**
+         * Builds the URI of the days in [fromDay, toDay) that have thoughts, in order. Rows
+         * hold {@link #COLUMN_DAY}, {@link #COLUMN_ENTRIES} and {@link #COLUMN_WORDS}, with the
+         * day as their _id.
+         */
+        public static Uri buildDaysUri(int fromDay, int toDay) {
+            return buildUri(PERIOD_DAY, fromDay, toDay);
+        }
+
+        /**
+         * Builds the URI of the months in [fromMonth, toMonth) that have thoughts, in order.
+         * Rows hold {@link #COLUMN_MONTH}, {@link #COLUMN_ENTRIES} and {@link #COLUMN_WORDS},
+         * with the month as their _id.
+         */
+        public static Uri buildMonthsUri(int fromMonth, int toMonth) {
+            return buildUri(PERIOD_MONTH, fromMonth, toMonth);
+        }
+
+        private static Uri buildUri(String period, int from, int to) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_PERIOD, period)
+                    .appendQueryParameter(QUERY_PARAMETER_FROM, String.valueOf(from))
+                    .appendQueryParameter(QUERY_PARAMETER_TO, String.valueOf(to))
+                    .build();
+        }
+
+        /** Name of database table of the days */
+        public final static String DAYS_TABLE_NAME = "calendar_days";
+
+        /** Name of database table of the months */
+        public final static String MONTHS_TABLE_NAME = "calendar_months";
+
+        /**
+         * Days only: the day as the number yyyymmdd. Primary key.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_DAY = MyJournalEntry.COLUMN_JOURNAL_DAY;
+
+        /**
+         * Months only: the month as the number yyyymm. Primary key.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_MONTH = "month";
+
+        /**
+         * Number of thoughts of the day or month.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ENTRIES = "entries";
+
+        /**
+         * Number of words in the thoughts of the day or month.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_WORDS = "words";
+    }
+
+    /**
+     * Constant values for the tags of the thoughts. A thought is filed under every #hashtag in
+     * its text, see {@link MyJournalHashtags}; the provider keeps the tags as the text is
+     * inserted and edited. Each tag has a posting list, the thoughts filed under it, held in an
+     * index, so filtering the thoughts by tags reads those lists rather than the thoughts.
+     */
+    public static final class TagEntry implements BaseColumns {
+
+        /**
+         * The content URI listing the tags of the live thoughts by name. Rows hold _id,
+         * {@link #COLUMN_NAME} and {@link #COLUMN_THOUGHTS}.
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_TAGS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI}.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_TAGS;
+
+        /** Name of database table for tags */
+        public final static String TABLE_NAME = "tags";
+
+        /**
+         * The tag, lowercase and without its '#'. Unique.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_NAME = "name";
+
+        /**
+         * List only: number of thoughts filed under the tag.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_THOUGHTS = "thoughts";
     }
 }
@@ -0,0 +1,121 @@
+package com.oladimeji.myjournal.data;
+
+import java.util.Calendar;
+
+/**
+ * Converts the date and time strings entered in the editor ("6/27/2018" and "9:5") into the
+ * epoch milliseconds stored in {@link MyJournalContract.MyJournalEntry#COLUMN_JOURNAL_TIMESTAMP}.
+ */
+public final class MyJournalDates {
+
+    private MyJournalDates() {}
+
+    /**
+     * Parse a month/day/year date and an hour:minute time in the device time zone.
+     *
+     * @return the epoch milliseconds, or null if either string is not in the expected format
+     */
+    public static Long parseTimestamp(String date, String time) {
+        if (date == null || time == null) {
+            return null;
+        }
+        int[] dateParts = parseNumbers(date.trim(), '/', 3);
+        int[] timeParts = parseNumbers(time.trim(), ':', 2);
+        if (dateParts == null || timeParts == null) {
+            return null;
+        }
+        int month = dateParts[0];
+        int day = dateParts[1];
+        int year = dateParts[2];
+        int hour = timeParts[0];
+        int minute = timeParts[1];
+        if (month < 1 || month > 12 || day < 1 || day > 31 || year < 1
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return null;
+        }
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.setLenient(false);
+        calendar.set(year, month - 1, day, hour, minute);
+        try {
+            return calendar.getTimeInMillis();
+        } catch (IllegalArgumentException e) {
+            // Day out of range for the month, e.g. 2/30
+            return null;
+        }
+    }
+
+    /**
+     * Parse a month/day/year date into the day key used by the calendar tables, the number
+     * yyyymmdd, e.g. 20180627 for "6/27/2018". Keys sort like the days they stand for, and the
+     * month of a day is its key divided by 100. The key is the day that was entered, it does not
+     * depend on the time zone.
+     *
+     * @return the key, or null if the string is not a valid date
+     */
+    public static Integer parseDay(String date) {
+        if (date == null) {
+            return null;
+        }
+        int[] dateParts = parseNumbers(date.trim(), '/', 3);
+        if (dateParts == null) {
+            return null;
+        }
+        int month = dateParts[0];
+        int day = dateParts[1];
+        int year = dateParts[2];
+        if (month < 1 || month > 12 || day < 1 || year < 1 || year > 9999 || day > daysInMonth(year, month)) {
+            return null;
+        }
+        return year * 10000 + month * 100 + day;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Split the string on the separator into exactly {@code count} non-negative numbers.
+     *
+     * @return the numbers, or null if the string does not have that shape
+     */
+    private static int[] parseNumbers(String value, char separator, int count) {
+        int[] numbers = new int[count];
+        int index = 0;
+        int current = -1;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == separator) {
+                if (current < 0 || index == count - 1) {
+                    return null;
+                }
+                numbers[index++] = current;
+                current = -1;
+            } else if (c >= '0' && c <= '9') {
+                current = (current < 0 ? 0 : current * 10) + (c - '0');
+                if (current > 99999) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        if (current < 0 || index != count - 1) {
+            return null;
+        }
+        numbers[index] = current;
+        return numbers;
+    }
+}
@@ -5,8 +5,11 @@ package com.oladimeji.myjournal.data;
  */
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import com.oladimeji.myjournal.data.MyJournalContract.DraftEntry;
 import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
 
 /**
@@ -20,7 +23,82 @@ public class MyJournalDbHelper  extends SQLiteOpenHelper{
     /**
      * Database version. If you change the database schema, you must increment the database version.
      */
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 11;
+
+    /** Name of the index on the timestamp column */
+    private static final String INDEX_TIMESTAMP = "thoughts_timestamp_index";
+
+    /** Name of the index on the content hash column */
+    private static final String INDEX_HASH = "thoughts_hash_index";
+
+    /** Name of the unique index on the sync id column */
+    private static final String INDEX_SYNC_ID = "thoughts_sync_id_index";
+
+    /** SQL for the current time in epoch milliseconds */
+    private static final String NOW_MILLIS = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    /** SQL for a new random sync id */
+    private static final String NEW_SYNC_ID = "lower(hex(randomblob(16)))";
+
+    /** Number of rows read at a time while backfilling a derived column */
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    /**
+     * Connection settings applied each time the database is opened, see {@link #onConfigure}
+     * for which connections and files they reach.
+     */
+    public static final class Profile {
+
+        /**
+         * Write-ahead logging with NORMAL sync: readers are not blocked by a writer, and a
+         * commit does not wait for the disk. A power loss can lose the last commits but never
+         * corrupts the database. This is what the app uses.
+         */
+        public static final Profile DEFAULT = new Profile(true, 4096, 2048, "NORMAL");
+
+        /**
+         * The SQLite defaults the app used before: rollback journal and FULL sync, where a write
+         * locks readers out until it commits.
+         */
+        public static final Profile ROLLBACK_JOURNAL = new Profile(false, 4096, 2048, "FULL");
+
+        /**
+         * The default settings, with thoughts of 1 KiB or more stored compressed. Long thoughts
+         * then take less room in the file and in every cursor window, at the cost of inflating
+         * them when read.
+         */
+        public static final Profile COMPRESSED = new Profile(true, 4096, 2048, "NORMAL", 1024);
+
+        /** Whether to use write-ahead logging instead of the rollback journal */
+        final boolean writeAheadLogging;
+        /** Page size in bytes, only applies when the database file is created */
+        final int pageSize;
+        /** Page cache size of the primary connection, in KiB */
+        final int cacheSizeKb;
+        /** Value of PRAGMA synchronous for the writes: OFF, NORMAL or FULL */
+        final String synchronous;
+        /** Size in bytes from which thoughts are stored compressed, 0 to never compress */
+        final int compressionThreshold;
+
+        public Profile(boolean writeAheadLogging, int pageSize, int cacheSizeKb, String synchronous) {
+            this(writeAheadLogging, pageSize, cacheSizeKb, synchronous, 0);
+        }
+
+        public Profile(boolean writeAheadLogging, int pageSize, int cacheSizeKb, String synchronous,
+                       int compressionThreshold) {
+            if (!"OFF".equals(synchronous) && !"NORMAL".equals(synchronous) && !"FULL".equals(synchronous)) {
+                throw new IllegalArgumentException("Unknown synchronous level " + synchronous);
+            }
+            this.writeAheadLogging = writeAheadLogging;
+            this.pageSize = pageSize;
+            this.cacheSizeKb = cacheSizeKb;
+            this.synchronous = synchronous;
+            this.compressionThreshold = compressionThreshold;
+        }
+    }
+
+    /* Settings applied in onConfigure */
+    private final Profile mProfile;
 
     /**
      * Constructs a new instance of {@link MyJournalDbHelper}.
@@ -28,7 +106,79 @@ public class MyJournalDbHelper  extends SQLiteOpenHelper{
      * @param context of the app
      */
     public MyJournalDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, Profile.DEFAULT);
+    }
+
+    /**
+     * Constructs a new instance of {@link MyJournalDbHelper} with the given connection settings.
+     *
+     * @param context of the app
+     * @param profile connection settings
+     */
+    public MyJournalDbHelper(Context context, Profile profile) {
+        this(context, DATABASE_NAME, profile);
+    }
+
+    /**
+     * Returns the name of the database file holding the journal of the given user, or of the
+     * journal used while nobody is signed in when the user id is null.
+     */
+    static String databaseName(String userId) {
+        if (userId == null) {
+            return DATABASE_NAME;
+        }
+        // Keep the file name safe whatever the account provider uses as ids
+        return "journal_" + userId.replaceAll("[^A-Za-z0-9_-]", "_") + ".db";
+    }
+
+    /**
+     * Constructs a helper for a database file other than the app's, e.g. for benchmarks.
+     */
+    MyJournalDbHelper(Context context, String name, Profile profile) {
+        super(context, name, null, DATABASE_VERSION);
+        mProfile = profile;
+    }
+
+    /**
+     * Returns the size in bytes from which thoughts are to be stored compressed, or 0 if they
+     * are always stored in plain text.
+     */
+    public int getCompressionThreshold() {
+        return mProfile.compressionThreshold;
+    }
+
+    /**
+     * This is called each time the database is opened, before it is created or upgraded.
+     *
+     * The page size and auto-vacuum mode belong to the file. By the time this runs the framework
+     * has already written the file, and once it is in WAL mode its page size is fixed, so both
+     * are set on a new file only, by rebuilding it before write-ahead logging is turned on.
+     * Older files keep their page size; MyJournalCompaction converts their auto-vacuum mode.
+     *
+     * The cache size and sync level belong to a connection, and only the primary connection
+     * comes through here. With WAL, the primary connection runs every write, so the sync level
+     * applies to every commit. The reads served by the other connections of the pool keep
+     * SQLite's default cache size.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        if (db.getVersion() == 0) {
+            // A new file, holding only the framework's metadata table
+            db.execSQL("PRAGMA page_size=" + mProfile.pageSize);
+            db.execSQL("PRAGMA auto_vacuum=INCREMENTAL");
+            db.execSQL("VACUUM");
+        }
+        // With WAL, the database keeps a pool of connections so reads run alongside a write
+        if (mProfile.writeAheadLogging) {
+            db.enableWriteAheadLogging();
+        } else {
+            db.disableWriteAheadLogging();
+        }
+        // A negative cache size is a number of KiB rather than of pages
+        db.execSQL("PRAGMA cache_size=-" + mProfile.cacheSizeKb);
+        // After the journal mode, which resets the sync level to the framework's
+        db.execSQL("PRAGMA synchronous=" + mProfile.synchronous);
     }
 
     /**
@@ -42,16 +192,320 @@ public class MyJournalDbHelper  extends SQLiteOpenHelper{
               + MyJournalEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
               + MyJournalEntry.COLUMN_JOURNAL_DATE + " TEXT NOT NULL, "
               + MyJournalEntry.COLUMN_JOURNAL_TIME + " TEXT NOT NULL, "
-              + MyJournalEntry.COLUMN_JOURNAL_THOUGHT + " TEXT NOT NULL );";
+              + MyJournalEntry.COLUMN_JOURNAL_THOUGHT + " TEXT NOT NULL, "
+              + MyJournalEntry.COLUMN_JOURNAL_TIMESTAMP + " INTEGER, "
+              + MyJournalEntry.COLUMN_JOURNAL_HASH + " TEXT, "
+              + MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB + " BLOB, "
+              + MyJournalEntry.COLUMN_JOURNAL_PREVIEW + " TEXT, "
+              + MyJournalEntry.COLUMN_SYNC_ID + " TEXT, "
+              + MyJournalEntry.COLUMN_VERSION_VECTOR + " TEXT, "
+              + MyJournalEntry.COLUMN_UPDATED_AT + " INTEGER, "
+              + MyJournalEntry.COLUMN_DELETED_AT + " INTEGER, "
+              + MyJournalEntry.COLUMN_JOURNAL_DAY + " INTEGER, "
+              + MyJournalEntry.COLUMN_JOURNAL_WORD_COUNT + " INTEGER );";
 
        db.execSQL(CREATE_TABLE);
+       createTimestampIndex(db);
+       createHashIndex(db);
+       createSearchTable(db);
+       createSearchTriggers(db);
+       createSyncTables(db);
+       createSyncTriggers(db);
+       createDraftsTable(db);
+       MyJournalRevisions.createTable(db);
+       MyJournalCalendar.createTables(db);
+       MyJournalTags.createTables(db);
 
     }
     /**
-     * This is called when the database needs to be upgraded.
+     * This is called when the database needs to be upgraded. Each step moves the schema one
+     * version forward and keeps the existing thoughts.
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + MyJournalEntry.TABLE_NAME);
+        if (oldVersion < 2) {
+            // Version 2 adds the indexed timestamp column, filled in from date and time
+            db.execSQL("ALTER TABLE " + MyJournalEntry.TABLE_NAME + " ADD COLUMN "
+                    + MyJournalEntry.COLUMN_JOURNAL_TIMESTAMP + " INTEGER");
+            backfill(db, MyJournalEntry.COLUMN_JOURNAL_TIMESTAMP, new DerivedValue() {
+                @Override
+                public Object compute(String date, String time, String thought) {
+                    return MyJournalDates.parseTimestamp(date, time);
+                }
+            });
+            createTimestampIndex(db);
+        }
+        if (oldVersion < 3) {
+            // Version 3 adds the full-text index, built from the existing thoughts. Its triggers
+            // are created by the last step, as they depend on the columns of version 5.
+            createSearchTable(db);
+            db.execSQL("INSERT INTO " + MyJournalEntry.FTS_TABLE_NAME + "("
+                    + MyJournalEntry.FTS_TABLE_NAME + ") VALUES('rebuild')");
+        }
+        if (oldVersion < 4) {
+            // Version 4 adds the indexed content hash used to skip duplicates on import
+            db.execSQL("ALTER TABLE " + MyJournalEntry.TABLE_NAME + " ADD COLUMN "
+                    + MyJournalEntry.COLUMN_JOURNAL_HASH + " TEXT");
+            backfill(db, MyJournalEntry.COLUMN_JOURNAL_HASH, new DerivedValue() {
+                @Override
+                public Object compute(String date, String time, String thought) {
+                    return MyJournalHashes.contentHash(date, time, thought);
+                }
+            });
+            createHashIndex(db);
+        }
+        if (oldVersion < 5) {
+            // Version 5 adds compressed storage and the preview column. Existing thoughts stay
+            // in plain text, the search triggers now leave compressed thoughts to the provider.
+            db.execSQL("ALTER TABLE " + MyJournalEntry.TABLE_NAME + " ADD COLUMN "
+                    + MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB + " BLOB");
+            db.execSQL("ALTER TABLE " + MyJournalEntry.TABLE_NAME + " ADD COLUMN "
+                    + MyJournalEntry.COLUMN_JOURNAL_PREVIEW + " TEXT");
+            db.execSQL("UPDATE " + MyJournalEntry.TABLE_NAME + " SET " + MyJournalEntry.COLUMN_JOURNAL_PREVIEW
+                    + "=substr(" + MyJournalEntry.COLUMN_JOURNAL_THOUGHT + ", 1, "
+                    + MyJournalCompression.PREVIEW_LENGTH + ")");
+            for (String trigger : new String[]{"_before_update", "_before_delete", "_after_update", "_after_insert"}) {
+                db.execSQL("DROP TRIGGER IF EXISTS " + MyJournalEntry.FTS_TABLE_NAME + trigger);
+            }
+            createSearchTriggers(db);
+        }
+        if (oldVersion < 6) {
+            // Version 6 adds sync. Every existing thought gets a sync id and is marked as
+            // changed, so the first sync uploads the whole journal. The triggers logging the
+            // changes are created by the last step, as they depend on the columns of version 7.
+            db.execSQL("ALTER TABLE " + MyJournalEntry.TABLE_NAME + " ADD COLUMN "
+                    + MyJournalEntry.COLUMN_SYNC_ID + " TEXT");
+            db.execSQL("ALTER TABLE " + MyJournalEntry.TABLE_NAME + " ADD COLUMN "
+                    + MyJournalEntry.COLUMN_VERSION_VECTOR + " TEXT");
+            db.execSQL("ALTER TABLE " + MyJournalEntry.TABLE_NAME + " ADD COLUMN "
+                    + MyJournalEntry.COLUMN_UPDATED_AT + " INTEGER");
+            db.execSQL("UPDATE " + MyJournalEntry.TABLE_NAME + " SET " + MyJournalEntry.COLUMN_SYNC_ID + "="
+                    + NEW_SYNC_ID + ", " + MyJournalEntry.COLUMN_UPDATED_AT + "=COALESCE("
+                    + MyJournalEntry.COLUMN_JOURNAL_TIMESTAMP + ", " + NOW_MILLIS + ")");
+            createSyncTables(db);
+            db.execSQL("INSERT INTO " + SyncEngine.LOG_TABLE_NAME + "(" + MyJournalEntry.COLUMN_SYNC_ID
+                    + ") SELECT " + MyJournalEntry.COLUMN_SYNC_ID + " FROM " + MyJournalEntry.TABLE_NAME
+                    + " ORDER BY " + MyJournalEntry._ID);
+        }
+        if (oldVersion < 7) {
+            // Version 7 deletes thoughts softly, the change log now also watches deletions
+            db.execSQL("ALTER TABLE " + MyJournalEntry.TABLE_NAME + " ADD COLUMN "
+                    + MyJournalEntry.COLUMN_DELETED_AT + " INTEGER");
+            for (String trigger : new String[]{"_after_insert", "_after_update", "_after_delete"}) {
+                db.execSQL("DROP TRIGGER IF EXISTS " + SyncEngine.LOG_TABLE_NAME + trigger);
+            }
+            createSyncTriggers(db);
+        }
+        if (oldVersion < 8) {
+            // Version 8 keeps the drafts of the editor
+            createDraftsTable(db);
+        }
+        if (oldVersion < 9) {
+            // Version 9 keeps the revision history of the thoughts
+            MyJournalRevisions.createTable(db);
+        }
+        if (oldVersion < 10) {
+            // Version 10 adds the day and word count of each thought, and the calendar counting
+            // them, built from the existing thoughts before its triggers take over
+            db.execSQL("ALTER TABLE " + MyJournalEntry.TABLE_NAME + " ADD COLUMN "
+                    + MyJournalEntry.COLUMN_JOURNAL_DAY + " INTEGER");
+            db.execSQL("ALTER TABLE " + MyJournalEntry.TABLE_NAME + " ADD COLUMN "
+                    + MyJournalEntry.COLUMN_JOURNAL_WORD_COUNT + " INTEGER");
+            backfill(db, MyJournalEntry.COLUMN_JOURNAL_DAY, new DerivedValue() {
+                @Override
+                public Object compute(String date, String time, String thought) {
+                    return MyJournalDates.parseDay(date);
+                }
+            }, true);
+            backfill(db, MyJournalEntry.COLUMN_JOURNAL_WORD_COUNT, new DerivedValue() {
+                @Override
+                public Object compute(String date, String time, String thought) {
+                    return MyJournalSearch.countWords(thought);
+                }
+            }, true);
+            MyJournalCalendar.createTables(db);
+            MyJournalCalendar.rebuild(db);
+        }
+        if (oldVersion < 11) {
+            // Version 11 files the thoughts under their #hashtags
+            MyJournalTags.createTables(db);
+            MyJournalTags.rebuild(db);
+        }
+    }
+
+    private static void createHashIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_HASH + " ON "
+                + MyJournalEntry.TABLE_NAME + " (" + MyJournalEntry.COLUMN_JOURNAL_HASH + ")");
+    }
+
+    private static void createTimestampIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_TIMESTAMP + " ON "
+                + MyJournalEntry.TABLE_NAME + " (" + MyJournalEntry.COLUMN_JOURNAL_TIMESTAMP + ")");
+    }
+
+    /**
+     * Create the FTS4 index over the thought column. It is an external content table: the text
+     * lives only in the thoughts table, and the triggers of {@link #createSearchTriggers} keep
+     * the index in step with every insert, update and delete, whichever code path makes them.
+     */
+    private static void createSearchTable(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE " + MyJournalEntry.FTS_TABLE_NAME + " USING fts4(content=\""
+                + MyJournalEntry.TABLE_NAME + "\", " + MyJournalEntry.COLUMN_JOURNAL_THOUGHT + ")");
+    }
+
+    /**
+     * Create the triggers keeping the full-text index in step with the plain text thoughts.
+     * SQL cannot read a compressed thought, so those are indexed and unindexed by the provider,
+     * which knows their text.
+     */
+    private static void createSearchTriggers(SQLiteDatabase db) {
+        final String table = MyJournalEntry.TABLE_NAME;
+        final String fts = MyJournalEntry.FTS_TABLE_NAME;
+        final String thought = MyJournalEntry.COLUMN_JOURNAL_THOUGHT;
+        final String oldPlain = " WHEN old." + MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB + " IS NULL";
+        final String newPlain = " WHEN new." + MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB + " IS NULL";
+
+        // Old text has to leave the index before the row changes, new text enters after.
+        // Updates that leave the thought column alone do not touch the index.
+        db.execSQL("CREATE TRIGGER " + fts + "_before_update BEFORE UPDATE OF " + thought + " ON " + table
+                + oldPlain + " BEGIN DELETE FROM " + fts + " WHERE docid=old." + MyJournalEntry._ID + "; END");
+        db.execSQL("CREATE TRIGGER " + fts + "_before_delete BEFORE DELETE ON " + table
+                + oldPlain + " BEGIN DELETE FROM " + fts + " WHERE docid=old." + MyJournalEntry._ID + "; END");
+        db.execSQL("CREATE TRIGGER " + fts + "_after_update AFTER UPDATE OF " + thought + " ON " + table
+                + newPlain + " BEGIN INSERT INTO " + fts + "(docid, " + thought + ") VALUES(new."
+                + MyJournalEntry._ID + ", new." + thought + "); END");
+        db.execSQL("CREATE TRIGGER " + fts + "_after_insert AFTER INSERT ON " + table
+                + newPlain + " BEGIN INSERT INTO " + fts + "(docid, " + thought + ") VALUES(new."
+                + MyJournalEntry._ID + ", new." + thought + "); END");
+    }
+
+    /**
+     * Create the table of the editor drafts, see {@link MyJournalContract.DraftEntry}.
+     */
+    private static void createDraftsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + DraftEntry.TABLE_NAME + " ("
+                + DraftEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + DraftEntry.COLUMN_THOUGHT_ID + " INTEGER NOT NULL UNIQUE, "
+                + DraftEntry.COLUMN_DATE + " TEXT, "
+                + DraftEntry.COLUMN_TIME + " TEXT, "
+                + DraftEntry.COLUMN_THOUGHT + " TEXT, "
+                + DraftEntry.COLUMN_HASH + " TEXT, "
+                + DraftEntry.COLUMN_UPDATED_AT + " INTEGER)");
+    }
+
+    /**
+     * Create the tables used by {@link SyncEngine}.
+     */
+    private static void createSyncTables(SQLiteDatabase db) {
+        final String table = MyJournalEntry.TABLE_NAME;
+        final String syncId = MyJournalEntry.COLUMN_SYNC_ID;
+        final String updatedAt = MyJournalEntry.COLUMN_UPDATED_AT;
+        final String log = SyncEngine.LOG_TABLE_NAME;
+
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " + INDEX_SYNC_ID + " ON " + table + " (" + syncId + ")");
+        db.execSQL("CREATE TABLE " + log + " (" + SyncEngine.COLUMN_SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + syncId + " TEXT NOT NULL)");
+        db.execSQL("CREATE TABLE " + SyncEngine.TOMBSTONE_TABLE_NAME + " (" + syncId + " TEXT PRIMARY KEY, "
+                + MyJournalEntry.COLUMN_VERSION_VECTOR + " TEXT, " + updatedAt + " INTEGER)");
+        db.execSQL("CREATE TABLE " + SyncEngine.STATE_TABLE_NAME + " (" + SyncEngine.COLUMN_KEY
+                + " TEXT PRIMARY KEY, " + SyncEngine.COLUMN_VALUE + " TEXT)");
+    }
+
+    /**
+     * Create the triggers of the sync change log. Every change to a thought, whichever code
+     * path makes it, appends its sync id to the log, and thoughts purged from the table leave a
+     * tombstone so the deletion can be synced too.
+     */
+    private static void createSyncTriggers(SQLiteDatabase db) {
+        final String table = MyJournalEntry.TABLE_NAME;
+        final String syncId = MyJournalEntry.COLUMN_SYNC_ID;
+        final String updatedAt = MyJournalEntry.COLUMN_UPDATED_AT;
+        final String deletedAt = MyJournalEntry.COLUMN_DELETED_AT;
+        final String log = SyncEngine.LOG_TABLE_NAME;
+
+        // New thoughts get a sync id and a write time unless they came with them, as synced ones do
+        db.execSQL("CREATE TRIGGER " + log + "_after_insert AFTER INSERT ON " + table + " BEGIN"
+                + " UPDATE " + table + " SET " + syncId + "=COALESCE(new." + syncId + ", " + NEW_SYNC_ID + "), "
+                + updatedAt + "=COALESCE(new." + updatedAt + ", " + NOW_MILLIS + ") WHERE "
+                + MyJournalEntry._ID + "=new." + MyJournalEntry._ID + " AND (new." + syncId
+                + " IS NULL OR new." + updatedAt + " IS NULL);"
+                + " INSERT INTO " + log + "(" + syncId + ") SELECT " + syncId + " FROM " + table
+                + " WHERE " + MyJournalEntry._ID + "=new." + MyJournalEntry._ID + "; END");
+        // Only edits of the synced columns count, not the derived ones or the sync bookkeeping
+        db.execSQL("CREATE TRIGGER " + log + "_after_update AFTER UPDATE OF "
+                + MyJournalEntry.COLUMN_JOURNAL_DATE + ", " + MyJournalEntry.COLUMN_JOURNAL_TIME + ", "
+                + MyJournalEntry.COLUMN_JOURNAL_THOUGHT + ", " + MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB
+                + ", " + deletedAt + " ON " + table + " BEGIN INSERT INTO " + log + "(" + syncId + ") VALUES(new." + syncId + "); END");
+        db.execSQL("CREATE TRIGGER " + log + "_after_delete AFTER DELETE ON " + table
+                + " WHEN old." + syncId + " IS NOT NULL BEGIN"
+                + " INSERT OR REPLACE INTO " + SyncEngine.TOMBSTONE_TABLE_NAME + " VALUES(old." + syncId
+                + ", old." + MyJournalEntry.COLUMN_VERSION_VECTOR + ", COALESCE(old." + deletedAt + ", "
+                + NOW_MILLIS + "));"
+                // Purging a softly deleted thought does not change it, its deletion was logged
+                + " INSERT INTO " + log + "(" + syncId + ") SELECT old." + syncId
+                + " WHERE old." + deletedAt + " IS NULL; END");
+    }
+
+    /**
+     * A column value derived from the date, time and thought of a row.
+     */
+    private interface DerivedValue {
+        /** Returns a number, a String or null */
+        Object compute(String date, String time, String thought);
+    }
+
+    private static void backfill(SQLiteDatabase db, String column, DerivedValue derivedValue) {
+        backfill(db, column, derivedValue, false);
+    }
+
+    /**
+     * Fill in a derived column for every existing row. Rows are read in batches keyed on _id so
+     * memory stays flat however many thoughts there are.
+     *
+     * @param compressed whether thoughts may be stored compressed, i.e. the schema is at
+     *                   version 5 or later, in which case they are inflated for derivedValue
+     */
+    private static void backfill(SQLiteDatabase db, String column, DerivedValue derivedValue,
+                                 boolean compressed) {
+        SQLiteStatement update = db.compileStatement("UPDATE " + MyJournalEntry.TABLE_NAME
+                + " SET " + column + "=? WHERE " + MyJournalEntry._ID + "=?");
+        String[] columns = {MyJournalEntry._ID, MyJournalEntry.COLUMN_JOURNAL_DATE,
+                MyJournalEntry.COLUMN_JOURNAL_TIME, MyJournalEntry.COLUMN_JOURNAL_THOUGHT,
+                compressed ? MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB : "NULL"};
+        long lastId = 0;
+        try {
+            while (true) {
+                Cursor cursor = db.query(MyJournalEntry.TABLE_NAME, columns,
+                        MyJournalEntry._ID + ">?", new String[]{String.valueOf(lastId)},
+                        null, null, MyJournalEntry._ID + " ASC", String.valueOf(BACKFILL_BATCH_SIZE));
+                int rows;
+                try {
+                    rows = cursor.getCount();
+                    while (cursor.moveToNext()) {
+                        lastId = cursor.getLong(0);
+                        Object value = derivedValue.compute(cursor.getString(1), cursor.getString(2),
+                                ThoughtDecodingCursor.readThought(cursor, 3, 4));
+                        if (value == null) {
+                            // Rows that cannot be derived keep a null value
+                            continue;
+                        }
+                        if (value instanceof Number) {
+                            update.bindLong(1, ((Number) value).longValue());
+                        } else {
+                            update.bindString(1, value.toString());
+                        }
+                        update.bindLong(2, lastId);
+                        update.executeUpdateDelete();
+                    }
+                } finally {
+                    cursor.close();
+                }
+                if (rows < BACKFILL_BATCH_SIZE) {
+                    break;
+                }
+            }
+        } finally {
+            update.close();
+        }
     }
 }
@@ -0,0 +1,223 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.oladimeji.myjournal.data.MyJournalContract.DraftEntry;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Saves what is typed in the editor of a thought as its draft, see
+ * {@link MyJournalContract.DraftEntry}, so nothing is lost if the process is killed.
+ *
+ * Edits are debounced: the draft is saved once typing pauses for {@link #DEBOUNCE_MILLIS}, and
+ * at least every {@link #MAX_DELAY_MILLIS} while it goes on, i.e. a handful of writes per minute
+ * of typing at most. A save is skipped when the content hash matches the last draft written.
+ * Writes run on a background thread and are coalesced: a save made while the previous one is
+ * still waiting replaces it.
+ *
+ * The autosaver is used from the main thread.
+ */
+public class MyJournalDraftAutosaver {
+
+    private static final String LOG_TAG = MyJournalDraftAutosaver.class.getSimpleName();
+
+    /* Pause in typing after which the draft is saved */
+    static final long DEBOUNCE_MILLIS = 2000;
+    /* Longest time an edit waits to be saved while typing goes on */
+    static final long MAX_DELAY_MILLIS = 10000;
+
+    /* Writes the drafts of every editor, one at a time and in order */
+    private static final ExecutorService DRAFT_EXECUTOR;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, "MyJournalDrafts");
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        DRAFT_EXECUTOR = executor;
+    }
+
+    private final ContentResolver mContentResolver;
+    private final Uri mDraftUri;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // The editor content as of the last edit
+    private String mDate;
+    private String mTime;
+    private String mThought;
+
+    // Hash of the last draft saved or restored, null if there is none
+    private String mSavedHash;
+    // When the first edit not saved yet was made, -1 if there is none
+    private long mFirstUnsavedEdit = -1;
+    private boolean mDiscarded;
+
+    // The draft waiting to be written, null once taken by the writer or if discarded
+    private final AtomicReference<ContentValues> mPendingDraft = new AtomicReference<>();
+    private final AtomicInteger mWrites = new AtomicInteger();
+
+    private final Runnable mSave = new Runnable() {
+        @Override
+        public void run() {
+            save();
+        }
+    };
+
+    private final Runnable mWrite = new Runnable() {
+        @Override
+        public void run() {
+            ContentValues draft = mPendingDraft.getAndSet(null);
+            if (draft == null) {
+                return;
+            }
+            try {
+                mContentResolver.insert(mDraftUri, draft);
+                mWrites.incrementAndGet();
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Failed to save the draft " + mDraftUri, e);
+            }
+        }
+    };
+
+    /**
+     * @param thoughtId id of the thought edited, {@link DraftEntry#NEW_THOUGHT_ID} for a new one
+     */
+    public MyJournalDraftAutosaver(ContentResolver contentResolver, long thoughtId) {
+        mContentResolver = contentResolver;
+        mDraftUri = DraftEntry.buildDraftUri(thoughtId);
+    }
+
+    /**
+     * Returns the URI of the draft, to restore it from when the editor opens.
+     */
+    public Uri getDraftUri() {
+        return mDraftUri;
+    }
+
+    /**
+     * Tell the autosaver the editor now shows content already stored, either the saved thought
+     * or its draft, which needs no saving as long as it is not edited.
+     */
+    public void onLoaded(String date, String time, String thought) {
+        mDate = date;
+        mTime = time;
+        mThought = thought;
+        mSavedHash = MyJournalHashes.contentHash(date, time, thought);
+    }
+
+    /**
+     * Tell the autosaver the editor content changed, scheduling a save.
+     */
+    public void onEdited(String date, String time, String thought) {
+        if (mDiscarded) {
+            return;
+        }
+        mDate = date;
+        mTime = time;
+        mThought = thought;
+        long now = SystemClock.uptimeMillis();
+        if (mFirstUnsavedEdit == -1) {
+            mFirstUnsavedEdit = now;
+        }
+        mMainHandler.removeCallbacks(mSave);
+        long delay = Math.min(DEBOUNCE_MILLIS, mFirstUnsavedEdit + MAX_DELAY_MILLIS - now);
+        mMainHandler.postDelayed(mSave, Math.max(0, delay));
+    }
+
+    /**
+     * Save the draft now if it changed, e.g. when the editor goes to the background.
+     */
+    public void flush() {
+        mMainHandler.removeCallbacks(mSave);
+        if (!mDiscarded) {
+            save();
+        }
+    }
+
+    /**
+     * Save the draft now and stop saving, once the thought is handed over to be saved. The draft
+     * is kept until {@link #discard} is called with the save committed, so the edits survive a
+     * failed save or the process being killed before it.
+     */
+    public void stop() {
+        flush();
+        mDiscarded = true;
+    }
+
+    /**
+     * Delete the draft and stop saving, once the thought is saved or its edits thrown away.
+     */
+    public void discard() {
+        mDiscarded = true;
+        mMainHandler.removeCallbacks(mSave);
+        deleteDraft();
+    }
+
+    /**
+     * Returns the number of drafts written so far.
+     */
+    int getWriteCount() {
+        return mWrites.get();
+    }
+
+    private void save() {
+        mFirstUnsavedEdit = -1;
+        if (mThought == null && mDate == null && mTime == null) {
+            return;
+        }
+        String hash = MyJournalHashes.contentHash(mDate, mTime, mThought);
+        if (hash.equals(mSavedHash)) {
+            return;
+        }
+        mSavedHash = hash;
+        if (TextUtils.isEmpty(mDate) && TextUtils.isEmpty(mTime) && TextUtils.isEmpty(mThought)) {
+            // Everything was erased, there is nothing worth restoring
+            deleteDraft();
+            return;
+        }
+        ContentValues draft = new ContentValues();
+        draft.put(DraftEntry.COLUMN_DATE, mDate);
+        draft.put(DraftEntry.COLUMN_TIME, mTime);
+        draft.put(DraftEntry.COLUMN_THOUGHT, mThought);
+        draft.put(DraftEntry.COLUMN_HASH, hash);
+        draft.put(DraftEntry.COLUMN_UPDATED_AT, System.currentTimeMillis());
+        if (mPendingDraft.getAndSet(draft) == null) {
+            DRAFT_EXECUTOR.execute(mWrite);
+        }
+    }
+
+    /**
+     * Delete the draft after any write already running, dropping the one still waiting.
+     */
+    private void deleteDraft() {
+        mPendingDraft.set(null);
+        DRAFT_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mContentResolver.delete(mDraftUri, null, null);
+                } catch (RuntimeException e) {
+                    Log.e(LOG_TAG, "Failed to discard the draft " + mDraftUri, e);
+                }
+            }
+        });
+    }
+}
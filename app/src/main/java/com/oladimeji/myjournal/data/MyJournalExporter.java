@@ -0,0 +1,203 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.util.JsonWriter;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the whole journal to a stream as JSON or CSV.
+ *
+ * Rows are read through {@link MyJournalContentProvider} one keyset page at a time and written
+ * out before the next page is read, so memory use stays the same whatever the size of the
+ * journal.
+ */
+public class MyJournalExporter {
+
+    /** Output formats of an export */
+    public enum Format {
+        /** A JSON array with one object per thought */
+        JSON,
+        /** A header line followed by one line per thought */
+        CSV
+    }
+
+    /**
+     * Receives the progress of an export.
+     */
+    public interface ProgressListener {
+        /**
+         * Called after each chunk of rows is written.
+         *
+         * @param rowsWritten number of thoughts written so far
+         */
+        void onProgress(long rowsWritten);
+    }
+
+    /** Number of rows read from the provider at a time */
+    static final int CHUNK_SIZE = 500;
+
+    /* Field names of an exported thought, shared by both formats */
+    static final String FIELD_ID = "id";
+    static final String FIELD_DATE = "date";
+    static final String FIELD_TIME = "time";
+    static final String FIELD_TIMESTAMP = "timestamp";
+    static final String FIELD_THOUGHT = "thought";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String[] PROJECTION = {MyJournalEntry._ID,
+            MyJournalEntry.COLUMN_JOURNAL_DATE, MyJournalEntry.COLUMN_JOURNAL_TIME,
+            MyJournalEntry.COLUMN_JOURNAL_TIMESTAMP, MyJournalEntry.COLUMN_JOURNAL_THOUGHT};
+
+    private final ContentResolver mContentResolver;
+
+    public MyJournalExporter(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    /**
+     * Export every thought to the stream, in _id order. The stream is closed when done.
+     *
+     * @param out      where to write the export
+     * @param format   the output format
+     * @param gzip     whether to gzip the output
+     * @param listener notified as rows are written, may be null
+     * @return the number of thoughts written
+     */
+    public long export(OutputStream out, Format format, boolean gzip, ProgressListener listener)
+            throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(out, 8192) : out;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, UTF_8), 16 * 1024);
+        try {
+            return format == Format.JSON ? writeJson(writer, listener) : writeCsv(writer, listener);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private long writeJson(Writer writer, ProgressListener listener) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.beginArray();
+        long rows = 0;
+        long afterId = 0;
+        while (true) {
+            Cursor page = queryChunk(afterId);
+            int count;
+            try {
+                count = page.getCount();
+                while (page.moveToNext()) {
+                    afterId = page.getLong(0);
+                    json.beginObject();
+                    json.name(FIELD_ID).value(afterId);
+                    json.name(FIELD_DATE).value(page.getString(1));
+                    json.name(FIELD_TIME).value(page.getString(2));
+                    if (page.isNull(3)) {
+                        json.name(FIELD_TIMESTAMP).nullValue();
+                    } else {
+                        json.name(FIELD_TIMESTAMP).value(page.getLong(3));
+                    }
+                    json.name(FIELD_THOUGHT).value(page.getString(4));
+                    json.endObject();
+                }
+            } finally {
+                page.close();
+            }
+            rows += count;
+            if (listener != null && count > 0) {
+                listener.onProgress(rows);
+            }
+            if (count < CHUNK_SIZE) {
+                break;
+            }
+        }
+        json.endArray();
+        json.flush();
+        return rows;
+    }
+
+    private long writeCsv(Writer writer, ProgressListener listener) throws IOException {
+        writer.write(FIELD_ID + "," + FIELD_DATE + "," + FIELD_TIME + "," + FIELD_TIMESTAMP + ","
+                + FIELD_THOUGHT + "\r\n");
+        long rows = 0;
+        long afterId = 0;
+        while (true) {
+            Cursor page = queryChunk(afterId);
+            int count;
+            try {
+                count = page.getCount();
+                while (page.moveToNext()) {
+                    afterId = page.getLong(0);
+                    writer.write(Long.toString(afterId));
+                    writer.write(',');
+                    writeCsvField(writer, page.getString(1));
+                    writer.write(',');
+                    writeCsvField(writer, page.getString(2));
+                    writer.write(',');
+                    if (!page.isNull(3)) {
+                        writer.write(Long.toString(page.getLong(3)));
+                    }
+                    writer.write(',');
+                    writeCsvField(writer, page.getString(4));
+                    writer.write("\r\n");
+                }
+            } finally {
+                page.close();
+            }
+            rows += count;
+            if (listener != null && count > 0) {
+                listener.onProgress(rows);
+            }
+            if (count < CHUNK_SIZE) {
+                break;
+            }
+        }
+        writer.flush();
+        return rows;
+    }
+
+    /**
+     * Write a CSV field, quoting it when it holds a separator, a quote or a line break.
+     */
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private Cursor queryChunk(long afterId) throws IOException {
+        Cursor page = mContentResolver.query(MyJournalEntry.buildPageUri(afterId, CHUNK_SIZE),
+                PROJECTION, null, null, null);
+        if (page == null) {
+            throw new IOException("Failed to read the thoughts after " + afterId);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,49 @@
+package com.oladimeji.myjournal.data;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the content hash stored in {@link MyJournalContract.MyJournalEntry#COLUMN_JOURNAL_HASH},
+ * which identifies thoughts with the same date, time and text.
+ */
+public final class MyJournalHashes {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private MyJournalHashes() {}
+
+    /**
+     * Returns the SHA-1 of the date, time and thought, as 40 hex digits.
+     */
+    public static String contentHash(String date, String time, String thought) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-1
+            throw new IllegalStateException(e);
+        }
+        update(digest, date);
+        update(digest, time);
+        update(digest, thought);
+
+        byte[] hash = digest.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(UTF_8));
+        }
+        // Separator, so that ("ab", "c") and ("a", "bc") do not hash alike
+        digest.update((byte) 0);
+    }
+}
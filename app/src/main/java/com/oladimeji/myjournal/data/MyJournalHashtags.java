@@ -0,0 +1,84 @@
+package com.oladimeji.myjournal.data;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds the #hashtags of a thought, the tags it is filed under, see
+ * {@link MyJournalContract.TagEntry}.
+ *
+ * A hashtag is a '#' followed by letters, digits and underscores, at least one of them a
+ * letter, so that "#1" or "#" alone are not tags. The '#' must not follow a word character,
+ * which leaves out "C#" and "&amp;#39;". Tags are lowercase, "#Beach" and "#beach" are the
+ * same tag.
+ */
+public final class MyJournalHashtags {
+
+    /** Longest tag kept, longer ones are not tags */
+    public static final int MAX_TAG_LENGTH = 64;
+
+    private MyJournalHashtags() {}
+
+    /**
+     * Returns the tags of the text, without the '#', in the order they first appear.
+     */
+    public static Set<String> extract(String text) {
+        Set<String> tags = new LinkedHashSet<>();
+        if (text == null) {
+            return tags;
+        }
+        int i = 0;
+        while (i < text.length()) {
+            if (text.charAt(i) != '#'
+                    || (i > 0 && (isTagChar(text.codePointBefore(i)) || text.charAt(i - 1) == '&'))) {
+                i++;
+                continue;
+            }
+            int end = i + 1;
+            while (end < text.length() && isTagChar(text.codePointAt(end))) {
+                end += Character.charCount(text.codePointAt(end));
+            }
+            String name = text.substring(i + 1, end);
+            if (isTag(name)) {
+                tags.add(name.toLowerCase(Locale.ROOT));
+            }
+            i = end;
+        }
+        return tags;
+    }
+
+    /**
+     * Returns the tag a user typed in a filter, e.g. " #Beach", in the form of
+     * {@link #extract}, or null if it cannot be a tag.
+     */
+    public static String normalize(String tag) {
+        if (tag == null) {
+            return null;
+        }
+        String name = tag.trim();
+        if (name.startsWith("#")) {
+            name = name.substring(1);
+        }
+        return isTag(name) ? name.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static boolean isTag(String name) {
+        if (name.isEmpty() || name.length() > MAX_TAG_LENGTH) {
+            return false;
+        }
+        boolean hasLetter = false;
+        for (int i = 0; i < name.length(); i += Character.charCount(name.codePointAt(i))) {
+            int codePoint = name.codePointAt(i);
+            if (!isTagChar(codePoint)) {
+                return false;
+            }
+            hasLetter |= Character.isLetter(codePoint);
+        }
+        return hasLetter;
+    }
+
+    private static boolean isTagChar(int codePoint) {
+        return Character.isLetterOrDigit(codePoint) || codePoint == '_';
+    }
+}
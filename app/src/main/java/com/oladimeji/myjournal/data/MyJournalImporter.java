@@ -0,0 +1,257 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Restores thoughts from an archive written by {@link MyJournalExporter}.
+ *
+ * The archive is parsed incrementally and the thoughts are handed to the provider in batches
+ * through {@link ContentResolver#bulkInsert}, each batch being committed in one transaction.
+ * Thoughts already in the journal, as told by their content hash, are skipped, so importing the
+ * same archive twice does not duplicate anything.
+ */
+public class MyJournalImporter {
+
+    /** Number of thoughts committed per transaction when no batch size is given */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Outcome of an import.
+     */
+    public static final class Result {
+        /** Thoughts read from the archive */
+        public final long rowsRead;
+        /** Thoughts added to the journal */
+        public final long rowsInserted;
+        /** Thoughts skipped because the journal already had them */
+        public final long rowsSkipped;
+        /** Wall time of the import */
+        public final long elapsedMillis;
+
+        Result(long rowsRead, long rowsInserted, long elapsedMillis) {
+            this.rowsRead = rowsRead;
+            this.rowsInserted = rowsInserted;
+            this.rowsSkipped = rowsRead - rowsInserted;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Returns the number of thoughts read per second.
+         */
+        public long rowsPerSecond() {
+            return rowsRead * 1000 / Math.max(1, elapsedMillis);
+        }
+
+        @Override
+        public String toString() {
+            return rowsRead + " read, " + rowsInserted + " inserted, " + rowsSkipped + " skipped in "
+                    + elapsedMillis + " ms (" + rowsPerSecond() + " rows/s)";
+        }
+    }
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /* Bulk inserts through this URI skip the thoughts the journal already holds */
+    private static final Uri DEDUPE_URI = MyJournalEntry.CONTENT_URI.buildUpon()
+            .appendQueryParameter(MyJournalContract.QUERY_PARAMETER_DEDUPE, "true").build();
+
+    private final ContentResolver mContentResolver;
+    private final int mBatchSize;
+
+    // Thoughts parsed and not yet committed
+    private final List<ContentValues> mBatch = new ArrayList<>();
+    private long mRowsRead;
+    private long mRowsInserted;
+
+    public MyJournalImporter(ContentResolver contentResolver) {
+        this(contentResolver, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize number of thoughts committed per transaction
+     */
+    public MyJournalImporter(ContentResolver contentResolver, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        mContentResolver = contentResolver;
+        mBatchSize = batchSize;
+    }
+
+    /**
+     * Import the thoughts of an archive. The stream is closed when done. Batches committed
+     * before a parse error stay in the journal; importing the archive again after fixing it
+     * only adds the missing thoughts.
+     *
+     * @param in     the archive
+     * @param format the format the archive was exported in
+     * @param gzip   whether the archive is gzipped
+     */
+    public synchronized Result importFrom(InputStream in, MyJournalExporter.Format format, boolean gzip)
+            throws IOException {
+        mBatch.clear();
+        mRowsRead = 0;
+        mRowsInserted = 0;
+        long start = SystemClock.elapsedRealtime();
+
+        Reader reader = new BufferedReader(new InputStreamReader(
+                gzip ? new GZIPInputStream(in, 8192) : in, UTF_8), 16 * 1024);
+        try {
+            if (format == MyJournalExporter.Format.JSON) {
+                readJson(reader);
+            } else {
+                readCsv(reader);
+            }
+            flush();
+        } finally {
+            reader.close();
+        }
+        return new Result(mRowsRead, mRowsInserted, SystemClock.elapsedRealtime() - start);
+    }
+
+    private void readJson(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        json.beginArray();
+        while (json.hasNext()) {
+            String date = null;
+            String time = null;
+            String thought = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                } else if (MyJournalExporter.FIELD_DATE.equals(name)) {
+                    date = json.nextString();
+                } else if (MyJournalExporter.FIELD_TIME.equals(name)) {
+                    time = json.nextString();
+                } else if (MyJournalExporter.FIELD_THOUGHT.equals(name)) {
+                    thought = json.nextString();
+                } else {
+                    // The id and timestamp are assigned again by the journal
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            add(date, time, thought);
+        }
+        json.endArray();
+    }
+
+    private void readCsv(Reader reader) throws IOException {
+        List<String> header = readCsvRecord(reader);
+        if (header == null) {
+            return;
+        }
+        int dateIndex = header.indexOf(MyJournalExporter.FIELD_DATE);
+        int timeIndex = header.indexOf(MyJournalExporter.FIELD_TIME);
+        int thoughtIndex = header.indexOf(MyJournalExporter.FIELD_THOUGHT);
+        if (dateIndex < 0 || timeIndex < 0 || thoughtIndex < 0) {
+            throw new IOException("CSV header is missing a column: " + header);
+        }
+
+        List<String> record;
+        while ((record = readCsvRecord(reader)) != null) {
+            if (record.size() != header.size()) {
+                throw new IOException("CSV record " + (mRowsRead + 1) + " has " + record.size()
+                        + " fields instead of " + header.size());
+            }
+            add(record.get(dateIndex), record.get(timeIndex), record.get(thoughtIndex));
+        }
+    }
+
+    /**
+     * Read the fields of the next CSV record, which may span several lines when a quoted field
+     * holds line breaks.
+     *
+     * @return the fields, or null at the end of the input
+     */
+    private static List<String> readCsvRecord(Reader reader) throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("CSV ends inside a quoted field");
+                }
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        reader.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r') {
+                    reader.mark(1);
+                    if (reader.read() != '\n') {
+                        reader.reset();
+                    }
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+
+    /**
+     * Queue a thought for insertion, committing the batch once it is full.
+     */
+    private void add(String date, String time, String thought) throws IOException {
+        if (date == null || time == null || thought == null) {
+            throw new IOException("Thought " + (mRowsRead + 1) + " is missing its date, time or text");
+        }
+        ContentValues values = new ContentValues(3);
+        values.put(MyJournalEntry.COLUMN_JOURNAL_DATE, date);
+        values.put(MyJournalEntry.COLUMN_JOURNAL_TIME, time);
+        values.put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, thought);
+        mBatch.add(values);
+        mRowsRead++;
+        if (mBatch.size() >= mBatchSize) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (mBatch.isEmpty()) {
+            return;
+        }
+        mRowsInserted += mContentResolver.bulkInsert(DEDUPE_URI, mBatch.toArray(new ContentValues[mBatch.size()]));
+        mBatch.clear();
+    }
+}
@@ -0,0 +1,215 @@
+package com.oladimeji.myjournal.data;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms of the provider operations, cheap enough to stay on in
+ * release builds: recording a call is a few atomic increments, with no lock and no allocation.
+ *
+ * Each {@link Endpoint} is an operation on one kind of URI, e.g. "query thoughts/#".
+ */
+public final class MyJournalMetrics {
+
+    /**
+     * Histogram of durations in microseconds with log-linear buckets, as in HdrHistogram: each
+     * power of two is split into {@link #SUB_BUCKETS} equal buckets, so a recorded value is
+     * known to within 1/{@value #SUB_BUCKETS} of itself whatever its magnitude.
+     */
+    public static final class Histogram {
+
+        static final int SUB_BUCKET_BITS = 3;
+        static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        /* Values from 2^MAX_EXPONENT µs, about 12 days, are counted in the last bucket */
+        private static final int MAX_EXPONENT = 40;
+        private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong mTotal = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        public void record(long micros) {
+            if (micros < 0) {
+                micros = 0;
+            }
+            mCounts.incrementAndGet(bucketOf(micros));
+            mTotal.incrementAndGet();
+            long max = mMax.get();
+            while (micros > max && !mMax.compareAndSet(max, micros)) {
+                max = mMax.get();
+            }
+        }
+
+        public long getCount() {
+            return mTotal.get();
+        }
+
+        public long getMax() {
+            return mMax.get();
+        }
+
+        /**
+         * Returns the value below which the given percentage of the recorded values fall,
+         * rounded up to the top of its bucket, or 0 if nothing was recorded.
+         */
+        public long getPercentile(double percentile) {
+            long total = mTotal.get();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += mCounts.get(bucket);
+                if (seen >= rank) {
+                    return Math.min(upperBound(bucket), mMax.get());
+                }
+            }
+            return mMax.get();
+        }
+
+        static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            if (exponent >= MAX_EXPONENT) {
+                return BUCKETS - 1;
+            }
+            int shift = exponent - SUB_BUCKET_BITS;
+            int subBucket = (int) (value >> shift) & (SUB_BUCKETS - 1);
+            return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+        }
+
+        /**
+         * Returns the largest value counted in the bucket.
+         */
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+            long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+            return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+        }
+    }
+
+    /**
+     * The counters and histograms of one operation on one kind of URI.
+     */
+    public static final class Endpoint {
+        private final AtomicLong mCalls = new AtomicLong();
+        private final AtomicLong mErrors = new AtomicLong();
+        private final AtomicLong mRows = new AtomicLong();
+        private final Histogram mLatency = new Histogram();
+        // Only queries fill cursor windows, so this one is created on the first fill
+        private volatile Histogram mWindowFills;
+
+        /**
+         * Count a call that took the given time.
+         *
+         * @param failed whether the call threw
+         */
+        public void recordCall(long nanos, boolean failed) {
+            mCalls.incrementAndGet();
+            if (failed) {
+                mErrors.incrementAndGet();
+            }
+            mLatency.record(nanos / 1000);
+        }
+
+        /**
+         * Count rows returned, inserted, updated or deleted.
+         */
+        public void recordRows(long rows) {
+            mRows.addAndGet(rows);
+        }
+
+        /**
+         * Count a cursor window filled while a query result was read, taking the given time.
+         */
+        public void recordWindowFill(long nanos) {
+            Histogram windowFills = mWindowFills;
+            if (windowFills == null) {
+                synchronized (this) {
+                    windowFills = mWindowFills;
+                    if (windowFills == null) {
+                        windowFills = new Histogram();
+                        mWindowFills = windowFills;
+                    }
+                }
+            }
+            windowFills.record(nanos / 1000);
+        }
+
+        public long getCalls() {
+            return mCalls.get();
+        }
+
+        public long getErrors() {
+            return mErrors.get();
+        }
+
+        public long getRows() {
+            return mRows.get();
+        }
+
+        public Histogram getLatency() {
+            return mLatency;
+        }
+
+        /**
+         * Returns the histogram of cursor window fills, or null if there was none.
+         */
+        public Histogram getWindowFills() {
+            return mWindowFills;
+        }
+    }
+
+    private final ConcurrentMap<String, Endpoint> mEndpoints = new ConcurrentHashMap<>();
+    private final long mStartMillis = System.currentTimeMillis();
+
+    /**
+     * Returns the endpoint of the given name, creating it on first use. Callers on a hot path
+     * should keep the returned endpoint rather than look it up on every call.
+     */
+    public Endpoint endpoint(String name) {
+        Endpoint endpoint = mEndpoints.get(name);
+        if (endpoint == null) {
+            Endpoint created = new Endpoint();
+            endpoint = mEndpoints.putIfAbsent(name, created);
+            if (endpoint == null) {
+                endpoint = created;
+            }
+        }
+        return endpoint;
+    }
+
+    /**
+     * Write a table of every endpoint, sorted by name, with latencies in microseconds.
+     */
+    public void dump(PrintWriter writer) {
+        writer.println("Journal provider metrics over "
+                + (System.currentTimeMillis() - mStartMillis) / 1000 + " s, latencies in µs");
+        writer.println("endpoint\tcalls\terrors\trows\tp50\tp90\tp99\tmax\tfills\tfill p50\tfill p99");
+        for (Map.Entry<String, Endpoint> entry : new TreeMap<>(mEndpoints).entrySet()) {
+            Endpoint endpoint = entry.getValue();
+            Histogram latency = endpoint.getLatency();
+            Histogram fills = endpoint.getWindowFills();
+            writer.println(entry.getKey() + '\t' + endpoint.getCalls() + '\t' + endpoint.getErrors()
+                    + '\t' + endpoint.getRows() + '\t' + latency.getPercentile(50)
+                    + '\t' + latency.getPercentile(90) + '\t' + latency.getPercentile(99)
+                    + '\t' + latency.getMax()
+                    + '\t' + (fills == null ? 0 : fills.getCount())
+                    + '\t' + (fills == null ? 0 : fills.getPercentile(50))
+                    + '\t' + (fills == null ? 0 : fills.getPercentile(99)));
+        }
+        writer.flush();
+    }
+}
@@ -0,0 +1,357 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves the thoughts of {@link MyJournalContentProvider} to the screens as a stream of cursors.
+ *
+ * Queries run on a small executor of their own rather than on the shared AsyncTask one. A query
+ * superseded by a newer one is cancelled, and a subscriber is only sent a new cursor when the
+ * journal changed since the last one it got, as told by the change sets of
+ * {@link MyJournalChangeNotifier}. Starting a subscription again after the screen was in the
+ * background thus costs nothing when nothing was edited meanwhile.
+ *
+ * Every cursor has a single owner. The repository owns the cursor of a prefetch until it is
+ * delivered, and closes it if the journal changes first; a delivered cursor belongs to the
+ * observer it was sent to, which closes it once it no longer uses it.
+ *
+ * The repository and its subscriptions are used from the main thread only.
+ */
+public class MyJournalRepository {
+
+    private static final String LOG_TAG = MyJournalRepository.class.getSimpleName();
+
+    /* Queries running at once, across every repository */
+    private static final int QUERY_THREADS = 2;
+    /* Queries waiting for a thread; each subscription has at most one */
+    private static final int QUERY_QUEUE_CAPACITY = 16;
+
+    private static final ThreadPoolExecutor QUERY_EXECUTOR;
+
+    static {
+        QUERY_EXECUTOR = new ThreadPoolExecutor(QUERY_THREADS, QUERY_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(QUERY_QUEUE_CAPACITY), new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, "MyJournalQuery #" + mCount.incrementAndGet());
+                    }
+                });
+        QUERY_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Receives the thoughts of a subscription.
+     */
+    public interface Observer {
+        /**
+         * Returns the URI to query, called on the main thread before every query.
+         */
+        Uri getQueryUri();
+
+        /**
+         * Returns the columns to query, or null for all of them.
+         */
+        String[] getQueryProjection();
+
+        /**
+         * Called on the main thread with the thoughts, whenever they may have changed. The
+         * observer owns the cursor from then on and must close it, the repository keeps no
+         * reference to it.
+         */
+        void onThoughtsChanged(Cursor thoughts);
+    }
+
+    private final ContentResolver mContentResolver;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final List<Subscription> mSubscriptions = new ArrayList<>();
+
+    // Bumped on every change set, tells whether a cursor is still up to date
+    private long mGeneration;
+
+    // Prefetched cursor no subscriber was sent yet, and the generation it was read at
+    private Cursor mCachedThoughts;
+    private long mCachedGeneration = -1;
+
+    private boolean mReleased;
+
+    // The query started by prefetch(), until it completes
+    private boolean mPrefetching;
+    private Uri mPrefetchUri;
+    private String[] mPrefetchProjection;
+
+    private final MyJournalChangeNotifier.ChangeListener mChangeListener =
+            new MyJournalChangeNotifier.ChangeListener() {
+                @Override
+                public void onJournalChanged(MyJournalChangeNotifier.ChangeSet changes) {
+                    mGeneration++;
+                    // The prefetched thoughts are out of date, nobody will be sent them
+                    closeCachedThoughts();
+                    for (Subscription subscription : mSubscriptions) {
+                        subscription.onDataChanged();
+                    }
+                }
+            };
+
+    public MyJournalRepository(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+        MyJournalChangeNotifier.addListener(mChangeListener);
+    }
+
+    /**
+     * Subscribe to the thoughts. Nothing is queried until the subscription is started.
+     */
+    public Subscription subscribe(Observer observer) {
+        Subscription subscription = new Subscription(observer);
+        mSubscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Query the thoughts ahead of any subscriber, so the first one started is served from the
+     * cache and takes the cursor over. A subscription started while the query runs, for the
+     * same URI and projection, waits for it rather than querying again.
+     */
+    public void prefetch(final Uri uri, final String[] projection) {
+        if (mPrefetching || mCachedThoughts != null) {
+            return;
+        }
+        final long generation = mGeneration;
+        try {
+            QUERY_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final Cursor thoughts = query(uri, projection, null);
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onPrefetched(thoughts, generation);
+                        }
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(LOG_TAG, "Too many queries queued, skipping prefetch", e);
+            return;
+        }
+        mPrefetching = true;
+        mPrefetchUri = uri;
+        mPrefetchProjection = projection;
+    }
+
+    private void onPrefetched(Cursor thoughts, long generation) {
+        mPrefetching = false;
+        mPrefetchUri = null;
+        mPrefetchProjection = null;
+        if (thoughts != null && (mReleased || generation != mGeneration || mCachedThoughts != null)) {
+            // The journal changed meanwhile, or a subscriber already has newer thoughts
+            thoughts.close();
+            thoughts = null;
+        }
+        if (thoughts != null) {
+            mCachedThoughts = thoughts;
+            mCachedGeneration = generation;
+        }
+        // Subscriptions that waited for the prefetch get its thoughts, or query if it failed
+        for (Subscription subscription : new ArrayList<>(mSubscriptions)) {
+            if (subscription.mStarted && subscription.mPendingSignal == null
+                    && subscription.mDeliveredGeneration != mGeneration) {
+                subscription.start();
+            }
+        }
+    }
+
+    /**
+     * Close every subscription and stop listening to the journal.
+     */
+    public void release() {
+        mReleased = true;
+        MyJournalChangeNotifier.removeListener(mChangeListener);
+        while (!mSubscriptions.isEmpty()) {
+            mSubscriptions.get(0).close();
+        }
+        closeCachedThoughts();
+    }
+
+    private void closeCachedThoughts() {
+        if (mCachedThoughts != null) {
+            mCachedThoughts.close();
+            mCachedThoughts = null;
+        }
+    }
+
+    /**
+     * A subscriber's view of the journal, delivering cursors while started.
+     */
+    public final class Subscription {
+        private final Observer mObserver;
+        private boolean mStarted;
+        // Generation of the last cursor delivered to the observer
+        private long mDeliveredGeneration = -1;
+
+        // The query in flight, if any
+        private Future<?> mPendingQuery;
+        private CancellationSignal mPendingSignal;
+
+        private Subscription(Observer observer) {
+            mObserver = observer;
+        }
+
+        /**
+         * Start delivering cursors. The observer is sent one right away if the journal changed
+         * since its last one, the prefetched one when it is up to date and by a query otherwise.
+         */
+        public void start() {
+            mStarted = true;
+            if (mDeliveredGeneration == mGeneration || mPendingSignal != null) {
+                return;
+            }
+            if (mCachedThoughts != null && mCachedGeneration == mGeneration) {
+                // The cursor is handed over, a later subscriber queries its own
+                Cursor thoughts = mCachedThoughts;
+                mCachedThoughts = null;
+                deliver(thoughts, mCachedGeneration);
+            } else if (!waitsForPrefetch()) {
+                refresh();
+            }
+        }
+
+        /**
+         * Returns whether the prefetch in flight, if any, queries what this subscription would.
+         */
+        private boolean waitsForPrefetch() {
+            return mPrefetching && mObserver.getQueryUri().equals(mPrefetchUri)
+                    && Arrays.equals(mObserver.getQueryProjection(), mPrefetchProjection);
+        }
+
+        /**
+         * Stop delivering cursors, cancelling the query in flight. Changes made meanwhile are
+         * picked up when started again.
+         */
+        public void stop() {
+            mStarted = false;
+            cancelPendingQuery();
+        }
+
+        /**
+         * Stop for good and forget the observer.
+         */
+        public void close() {
+            stop();
+            mSubscriptions.remove(this);
+        }
+
+        /**
+         * Query again now, even if nothing changed. Used when the observer needs more rows than
+         * its last query returned.
+         */
+        public void refresh() {
+            cancelPendingQuery();
+            final long generation = mGeneration;
+            final Uri uri = mObserver.getQueryUri();
+            final String[] projection = mObserver.getQueryProjection();
+            final CancellationSignal signal = new CancellationSignal();
+            try {
+                mPendingQuery = QUERY_EXECUTOR.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        final Cursor thoughts = query(uri, projection, signal);
+                        mMainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (signal != mPendingSignal) {
+                                    // Superseded while running, a newer query is on its way
+                                    if (thoughts != null) {
+                                        thoughts.close();
+                                    }
+                                    return;
+                                }
+                                mPendingQuery = null;
+                                mPendingSignal = null;
+                                if (thoughts != null) {
+                                    deliver(thoughts, generation);
+                                }
+                            }
+                        });
+                    }
+                });
+                mPendingSignal = signal;
+            } catch (RejectedExecutionException e) {
+                // Every thread and queue slot is taken, the next start or change tries again
+                Log.w(LOG_TAG, "Too many queries queued, skipping refresh", e);
+            }
+        }
+
+        private void onDataChanged() {
+            if (mStarted) {
+                refresh();
+            }
+        }
+
+        private void deliver(Cursor thoughts, long generation) {
+            mDeliveredGeneration = generation;
+            mObserver.onThoughtsChanged(thoughts);
+        }
+
+        private void cancelPendingQuery() {
+            if (mPendingSignal != null) {
+                mPendingSignal.cancel();
+                mPendingSignal = null;
+            }
+            if (mPendingQuery != null) {
+                // A query still waiting for a thread is dropped from the queue
+                mPendingQuery.cancel(false);
+                QUERY_EXECUTOR.remove((Runnable) mPendingQuery);
+                mPendingQuery = null;
+            }
+        }
+    }
+
+    /**
+     * Run the query on the current thread, filling the cursor window so the main thread does not
+     * have to.
+     *
+     * @return the thoughts, or null if the query failed or was cancelled
+     */
+    private Cursor query(Uri uri, String[] projection, CancellationSignal signal) {
+        Cursor thoughts = null;
+        try {
+            thoughts = mContentResolver.query(uri, projection, null, null, null, signal);
+            if (thoughts != null) {
+                thoughts.getCount();
+            }
+            return thoughts;
+        } catch (OperationCanceledException e) {
+            // Superseded, SQLite stopped reading the rows where it was
+            if (thoughts != null) {
+                thoughts.close();
+            }
+            return null;
+        } catch (RuntimeException e) {
+            Log.e(LOG_TAG, "Failed to asynchronously load data.", e);
+            if (thoughts != null) {
+                thoughts.close();
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+import com.oladimeji.myjournal.data.MyJournalContract.RevisionEntry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the revision history of the thoughts, see {@link RevisionEntry}.
+ *
+ * The text of a revision is stored as a {@link MyJournalTextDelta} against the previous one,
+ * so an edit costs about the size of the words it changed. Every
+ * {@link #KEYFRAME_INTERVAL}th revision is a full copy instead, which bounds rebuilding any
+ * revision to reading and applying that many deltas, however often the thought was edited.
+ *
+ * A delta only applies to the revision stored before it. Should the thought have changed without
+ * a revision being recorded, the version it had before the edit is first stored in full as a
+ * revision of its own, so the history holds it and the chain of deltas stays whole.
+ */
+final class MyJournalRevisions {
+
+    /** Revisions from one full copy of the text to the next */
+    static final int KEYFRAME_INTERVAL = 16;
+
+    /* Storage of the delta, see MyJournalTextDelta */
+    static final String COLUMN_PREFIX_LENGTH = "prefix_length";
+    static final String COLUMN_SUFFIX_LENGTH = "suffix_length";
+    static final String COLUMN_DELTA = "delta";
+
+    private static final String INDEX_THOUGHT_REVISION = "revisions_thought_id_revision";
+
+    private MyJournalRevisions() {}
+
+    /**
+     * The date, time and text of a thought at one point.
+     */
+    static final class Version {
+        final String date;
+        final String time;
+        final String thought;
+        final long updatedAt;
+
+        Version(String date, String time, String thought, long updatedAt) {
+            this.date = date;
+            this.time = time;
+            this.thought = thought == null ? "" : thought;
+            this.updatedAt = updatedAt;
+        }
+
+        boolean sameAs(Version other) {
+            return equal(date, other.date) && equal(time, other.time) && thought.equals(other.thought);
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    /**
+     * Create the revisions table, and the trigger dropping the revisions of purged thoughts.
+     */
+    static void createTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + RevisionEntry.TABLE_NAME + " ("
+                + RevisionEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + RevisionEntry.COLUMN_THOUGHT_ID + " INTEGER NOT NULL, "
+                + RevisionEntry.COLUMN_REVISION + " INTEGER NOT NULL, "
+                + RevisionEntry.COLUMN_CREATED_AT + " INTEGER, "
+                + RevisionEntry.COLUMN_DATE + " TEXT, "
+                + RevisionEntry.COLUMN_TIME + " TEXT, "
+                + RevisionEntry.COLUMN_KEYFRAME + " INTEGER NOT NULL, "
+                + COLUMN_PREFIX_LENGTH + " INTEGER NOT NULL, "
+                + COLUMN_SUFFIX_LENGTH + " INTEGER NOT NULL, "
+                + COLUMN_DELTA + " TEXT NOT NULL)");
+        db.execSQL("CREATE UNIQUE INDEX " + INDEX_THOUGHT_REVISION + " ON " + RevisionEntry.TABLE_NAME
+                + " (" + RevisionEntry.COLUMN_THOUGHT_ID + ", " + RevisionEntry.COLUMN_REVISION + ")");
+        db.execSQL("CREATE TRIGGER " + RevisionEntry.TABLE_NAME + "_after_delete AFTER DELETE ON "
+                + MyJournalEntry.TABLE_NAME + " BEGIN DELETE FROM " + RevisionEntry.TABLE_NAME + " WHERE "
+                + RevisionEntry.COLUMN_THOUGHT_ID + "=old." + MyJournalEntry._ID + "; END");
+    }
+
+    /**
+     * Read the current version of the given thoughts.
+     */
+    static Map<Long, Version> readVersions(SQLiteDatabase db, long[] ids) {
+        String[] columns = {MyJournalEntry.COLUMN_JOURNAL_DATE, MyJournalEntry.COLUMN_JOURNAL_TIME,
+                MyJournalEntry.COLUMN_JOURNAL_THOUGHT, MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB,
+                MyJournalEntry.COLUMN_UPDATED_AT};
+        Map<Long, Version> versions = new HashMap<>();
+        for (long id : ids) {
+            Cursor cursor = db.query(MyJournalEntry.TABLE_NAME, columns, MyJournalEntry._ID + "=?",
+                    new String[]{String.valueOf(id)}, null, null, null);
+            try {
+                if (cursor.moveToFirst()) {
+                    versions.put(id, new Version(cursor.getString(0), cursor.getString(1),
+                            ThoughtDecodingCursor.readThought(cursor, 2, 3), cursor.getLong(4)));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Add a revision to every thought whose version changed from the given one. Called in the
+     * transaction of the update, once it is made.
+     */
+    static void recordChanges(SQLiteDatabase db, Map<Long, Version> before) {
+        long[] ids = new long[before.size()];
+        int i = 0;
+        for (long id : before.keySet()) {
+            ids[i++] = id;
+        }
+        Map<Long, Version> after = readVersions(db, ids);
+        for (Map.Entry<Long, Version> entry : after.entrySet()) {
+            Version previous = before.get(entry.getKey());
+            if (!entry.getValue().sameAs(previous)) {
+                record(db, entry.getKey(), previous, entry.getValue());
+            }
+        }
+    }
+
+    private static void record(SQLiteDatabase db, long thoughtId, Version previous, Version current) {
+        int last = lastRevision(db, thoughtId);
+        // The history starts with the thought as it was before its first edit, and takes in the
+        // version a change without a revision left, so the delta is taken against what is stored
+        if (last < 0 || !previous.sameAs(read(db, thoughtId, last))) {
+            last++;
+            insert(db, thoughtId, last, previous, MyJournalTextDelta.keyframe(previous.thought), true);
+        }
+        int revision = last + 1;
+        boolean keyframe = revision % KEYFRAME_INTERVAL == 0;
+        MyJournalTextDelta delta = keyframe
+                ? MyJournalTextDelta.keyframe(current.thought)
+                : MyJournalTextDelta.between(previous.thought, current.thought);
+        insert(db, thoughtId, revision, current, delta, keyframe);
+    }
+
+    private static void insert(SQLiteDatabase db, long thoughtId, int revision, Version version,
+                               MyJournalTextDelta delta, boolean keyframe) {
+        ContentValues values = new ContentValues();
+        values.put(RevisionEntry.COLUMN_THOUGHT_ID, thoughtId);
+        values.put(RevisionEntry.COLUMN_REVISION, revision);
+        values.put(RevisionEntry.COLUMN_CREATED_AT, version.updatedAt);
+        values.put(RevisionEntry.COLUMN_DATE, version.date);
+        values.put(RevisionEntry.COLUMN_TIME, version.time);
+        values.put(RevisionEntry.COLUMN_KEYFRAME, keyframe ? 1 : 0);
+        values.put(COLUMN_PREFIX_LENGTH, delta.prefixLength);
+        values.put(COLUMN_SUFFIX_LENGTH, delta.suffixLength);
+        values.put(COLUMN_DELTA, delta.text);
+        db.insertOrThrow(RevisionEntry.TABLE_NAME, null, values);
+    }
+
+    private static int lastRevision(SQLiteDatabase db, long thoughtId) {
+        Cursor cursor = db.rawQuery("SELECT MAX(" + RevisionEntry.COLUMN_REVISION + ") FROM "
+                + RevisionEntry.TABLE_NAME + " WHERE " + RevisionEntry.COLUMN_THOUGHT_ID + "=?",
+                new String[]{String.valueOf(thoughtId)});
+        try {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getInt(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the revisions of the thought, oldest first, without their text.
+     */
+    static Cursor list(SQLiteDatabase db, long thoughtId) {
+        return db.query(RevisionEntry.TABLE_NAME, new String[]{RevisionEntry.COLUMN_REVISION,
+                        RevisionEntry.COLUMN_CREATED_AT, RevisionEntry.COLUMN_DATE, RevisionEntry.COLUMN_TIME,
+                        RevisionEntry.COLUMN_KEYFRAME,
+                        "length(CAST(" + COLUMN_DELTA + " AS BLOB)) AS " + RevisionEntry.COLUMN_SIZE},
+                RevisionEntry.COLUMN_THOUGHT_ID + "=?", new String[]{String.valueOf(thoughtId)},
+                null, null, RevisionEntry.COLUMN_REVISION);
+    }
+
+    /**
+     * Returns the thought as of the given revision, rebuilt from the last full copy before it,
+     * in a cursor of one row, or of none if there is no such revision.
+     */
+    static Cursor reconstruct(SQLiteDatabase db, long thoughtId, int revision) {
+        MatrixCursor result = new MatrixCursor(new String[]{RevisionEntry.COLUMN_REVISION,
+                RevisionEntry.COLUMN_CREATED_AT, RevisionEntry.COLUMN_DATE, RevisionEntry.COLUMN_TIME,
+                RevisionEntry.COLUMN_THOUGHT}, 1);
+        Version version = read(db, thoughtId, revision);
+        if (version != null) {
+            result.addRow(new Object[]{revision, version.updatedAt, version.date, version.time,
+                    version.thought});
+        }
+        return result;
+    }
+
+    /**
+     * Returns the thought as of the given revision, or null if there is no such revision.
+     */
+    private static Version read(SQLiteDatabase db, long thoughtId, int revision) {
+        // The chain starts at the keyframe at or before the revision, found through the index
+        int keyframe = revision - revision % KEYFRAME_INTERVAL;
+        Cursor cursor = db.query(RevisionEntry.TABLE_NAME, new String[]{RevisionEntry.COLUMN_REVISION,
+                        RevisionEntry.COLUMN_CREATED_AT, RevisionEntry.COLUMN_DATE, RevisionEntry.COLUMN_TIME,
+                        COLUMN_PREFIX_LENGTH, COLUMN_SUFFIX_LENGTH, COLUMN_DELTA},
+                RevisionEntry.COLUMN_THOUGHT_ID + "=? AND " + RevisionEntry.COLUMN_REVISION + " BETWEEN ? AND ?",
+                new String[]{String.valueOf(thoughtId), String.valueOf(keyframe), String.valueOf(revision)},
+                null, null, RevisionEntry.COLUMN_REVISION);
+        try {
+            String thought = "";
+            int expected = keyframe;
+            while (cursor.moveToNext()) {
+                if (cursor.getInt(0) != expected++) {
+                    throw new IllegalStateException("Revision " + (expected - 1) + " of thought "
+                            + thoughtId + " is missing");
+                }
+                thought = new MyJournalTextDelta(cursor.getInt(4), cursor.getInt(5), cursor.getString(6))
+                        .applyTo(thought);
+                if (cursor.isLast() && cursor.getInt(0) == revision) {
+                    return new Version(cursor.getString(2), cursor.getString(3), thought, cursor.getLong(1));
+                }
+            }
+            return null;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.oladimeji.myjournal.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Helpers for the full-text search on thoughts: turning what the user typed into an FTS MATCH
+ * expression and ranking the matches.
+ */
+public final class MyJournalSearch {
+
+    /** Format string passed to matchinfo(), the layout {@link #bm25} expects */
+    static final String MATCHINFO_FORMAT = "pcnalx";
+
+    /* Standard BM25 tuning constants */
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private MyJournalSearch() {}
+
+    /**
+     * Build a MATCH expression from free text. Every word becomes a quoted term, so characters
+     * with a meaning in the FTS query syntax cannot make the query invalid, and all the words
+     * have to be present for a thought to match.
+     *
+     * @return the expression, or null if the text holds no word
+     */
+    public static String toMatchQuery(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                if (query.length() > 0) {
+                    query.append(' ');
+                }
+                query.append('"').append(word).append('"');
+                word.setLength(0);
+            }
+        }
+        return query.length() == 0 ? null : query.toString();
+    }
+
+    /**
+     * Count the words of a thought the way {@link #toMatchQuery} splits them, as runs of
+     * letters and digits.
+     */
+    public static int countWords(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean wordChar = Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && !inWord) {
+                words++;
+            }
+            inWord = wordChar;
+        }
+        return words;
+    }
+
+    /**
+     * Compute the BM25 relevance of a matched row from the blob returned by
+     * matchinfo(table, '{@value #MATCHINFO_FORMAT}'). Higher is more relevant.
+     */
+    public static double bm25(byte[] matchinfo) {
+        IntBuffer info = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phraseCount = info.get(0);
+        int columnCount = info.get(1);
+        long rowCount = info.get(2) & 0xffffffffL;
+        int averageOffset = 3;
+        int lengthOffset = averageOffset + columnCount;
+        int hitsOffset = lengthOffset + columnCount;
+
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount; column++) {
+                int base = hitsOffset + 3 * (column + phrase * columnCount);
+                int hitsInRow = info.get(base);
+                if (hitsInRow == 0) {
+                    continue;
+                }
+                int rowsWithHits = info.get(base + 2);
+                double idf = Math.log((rowCount - rowsWithHits + 0.5) / (rowsWithHits + 0.5));
+                // Keep very common terms from pulling the score down
+                idf = Math.max(idf, 1e-6);
+
+                double averageLength = Math.max(1, info.get(averageOffset + column));
+                double length = info.get(lengthOffset + column);
+                double frequency = hitsInRow * (K1 + 1)
+                        / (hitsInRow + K1 * (1 - B + B * length / averageLength));
+                score += idf * frequency;
+            }
+        }
+        return score;
+    }
+}
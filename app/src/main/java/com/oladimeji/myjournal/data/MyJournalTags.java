@@ -0,0 +1,236 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+import com.oladimeji.myjournal.data.MyJournalContract.TagEntry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the tags of the thoughts, see {@link TagEntry}, as an inverted index.
+ *
+ * The join table holds one row per tag and thought, indexed on (tag, thought) for the posting
+ * lists and on (thought, tag) for the tags of a thought. Each tag also counts its postings, kept
+ * by triggers, so a filter on several tags can walk the shortest list and only probe the
+ * others: its cost follows the number of thoughts under the rarest tag, not the size of the
+ * journal. Deleted thoughts keep their postings until they are purged, so restoring them needs
+ * no work, and are left out when the thoughts are read.
+ */
+final class MyJournalTags {
+
+    /** Name of the join table of tags and thoughts */
+    static final String JOIN_TABLE_NAME = "thought_tags";
+    static final String COLUMN_TAG_ID = "tag_id";
+    static final String COLUMN_THOUGHT_ID = "thought_id";
+
+    /** Number of rows of a tag in the join table, deleted thoughts included */
+    static final String COLUMN_POSTINGS = "postings";
+
+    private static final String INDEX_TAG_THOUGHT = "thought_tags_tag_id_thought_id";
+    private static final String INDEX_THOUGHT_TAG = "thought_tags_thought_id_tag_id";
+
+    /** Number of thoughts read at a time while rebuilding the index */
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    /* Selection matching no thought, for filters on a tag nothing is filed under */
+    private static final String NO_THOUGHTS = "0";
+
+    private MyJournalTags() {}
+
+    /**
+     * Create the tag tables, and the triggers counting the postings and dropping the postings
+     * of purged thoughts.
+     */
+    static void createTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TagEntry.TABLE_NAME + " ("
+                + TagEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + TagEntry.COLUMN_NAME + " TEXT NOT NULL UNIQUE, "
+                + COLUMN_POSTINGS + " INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE " + JOIN_TABLE_NAME + " ("
+                + COLUMN_TAG_ID + " INTEGER NOT NULL, "
+                + COLUMN_THOUGHT_ID + " INTEGER NOT NULL)");
+        // Both indexes cover the table, lookups never read its rows
+        db.execSQL("CREATE UNIQUE INDEX " + INDEX_TAG_THOUGHT + " ON " + JOIN_TABLE_NAME
+                + " (" + COLUMN_TAG_ID + ", " + COLUMN_THOUGHT_ID + ")");
+        db.execSQL("CREATE INDEX " + INDEX_THOUGHT_TAG + " ON " + JOIN_TABLE_NAME
+                + " (" + COLUMN_THOUGHT_ID + ", " + COLUMN_TAG_ID + ")");
+
+        db.execSQL("CREATE TRIGGER " + JOIN_TABLE_NAME + "_after_insert AFTER INSERT ON " + JOIN_TABLE_NAME
+                + " BEGIN UPDATE " + TagEntry.TABLE_NAME + " SET " + COLUMN_POSTINGS + "=" + COLUMN_POSTINGS
+                + "+1 WHERE " + TagEntry._ID + "=new." + COLUMN_TAG_ID + "; END");
+        // Tags nothing is filed under any more are dropped
+        db.execSQL("CREATE TRIGGER " + JOIN_TABLE_NAME + "_after_delete AFTER DELETE ON " + JOIN_TABLE_NAME
+                + " BEGIN UPDATE " + TagEntry.TABLE_NAME + " SET " + COLUMN_POSTINGS + "=" + COLUMN_POSTINGS
+                + "-1 WHERE " + TagEntry._ID + "=old." + COLUMN_TAG_ID + ";"
+                + " DELETE FROM " + TagEntry.TABLE_NAME + " WHERE " + TagEntry._ID + "=old." + COLUMN_TAG_ID
+                + " AND " + COLUMN_POSTINGS + "<=0; END");
+        db.execSQL("CREATE TRIGGER " + TagEntry.TABLE_NAME + "_after_thought_delete AFTER DELETE ON "
+                + MyJournalEntry.TABLE_NAME + " BEGIN DELETE FROM " + JOIN_TABLE_NAME + " WHERE "
+                + COLUMN_THOUGHT_ID + "=old." + MyJournalEntry._ID + "; END");
+    }
+
+    /**
+     * File the thought under the tags of its text, and take it off the tags it no longer has.
+     * Called in the transaction writing the text.
+     */
+    static void index(SQLiteDatabase db, long thoughtId, String thought) {
+        Set<String> tags = MyJournalHashtags.extract(thought);
+        Map<String, Long> current = readTags(db, thoughtId);
+        for (Map.Entry<String, Long> tag : current.entrySet()) {
+            if (!tags.contains(tag.getKey())) {
+                db.delete(JOIN_TABLE_NAME, COLUMN_TAG_ID + "=? AND " + COLUMN_THOUGHT_ID + "=?",
+                        new String[]{String.valueOf(tag.getValue()), String.valueOf(thoughtId)});
+            }
+        }
+        for (String tag : tags) {
+            if (current.containsKey(tag)) {
+                continue;
+            }
+            ContentValues posting = new ContentValues(2);
+            posting.put(COLUMN_TAG_ID, tagId(db, tag));
+            posting.put(COLUMN_THOUGHT_ID, thoughtId);
+            db.insertOrThrow(JOIN_TABLE_NAME, null, posting);
+        }
+    }
+
+    /**
+     * Returns the tags the thought is filed under, by name, with their _id.
+     */
+    private static Map<String, Long> readTags(SQLiteDatabase db, long thoughtId) {
+        Cursor cursor = db.rawQuery("SELECT " + TagEntry.COLUMN_NAME + ", " + COLUMN_TAG_ID + " FROM "
+                + JOIN_TABLE_NAME + " JOIN " + TagEntry.TABLE_NAME + " ON " + TagEntry.TABLE_NAME + "."
+                + TagEntry._ID + "=" + COLUMN_TAG_ID + " WHERE " + COLUMN_THOUGHT_ID + "=?",
+                new String[]{String.valueOf(thoughtId)});
+        Map<String, Long> tags = new HashMap<>();
+        try {
+            while (cursor.moveToNext()) {
+                tags.put(cursor.getString(0), cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return tags;
+    }
+
+    /**
+     * Returns the _id of the tag, adding the tag if it is new.
+     */
+    private static long tagId(SQLiteDatabase db, String tag) {
+        Cursor cursor = db.query(TagEntry.TABLE_NAME, new String[]{TagEntry._ID},
+                TagEntry.COLUMN_NAME + "=?", new String[]{tag}, null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                return cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+        ContentValues values = new ContentValues(2);
+        values.put(TagEntry.COLUMN_NAME, tag);
+        values.put(COLUMN_POSTINGS, 0);
+        return db.insertOrThrow(TagEntry.TABLE_NAME, null, values);
+    }
+
+    /**
+     * Index the tags of every thought, for a journal whose thoughts were written before the
+     * tags existed. Thoughts are read in batches keyed on _id so memory stays flat.
+     */
+    static void rebuild(SQLiteDatabase db) {
+        String[] columns = {MyJournalEntry._ID, MyJournalEntry.COLUMN_JOURNAL_THOUGHT,
+                MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB};
+        long lastId = 0;
+        while (true) {
+            List<Long> ids = new ArrayList<>(REBUILD_BATCH_SIZE);
+            List<String> thoughts = new ArrayList<>(REBUILD_BATCH_SIZE);
+            Cursor cursor = db.query(MyJournalEntry.TABLE_NAME, columns, MyJournalEntry._ID + ">?",
+                    new String[]{String.valueOf(lastId)}, null, null, MyJournalEntry._ID + " ASC",
+                    String.valueOf(REBUILD_BATCH_SIZE));
+            try {
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getLong(0));
+                    thoughts.add(ThoughtDecodingCursor.readThought(cursor, 1, 2));
+                }
+            } finally {
+                cursor.close();
+            }
+            for (int i = 0; i < ids.size(); i++) {
+                index(db, ids.get(i), thoughts.get(i));
+            }
+            if (ids.size() < REBUILD_BATCH_SIZE) {
+                break;
+            }
+            lastId = ids.get(ids.size() - 1);
+        }
+    }
+
+    /**
+     * Returns the selection of the thoughts filed under all the given tags, for the thoughts
+     * table. The posting lists are intersected from the shortest one: it is read from the
+     * index, and each of its thoughts is looked up in the other lists.
+     *
+     * @param tags normalized tags, see {@link MyJournalHashtags#normalize}
+     */
+    static String selection(SQLiteDatabase db, Collection<String> tags) {
+        if (tags.isEmpty()) {
+            return null;
+        }
+        // The tags and the length of their lists, shortest first
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < tags.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        Cursor cursor = db.query(TagEntry.TABLE_NAME, new String[]{TagEntry._ID},
+                TagEntry.COLUMN_NAME + " IN (" + placeholders + ")", tags.toArray(new String[tags.size()]),
+                null, null, COLUMN_POSTINGS + " ASC");
+        long[] tagIds;
+        try {
+            if (cursor.getCount() < tags.size()) {
+                // Some tag has no thought at all
+                return NO_THOUGHTS;
+            }
+            tagIds = new long[cursor.getCount()];
+            int i = 0;
+            while (cursor.moveToNext()) {
+                tagIds[i++] = cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        // The ids are numbers read from the database, they can be placed in the SQL. CROSS JOIN
+        // keeps SQLite from reordering the lists.
+        StringBuilder postings = new StringBuilder("SELECT p0." + COLUMN_THOUGHT_ID + " FROM "
+                + JOIN_TABLE_NAME + " p0");
+        for (int i = 1; i < tagIds.length; i++) {
+            postings.append(" CROSS JOIN ").append(JOIN_TABLE_NAME).append(" p").append(i)
+                    .append(" ON p").append(i).append('.').append(COLUMN_THOUGHT_ID).append("=p0.")
+                    .append(COLUMN_THOUGHT_ID).append(" AND p").append(i).append('.').append(COLUMN_TAG_ID)
+                    .append('=').append(tagIds[i]);
+        }
+        postings.append(" WHERE p0.").append(COLUMN_TAG_ID).append('=').append(tagIds[0]);
+        return MyJournalEntry._ID + " IN (" + postings + ")";
+    }
+
+    /**
+     * Returns the tags of the live thoughts by name, with the number of thoughts under each.
+     */
+    static Cursor list(SQLiteDatabase db) {
+        return db.rawQuery("SELECT " + TagEntry.TABLE_NAME + "." + TagEntry._ID + " AS " + TagEntry._ID
+                + ", " + TagEntry.COLUMN_NAME + ", COUNT(*) AS " + TagEntry.COLUMN_THOUGHTS
+                + " FROM " + TagEntry.TABLE_NAME
+                + " JOIN " + JOIN_TABLE_NAME + " ON " + COLUMN_TAG_ID + "=" + TagEntry.TABLE_NAME + "." + TagEntry._ID
+                + " JOIN " + MyJournalEntry.TABLE_NAME + " ON " + MyJournalEntry.TABLE_NAME + "."
+                + MyJournalEntry._ID + "=" + COLUMN_THOUGHT_ID
+                + " WHERE " + MyJournalEntry.COLUMN_DELETED_AT + " IS NULL"
+                + " GROUP BY " + TagEntry.TABLE_NAME + "." + TagEntry._ID
+                + " ORDER BY " + TagEntry.COLUMN_NAME, null);
+    }
+}
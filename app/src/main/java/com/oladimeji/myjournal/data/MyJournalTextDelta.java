@@ -0,0 +1,71 @@
+package com.oladimeji.myjournal.data;
+
+/**
+ * The difference between two versions of a text, as the one changed region between the prefix
+ * and the suffix they share. Edits to a journal entry are mostly typing, deleting or replacing
+ * words in one place, so the region is small next to the text however long the text is.
+ */
+final class MyJournalTextDelta {
+
+    /** Characters kept from the start of the previous version */
+    final int prefixLength;
+    /** Characters kept from the end of the previous version */
+    final int suffixLength;
+    /** Text replacing everything in between */
+    final String text;
+
+    MyJournalTextDelta(int prefixLength, int suffixLength, String text) {
+        if (prefixLength < 0 || suffixLength < 0 || text == null) {
+            throw new IllegalArgumentException("Invalid delta " + prefixLength + "/" + suffixLength);
+        }
+        this.prefixLength = prefixLength;
+        this.suffixLength = suffixLength;
+        this.text = text;
+    }
+
+    /**
+     * Returns the delta turning {@code from} into {@code to}.
+     */
+    static MyJournalTextDelta between(String from, String to) {
+        int shortest = Math.min(from.length(), to.length());
+        int prefix = 0;
+        while (prefix < shortest && from.charAt(prefix) == to.charAt(prefix)) {
+            prefix++;
+        }
+        // A surrogate pair stays whole, a lone half cannot be stored as UTF-8
+        if (prefix > 0 && Character.isHighSurrogate(from.charAt(prefix - 1))) {
+            prefix--;
+        }
+        int suffix = 0;
+        while (suffix < shortest - prefix
+                && from.charAt(from.length() - 1 - suffix) == to.charAt(to.length() - 1 - suffix)) {
+            suffix++;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(from.charAt(from.length() - suffix))) {
+            suffix--;
+        }
+        return new MyJournalTextDelta(prefix, suffix, to.substring(prefix, to.length() - suffix));
+    }
+
+    /**
+     * Returns the delta replacing any text with the given one, i.e. a full copy.
+     */
+    static MyJournalTextDelta keyframe(String text) {
+        return new MyJournalTextDelta(0, 0, text);
+    }
+
+    /**
+     * Returns the version this delta was computed for, given the version before it.
+     */
+    String applyTo(String from) {
+        if (prefixLength + suffixLength > from.length()) {
+            throw new IllegalArgumentException("Delta " + prefixLength + "/" + suffixLength
+                    + " does not apply to a text of " + from.length() + " characters");
+        }
+        return new StringBuilder(prefixLength + text.length() + suffixLength)
+                .append(from, 0, prefixLength)
+                .append(text)
+                .append(from, from.length() - suffixLength, from.length())
+                .toString();
+    }
+}
@@ -0,0 +1,308 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Writes to {@link MyJournalContentProvider} from a single background thread, so a screen can
+ * hand over a save and close without waiting for the disk.
+ *
+ * Writes queued within {@link #GROUP_WINDOW_MILLIS} of each other are committed together in one
+ * transaction through {@link ContentResolver#applyBatch}, paying for a single commit. Each write
+ * returns a {@link WriteFuture}, done once its transaction is committed: the write then survives
+ * the app being killed and is seen by every reader. It is not yet safe from a power loss, as the
+ * journal commits with synchronous=NORMAL under write-ahead logging, see
+ * {@link MyJournalDbHelper.Profile#DEFAULT}. If a group fails, its writes are applied again one
+ * by one, so one bad write does not fail the others.
+ */
+public class MyJournalWriteQueue {
+
+    private static final String LOG_TAG = MyJournalWriteQueue.class.getSimpleName();
+
+    /* How long the writer waits for more writes to commit along with the first one */
+    static final long GROUP_WINDOW_MILLIS = 10;
+    /* Writes committed in one transaction at most */
+    static final int MAX_GROUP_SIZE = 100;
+    /* How long the writer thread stays around with nothing to write */
+    private static final long IDLE_MILLIS = 30000;
+
+    /**
+     * Told on the main thread when a write is done.
+     */
+    public interface Callback {
+        /**
+         * @param result the result of the write, or null if it failed or was cancelled
+         */
+        void onWriteDone(ContentProviderResult result);
+    }
+
+    /**
+     * A queued write, done once committed. Its result holds the URI of an inserted thought or
+     * the number of thoughts updated or deleted.
+     *
+     * A write can be cancelled until the writer takes it into a group; after that it is part of
+     * a transaction and {@link #cancel} returns false.
+     */
+    public static final class WriteFuture implements Future<ContentProviderResult> {
+
+        private final ContentProviderOperation mOperation;
+        private final BlockingQueue<WriteFuture> mPending;
+        private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+        // The outcome and the callbacks waiting for it, guarded by this
+        private boolean mDone;
+        private boolean mCancelled;
+        private ContentProviderResult mResult;
+        private Throwable mFailure;
+        private final List<Callback> mCallbacks = new ArrayList<>();
+
+        private WriteFuture(ContentProviderOperation operation, BlockingQueue<WriteFuture> pending) {
+            mOperation = operation;
+            mPending = pending;
+        }
+
+        /**
+         * Tell the callback on the main thread once the write is done, right away if it is.
+         */
+        public void addCallback(Callback callback) {
+            synchronized (this) {
+                if (!mDone) {
+                    mCallbacks.add(callback);
+                    return;
+                }
+            }
+            post(callback);
+        }
+
+        /**
+         * Drop the write if the writer has not taken it yet.
+         *
+         * @return true if the write will not be made, false if it was already taken or done
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            // The writer takes writes off the same queue, only one of the two gets it
+            if (!mPending.remove(this)) {
+                return false;
+            }
+            finish(null, null, true);
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return mDone;
+        }
+
+        @Override
+        public synchronized ContentProviderResult get() throws InterruptedException, ExecutionException {
+            while (!mDone) {
+                wait();
+            }
+            return outcome();
+        }
+
+        @Override
+        public synchronized ContentProviderResult get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!mDone) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return outcome();
+        }
+
+        private ContentProviderResult outcome() throws ExecutionException {
+            if (mCancelled) {
+                throw new CancellationException();
+            }
+            if (mFailure != null) {
+                throw new ExecutionException(mFailure);
+            }
+            return mResult;
+        }
+
+        void complete(ContentProviderResult result) {
+            finish(result, null, false);
+        }
+
+        void fail(Throwable failure) {
+            finish(null, failure, false);
+        }
+
+        private void finish(ContentProviderResult result, Throwable failure, boolean cancelled) {
+            List<Callback> callbacks;
+            synchronized (this) {
+                if (mDone) {
+                    return;
+                }
+                mDone = true;
+                mResult = result;
+                mFailure = failure;
+                mCancelled = cancelled;
+                notifyAll();
+                callbacks = new ArrayList<>(mCallbacks);
+                mCallbacks.clear();
+            }
+            for (Callback callback : callbacks) {
+                post(callback);
+            }
+        }
+
+        private void post(final Callback callback) {
+            final ContentProviderResult result;
+            synchronized (this) {
+                result = mResult;
+            }
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onWriteDone(result);
+                }
+            });
+        }
+    }
+
+    private final ContentResolver mContentResolver;
+    private final LinkedBlockingQueue<WriteFuture> mQueue = new LinkedBlockingQueue<>();
+
+    // Whether the writer thread is running, guarded by this
+    private boolean mWriting;
+
+    private final Runnable mWriter = new Runnable() {
+        @Override
+        public void run() {
+            List<WriteFuture> group = new ArrayList<>();
+            while (nextGroup(group)) {
+                commit(group);
+                group.clear();
+            }
+        }
+    };
+
+    public MyJournalWriteQueue(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    public WriteFuture insert(Uri uri, ContentValues values) {
+        return enqueue(ContentProviderOperation.newInsert(uri).withValues(values).build());
+    }
+
+    public WriteFuture update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        return enqueue(ContentProviderOperation.newUpdate(uri).withValues(values)
+                .withSelection(selection, selectionArgs).build());
+    }
+
+    public WriteFuture delete(Uri uri, String selection, String[] selectionArgs) {
+        return enqueue(ContentProviderOperation.newDelete(uri)
+                .withSelection(selection, selectionArgs).build());
+    }
+
+    private WriteFuture enqueue(ContentProviderOperation operation) {
+        WriteFuture write = new WriteFuture(operation, mQueue);
+        synchronized (this) {
+            mQueue.add(write);
+            if (!mWriting) {
+                mWriting = true;
+                new Thread(mWriter, "MyJournalWriter").start();
+            }
+        }
+        return write;
+    }
+
+    /**
+     * Wait for the next write, then for the ones following it within the group window.
+     *
+     * @return false if the writer was idle long enough to stop
+     */
+    private boolean nextGroup(List<WriteFuture> group) {
+        WriteFuture first;
+        do {
+            try {
+                first = mQueue.poll(IDLE_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                first = null;
+            }
+            if (first == null) {
+                synchronized (this) {
+                    // A write queued meanwhile found the writer running, so it must be taken
+                    if (mQueue.isEmpty()) {
+                        mWriting = false;
+                        return false;
+                    }
+                }
+            }
+        } while (first == null);
+
+        group.add(first);
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(GROUP_WINDOW_MILLIS);
+            while (group.size() < MAX_GROUP_SIZE) {
+                WriteFuture next = mQueue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                group.add(next);
+            }
+        } catch (InterruptedException e) {
+            // Commit what was gathered so far, the rest goes with the next group
+        }
+        return true;
+    }
+
+    /**
+     * Commit the group in one transaction, or each of its writes on its own if that fails.
+     */
+    private void commit(List<WriteFuture> group) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(group.size());
+        for (WriteFuture write : group) {
+            operations.add(write.mOperation);
+        }
+        try {
+            ContentProviderResult[] results =
+                    mContentResolver.applyBatch(MyJournalContract.CONTENT_AUTHORITY, operations);
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).complete(results[i]);
+            }
+            return;
+        } catch (RemoteException | OperationApplicationException | RuntimeException e) {
+            if (group.size() == 1) {
+                Log.e(LOG_TAG, "Failed to write " + group.get(0).mOperation, e);
+                group.get(0).fail(e);
+                return;
+            }
+            Log.w(LOG_TAG, "Failed to write a group of " + group.size() + ", writing one by one", e);
+        }
+        for (WriteFuture write : group) {
+            commit(Collections.singletonList(write));
+        }
+    }
+}
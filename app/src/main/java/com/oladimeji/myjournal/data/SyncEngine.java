@@ -0,0 +1,362 @@
+package com.oladimeji.myjournal.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.SystemClock;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Syncs the journal with a remote store, so that it can be written offline on several devices.
+ *
+ * Triggers append the sync id of every inserted, edited or deleted thought to a change log.
+ * A sync first pushes the logged thoughts in batches, then pulls the changes the store received
+ * since the last sync. Each thought carries a version vector, bumped for this device when it is
+ * pushed. A pulled version descending from the local one replaces it; a concurrent one is
+ * settled by {@link SyncRecord#winsOver}, the last written version winning, and both sides end
+ * up with the merged vector. Thoughts edited locally since their last push count as one version
+ * ahead, so such an edit is never silently replaced by an older remote version.
+ *
+ * Pulled thoughts are stored in plain text, whatever the compression threshold of the journal.
+ */
+public class SyncEngine {
+
+    /** Number of thoughts pushed or pulled per request when no batch size is given */
+    public static final int DEFAULT_BATCH_SIZE = 200;
+
+    /** Table of the sync ids of the thoughts changed since they were last pushed */
+    static final String LOG_TABLE_NAME = "sync_log";
+
+    /** Table of the version vectors of the deleted thoughts */
+    static final String TOMBSTONE_TABLE_NAME = "sync_tombstones";
+
+    /** Table of the settings of the engine, as key and value pairs */
+    static final String STATE_TABLE_NAME = "sync_state";
+
+    static final String COLUMN_SEQ = "seq";
+    static final String COLUMN_KEY = "key";
+    static final String COLUMN_VALUE = "value";
+
+    private static final String KEY_REPLICA_ID = "replica_id";
+    private static final String KEY_PULL_CURSOR = "pull_cursor";
+
+    private static final String[] THOUGHT_COLUMNS = {MyJournalEntry.COLUMN_JOURNAL_DATE,
+            MyJournalEntry.COLUMN_JOURNAL_TIME, MyJournalEntry.COLUMN_JOURNAL_THOUGHT,
+            MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB, MyJournalEntry.COLUMN_VERSION_VECTOR,
+            MyJournalEntry.COLUMN_UPDATED_AT, MyJournalEntry.COLUMN_DELETED_AT};
+
+    private static final String WHERE_SYNC_ID = MyJournalEntry.COLUMN_SYNC_ID + "=?";
+
+    /**
+     * Outcome of a sync.
+     */
+    public static final class Result {
+        /** Thoughts sent to the store */
+        public final int pushed;
+        /** Thoughts received from the store */
+        public final int pulled;
+        /** Received thoughts that had been changed concurrently on this device */
+        public final int conflicts;
+        /** Wall time of the sync */
+        public final long elapsedMillis;
+
+        Result(int pushed, int pulled, int conflicts, long elapsedMillis) {
+            this.pushed = pushed;
+            this.pulled = pulled;
+            this.conflicts = conflicts;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return pushed + " pushed, " + pulled + " pulled, " + conflicts + " conflicts in "
+                    + elapsedMillis + " ms";
+        }
+    }
+
+    private final SQLiteOpenHelper mOpenHelper;
+    private final int mBatchSize;
+
+    public SyncEngine(SQLiteOpenHelper openHelper) {
+        this(openHelper, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize number of thoughts pushed or pulled per request
+     */
+    public SyncEngine(SQLiteOpenHelper openHelper, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        mOpenHelper = openHelper;
+        mBatchSize = batchSize;
+    }
+
+    /**
+     * Push the local changes, then pull the remote ones. A failed request leaves the journal
+     * consistent; what was not synced is synced by the next call.
+     */
+    public synchronized Result sync(SyncTransport transport) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        String replicaId = getReplicaId(db);
+
+        int pushed = 0;
+        int pushedNow;
+        do {
+            pushedNow = pushBatch(db, transport, replicaId);
+            pushed += pushedNow;
+        } while (pushedNow > 0);
+
+        int pulled = 0;
+        int conflicts = 0;
+        String cursor = readState(db, KEY_PULL_CURSOR);
+        SyncTransport.Page page;
+        do {
+            page = transport.pull(cursor, mBatchSize);
+            // A page is applied whole or not at all, along with the position it brings the feed to
+            db.beginTransaction();
+            try {
+                for (SyncRecord record : page.records) {
+                    if (merge(db, replicaId, record)) {
+                        conflicts++;
+                    }
+                }
+                writeState(db, KEY_PULL_CURSOR, page.nextCursor);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            pulled += page.records.size();
+            cursor = page.nextCursor;
+        } while (page.hasMore);
+
+        return new Result(pushed, pulled, conflicts, SystemClock.elapsedRealtime() - start);
+    }
+
+    /**
+     * Push the thoughts of the oldest entries of the change log. Returns the number of thoughts
+     * pushed, 0 once the log is empty.
+     */
+    private int pushBatch(SQLiteDatabase db, SyncTransport transport, String replicaId) throws IOException {
+        Set<String> syncIds = new LinkedHashSet<>();
+        long lastSeq = 0;
+        Cursor log = db.query(LOG_TABLE_NAME, new String[]{COLUMN_SEQ, MyJournalEntry.COLUMN_SYNC_ID},
+                null, null, null, null, COLUMN_SEQ + " ASC", String.valueOf(mBatchSize));
+        try {
+            while (log.moveToNext()) {
+                lastSeq = log.getLong(0);
+                syncIds.add(log.getString(1));
+            }
+        } finally {
+            log.close();
+        }
+        if (syncIds.isEmpty()) {
+            return 0;
+        }
+
+        List<SyncRecord> records = new ArrayList<>(syncIds.size());
+        for (String syncId : syncIds) {
+            SyncRecord record = readLocal(db, syncId);
+            if (record != null) {
+                records.add(record.withVersionVector(record.versionVector.increment(replicaId)));
+            }
+        }
+        transport.push(records);
+
+        // Changes made while pushing were logged after lastSeq, and are pushed by the next batch
+        db.beginTransaction();
+        try {
+            for (SyncRecord record : records) {
+                storeVersionVector(db, record);
+            }
+            db.delete(LOG_TABLE_NAME, COLUMN_SEQ + "<=?", new String[]{String.valueOf(lastSeq)});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return Math.max(1, records.size());
+    }
+
+    /**
+     * Merge a pulled version into the journal. Returns whether it conflicted with the local one.
+     */
+    private boolean merge(SQLiteDatabase db, String replicaId, SyncRecord remote) {
+        SyncRecord local = readLocal(db, remote.syncId);
+        if (local == null) {
+            write(db, remote);
+            return false;
+        }
+        VersionVector localVector = local.versionVector;
+        if (isLogged(db, remote.syncId)) {
+            // Edited since the last push, which will count as a new version of this device
+            localVector = localVector.increment(replicaId);
+        }
+        switch (remote.versionVector.compareTo(localVector)) {
+            case EQUAL:
+            case BEFORE:
+                // Nothing the journal does not already have
+                return false;
+            case AFTER:
+                write(db, remote);
+                return false;
+            default:
+                VersionVector merged = remote.versionVector.merge(local.versionVector);
+                if (remote.winsOver(local)) {
+                    write(db, remote.withVersionVector(merged));
+                } else {
+                    // Keep the local version, which has to be pushed again to win on the store
+                    storeVersionVector(db, local.withVersionVector(merged));
+                    ContentValues logged = new ContentValues();
+                    logged.put(MyJournalEntry.COLUMN_SYNC_ID, remote.syncId);
+                    db.insert(LOG_TABLE_NAME, null, logged);
+                }
+                return true;
+        }
+    }
+
+    /**
+     * Replace the local version of a thought with a pulled one.
+     */
+    private static void write(SQLiteDatabase db, SyncRecord record) {
+        String[] whereArgs = {record.syncId};
+        // Compressed thoughts are not unindexed by the search triggers
+        MyJournalContentProvider.unindexCompressedThoughts(db, WHERE_SYNC_ID, whereArgs);
+        if (record.deleted) {
+            db.delete(MyJournalEntry.TABLE_NAME, WHERE_SYNC_ID, whereArgs);
+            ContentValues tombstone = new ContentValues();
+            tombstone.put(MyJournalEntry.COLUMN_SYNC_ID, record.syncId);
+            tombstone.put(MyJournalEntry.COLUMN_VERSION_VECTOR, record.versionVector.toString());
+            tombstone.put(MyJournalEntry.COLUMN_UPDATED_AT, record.updatedAt);
+            db.insertWithOnConflict(TOMBSTONE_TABLE_NAME, null, tombstone, SQLiteDatabase.CONFLICT_REPLACE);
+        } else {
+            ContentValues values = new ContentValues();
+            values.put(MyJournalEntry.COLUMN_JOURNAL_DATE, record.date);
+            values.put(MyJournalEntry.COLUMN_JOURNAL_TIME, record.time);
+            values.put(MyJournalEntry.COLUMN_JOURNAL_THOUGHT, record.thought);
+            values.putNull(MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB);
+            values.put(MyJournalEntry.COLUMN_JOURNAL_PREVIEW, MyJournalCompression.preview(record.thought));
+            values.put(MyJournalEntry.COLUMN_JOURNAL_TIMESTAMP, MyJournalDates.parseTimestamp(record.date, record.time));
+            values.put(MyJournalEntry.COLUMN_JOURNAL_DAY, MyJournalDates.parseDay(record.date));
+            values.put(MyJournalEntry.COLUMN_JOURNAL_WORD_COUNT, MyJournalSearch.countWords(record.thought));
+            values.put(MyJournalEntry.COLUMN_JOURNAL_HASH,
+                    MyJournalHashes.contentHash(record.date, record.time, record.thought));
+            values.put(MyJournalEntry.COLUMN_VERSION_VECTOR, record.versionVector.toString());
+            values.put(MyJournalEntry.COLUMN_UPDATED_AT, record.updatedAt);
+            values.putNull(MyJournalEntry.COLUMN_DELETED_AT);
+            // A pulled edit is kept in the revision history like a local one
+            Map<Long, MyJournalRevisions.Version> previousVersions = MyJournalRevisions.readVersions(db,
+                    MyJournalContentProvider.queryIds(db, WHERE_SYNC_ID, whereArgs));
+            if (db.update(MyJournalEntry.TABLE_NAME, values, WHERE_SYNC_ID, whereArgs) == 0) {
+                values.put(MyJournalEntry.COLUMN_SYNC_ID, record.syncId);
+                db.insert(MyJournalEntry.TABLE_NAME, null, values);
+            } else {
+                MyJournalRevisions.recordChanges(db, previousVersions);
+            }
+            MyJournalTags.index(db, DatabaseUtils.longForQuery(db, "SELECT " + MyJournalEntry._ID + " FROM "
+                    + MyJournalEntry.TABLE_NAME + " WHERE " + WHERE_SYNC_ID, whereArgs), record.thought);
+            db.delete(TOMBSTONE_TABLE_NAME, WHERE_SYNC_ID, whereArgs);
+        }
+        // The triggers logged the write, which came from the store and need not go back to it.
+        // Local edits it replaced were concurrent and lost.
+        db.delete(LOG_TABLE_NAME, WHERE_SYNC_ID, whereArgs);
+    }
+
+    /**
+     * Returns the local version of a thought, a tombstone if it was deleted, or null if the
+     * journal never had it.
+     */
+    private static SyncRecord readLocal(SQLiteDatabase db, String syncId) {
+        String[] whereArgs = {syncId};
+        Cursor cursor = db.query(MyJournalEntry.TABLE_NAME, THOUGHT_COLUMNS, WHERE_SYNC_ID, whereArgs,
+                null, null, null);
+        try {
+            if (cursor.moveToFirst() && !cursor.isNull(6)) {
+                // Deleted, though not purged yet
+                return SyncRecord.tombstone(syncId, VersionVector.parse(cursor.getString(4)), cursor.getLong(5));
+            }
+            if (cursor.getCount() > 0) {
+                return new SyncRecord(syncId, cursor.getString(0), cursor.getString(1),
+                        ThoughtDecodingCursor.readThought(cursor, 2, 3),
+                        VersionVector.parse(cursor.getString(4)), cursor.getLong(5));
+            }
+        } finally {
+            cursor.close();
+        }
+        cursor = db.query(TOMBSTONE_TABLE_NAME, new String[]{MyJournalEntry.COLUMN_VERSION_VECTOR,
+                MyJournalEntry.COLUMN_UPDATED_AT}, WHERE_SYNC_ID, whereArgs, null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                return SyncRecord.tombstone(syncId, VersionVector.parse(cursor.getString(0)), cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return null;
+    }
+
+    /**
+     * Store the version vector of a thought, or of its tombstone. The sync columns are not
+     * watched by the change log triggers, so this does not mark the thought as changed.
+     */
+    private static void storeVersionVector(SQLiteDatabase db, SyncRecord record) {
+        ContentValues values = new ContentValues();
+        values.put(MyJournalEntry.COLUMN_VERSION_VECTOR, record.versionVector.toString());
+        String[] whereArgs = {record.syncId};
+        // A deleted thought is still in the table until it is purged
+        db.update(MyJournalEntry.TABLE_NAME, values, WHERE_SYNC_ID, whereArgs);
+        if (record.deleted) {
+            db.update(TOMBSTONE_TABLE_NAME, values, WHERE_SYNC_ID, whereArgs);
+        }
+    }
+
+    private static boolean isLogged(SQLiteDatabase db, String syncId) {
+        Cursor cursor = db.query(LOG_TABLE_NAME, new String[]{COLUMN_SEQ}, WHERE_SYNC_ID,
+                new String[]{syncId}, null, null, null, "1");
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the identifier of this copy of the journal in version vectors, created on first use.
+     */
+    private static String getReplicaId(SQLiteDatabase db) {
+        String replicaId = readState(db, KEY_REPLICA_ID);
+        if (replicaId == null) {
+            replicaId = UUID.randomUUID().toString().replace("-", "");
+            writeState(db, KEY_REPLICA_ID, replicaId);
+        }
+        return replicaId;
+    }
+
+    private static String readState(SQLiteDatabase db, String key) {
+        Cursor cursor = db.query(STATE_TABLE_NAME, new String[]{COLUMN_VALUE}, COLUMN_KEY + "=?",
+                new String[]{key}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void writeState(SQLiteDatabase db, String key, String value) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_KEY, key);
+        values.put(COLUMN_VALUE, value);
+        db.insertWithOnConflict(STATE_TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+}
@@ -0,0 +1,70 @@
+package com.oladimeji.myjournal.data;
+
+/**
+ * One version of a thought as exchanged with the remote store. A deleted thought is sent as a
+ * record with no date, time or thought, so the deletion reaches the other devices.
+ */
+public final class SyncRecord {
+    /** Identifier of the thought shared by all devices */
+    public final String syncId;
+    public final String date;
+    public final String time;
+    public final String thought;
+    /** Whether the thought was deleted */
+    public final boolean deleted;
+    public final VersionVector versionVector;
+    /** When the version was written, in epoch milliseconds */
+    public final long updatedAt;
+
+    public SyncRecord(String syncId, String date, String time, String thought,
+                      VersionVector versionVector, long updatedAt) {
+        this(syncId, date, time, thought, false, versionVector, updatedAt);
+    }
+
+    private SyncRecord(String syncId, String date, String time, String thought, boolean deleted,
+                       VersionVector versionVector, long updatedAt) {
+        this.syncId = syncId;
+        this.date = date;
+        this.time = time;
+        this.thought = thought;
+        this.deleted = deleted;
+        this.versionVector = versionVector;
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Returns the record of a deleted thought.
+     */
+    public static SyncRecord tombstone(String syncId, VersionVector versionVector, long updatedAt) {
+        return new SyncRecord(syncId, null, null, null, true, versionVector, updatedAt);
+    }
+
+    /**
+     * Returns this record with another version vector.
+     */
+    public SyncRecord withVersionVector(VersionVector versionVector) {
+        return new SyncRecord(syncId, date, time, thought, deleted, versionVector, updatedAt);
+    }
+
+    /**
+     * Returns whether this version wins over the other, concurrent one. The last written
+     * version wins. Versions written in the same millisecond are ordered by their content, so
+     * that every device settles on the same one.
+     */
+    public boolean winsOver(SyncRecord other) {
+        if (updatedAt != other.updatedAt) {
+            return updatedAt > other.updatedAt;
+        }
+        return contentKey().compareTo(other.contentKey()) > 0;
+    }
+
+    private String contentKey() {
+        // Deletions sort first, so an edit made in the same millisecond survives
+        return deleted ? "" : "1" + date + '\u0000' + time + '\u0000' + thought;
+    }
+
+    @Override
+    public String toString() {
+        return syncId + (deleted ? " deleted" : "") + " [" + versionVector + "] at " + updatedAt;
+    }
+}
@@ -0,0 +1,48 @@
+package com.oladimeji.myjournal.data;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Connection to the remote store the journal is synced with, see {@link SyncEngine}.
+ *
+ * The store keeps one version of each thought. When a pushed version is concurrent with the one
+ * it holds, it keeps the winner of {@link SyncRecord#winsOver} with the merge of both version
+ * vectors, as the engine does locally. Every stored change gets a new position in a change feed,
+ * which {@link #pull} reads from.
+ */
+public interface SyncTransport {
+
+    /**
+     * Send changed thoughts to the store.
+     *
+     * @throws IOException if the store could not be reached, in which case the records are
+     *                     pushed again by the next sync
+     */
+    void push(List<SyncRecord> records) throws IOException;
+
+    /**
+     * Read the changes stored after the given position of the change feed.
+     *
+     * @param cursor the {@link Page#nextCursor} of the last page read, null to read from the start
+     * @param limit  the maximum number of records to return
+     */
+    Page pull(String cursor, int limit) throws IOException;
+
+    /**
+     * One page of the change feed.
+     */
+    final class Page {
+        public final List<SyncRecord> records;
+        /** Position to pull the next page from */
+        public final String nextCursor;
+        /** Whether the feed has more records after this page */
+        public final boolean hasMore;
+
+        public Page(List<SyncRecord> records, String nextCursor, boolean hasMore) {
+            this.records = records;
+            this.nextCursor = nextCursor;
+            this.hasMore = hasMore;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.oladimeji.myjournal.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.LruCache;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bounded LRU cache of single thoughts keyed by _id, used by {@link MyJournalContentProvider} to
+ * answer single-thought queries without going to SQLite.
+ *
+ * Every write invalidates the rows it may have touched. A row read from the database is only
+ * cached if no invalidation happened while it was being read, so a slow reader can never put
+ * back a row that a concurrent write just changed.
+ */
+class ThoughtCache {
+
+    /** Columns kept for each cached thought, in the order of the cached values */
+    static final String[] COLUMNS = {MyJournalEntry._ID, MyJournalEntry.COLUMN_JOURNAL_DATE,
+            MyJournalEntry.COLUMN_JOURNAL_TIME, MyJournalEntry.COLUMN_JOURNAL_THOUGHT,
+            MyJournalEntry.COLUMN_JOURNAL_TIMESTAMP};
+
+    private static final List<String> COLUMN_LIST = Arrays.asList(COLUMNS);
+
+    private final LruCache<Long, Object[]> mRows;
+
+    // Incremented by every invalidation, see beginRead()
+    private long mInvalidations;
+
+    ThoughtCache(int maxRows) {
+        mRows = new LruCache<>(maxRows);
+    }
+
+    /**
+     * Returns true if a query for these columns can be answered from the cache. A null
+     * projection asks for every column of the table, more than the cache keeps.
+     */
+    static boolean canServe(String[] projection) {
+        if (projection == null) {
+            return false;
+        }
+        for (String column : projection) {
+            if (!COLUMN_LIST.contains(column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the cached values of the thought, or null on a miss.
+     */
+    Object[] get(long id) {
+        return mRows.get(id);
+    }
+
+    /**
+     * Call before reading a row from the database; pass the result to {@link #put}.
+     */
+    synchronized long beginRead() {
+        return mInvalidations;
+    }
+
+    /**
+     * Cache the values of a thought read from the database, unless the cache was invalidated
+     * since the matching {@link #beginRead}.
+     */
+    synchronized void put(long id, Object[] row, long readToken) {
+        if (readToken == mInvalidations) {
+            mRows.put(id, row);
+        }
+    }
+
+    /**
+     * Drop one thought after it was updated or deleted.
+     */
+    synchronized void invalidate(long id) {
+        mInvalidations++;
+        mRows.remove(id);
+    }
+
+    /**
+     * Drop every thought, after a write whose rows are not known.
+     */
+    synchronized void invalidateAll() {
+        mInvalidations++;
+        mRows.evictAll();
+    }
+
+    int hitCount() {
+        return mRows.hitCount();
+    }
+
+    int missCount() {
+        return mRows.missCount();
+    }
+
+    int size() {
+        return mRows.size();
+    }
+
+    /**
+     * Read the cached columns of a database row, in {@link #COLUMNS} order.
+     */
+    static Object[] readRow(Cursor cursor) {
+        Object[] row = new Object[COLUMNS.length];
+        row[0] = cursor.getLong(0);
+        row[1] = cursor.getString(1);
+        row[2] = cursor.getString(2);
+        row[3] = cursor.getString(3);
+        row[4] = cursor.isNull(4) ? null : cursor.getLong(4);
+        return row;
+    }
+
+    /**
+     * Build a cursor holding the requested columns of a cached row, or no row at all.
+     *
+     * @param projection columns the cache can serve, see {@link #canServe}
+     */
+    static Cursor toCursor(Object[] row, String[] projection) {
+        MatrixCursor cursor = new MatrixCursor(projection, 1);
+        if (row != null) {
+            Object[] values = new Object[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                values[i] = row[COLUMN_LIST.indexOf(projection[i])];
+            }
+            cursor.addRow(values);
+        }
+        return cursor;
+    }
+}
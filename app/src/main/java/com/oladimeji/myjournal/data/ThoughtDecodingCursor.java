@@ -0,0 +1,62 @@
+package com.oladimeji.myjournal.data;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+import com.oladimeji.myjournal.data.MyJournalContract.MyJournalEntry;
+
+/**
+ * Cursor over the thoughts table that returns the text of compressed thoughts in the thought
+ * column, as if they were stored in plain text. Requires the blob column in the cursor.
+ */
+final class ThoughtDecodingCursor extends CursorWrapper {
+
+    private final int mThoughtIndex;
+    private final int mBlobIndex;
+
+    // The last thought decompressed, kept as list rows are often read more than once
+    private int mDecodedPosition = -1;
+    private String mDecoded;
+
+    private ThoughtDecodingCursor(Cursor cursor, int thoughtIndex, int blobIndex) {
+        super(cursor);
+        mThoughtIndex = thoughtIndex;
+        mBlobIndex = blobIndex;
+    }
+
+    /**
+     * Returns the cursor wrapped if it holds the thought column, or as it is otherwise.
+     */
+    static Cursor wrap(Cursor cursor) {
+        int thoughtIndex = cursor.getColumnIndex(MyJournalEntry.COLUMN_JOURNAL_THOUGHT);
+        int blobIndex = cursor.getColumnIndex(MyJournalEntry.COLUMN_JOURNAL_THOUGHT_BLOB);
+        if (thoughtIndex < 0 || blobIndex < 0) {
+            return cursor;
+        }
+        return new ThoughtDecodingCursor(cursor, thoughtIndex, blobIndex);
+    }
+
+    /**
+     * Returns the thought of the current row of a cursor holding both the thought and the blob
+     * columns.
+     */
+    static String readThought(Cursor cursor, int thoughtIndex, int blobIndex) {
+        if (cursor.isNull(blobIndex)) {
+            return cursor.getString(thoughtIndex);
+        }
+        return MyJournalCompression.decompress(cursor.getBlob(blobIndex));
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+        if (columnIndex != mThoughtIndex || super.isNull(mBlobIndex)) {
+            return super.getString(columnIndex);
+        }
+        int position = getPosition();
+        if (position != mDecodedPosition) {
+            mDecoded = MyJournalCompression.decompress(super.getBlob(mBlobIndex));
+            mDecodedPosition = position;
+        }
+        return mDecoded;
+    }
+}
@@ -0,0 +1,138 @@
+package com.oladimeji.myjournal.data;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The version vector of a synced thought: for each device, the number of versions of the
+ * thought it has pushed. Comparing two vectors tells whether one version was derived from the
+ * other or whether they were written concurrently.
+ *
+ * Vectors are immutable and stored as text, "replica:counter" pairs separated by commas and
+ * sorted by replica, so equal vectors have equal text.
+ */
+public final class VersionVector {
+
+    /**
+     * How two versions relate.
+     */
+    public enum Order {
+        /** Both vectors are the same */
+        EQUAL,
+        /** The first version is an ancestor of the second */
+        BEFORE,
+        /** The first version descends from the second */
+        AFTER,
+        /** Neither version saw the other */
+        CONCURRENT
+    }
+
+    public static final VersionVector EMPTY = new VersionVector(new TreeMap<String, Long>());
+
+    private final TreeMap<String, Long> mCounters;
+
+    private VersionVector(TreeMap<String, Long> counters) {
+        mCounters = counters;
+    }
+
+    /**
+     * Parse a vector from its text form.
+     *
+     * @param text the text form, null or empty for the empty vector
+     * @throws IllegalArgumentException if the text is not a vector
+     */
+    public static VersionVector parse(String text) {
+        if (text == null || text.isEmpty()) {
+            return EMPTY;
+        }
+        TreeMap<String, Long> counters = new TreeMap<>();
+        for (String entry : text.split(",")) {
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Malformed version vector " + text);
+            }
+            long counter;
+            try {
+                counter = Long.parseLong(entry.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed version vector " + text, e);
+            }
+            counters.put(entry.substring(0, separator), counter);
+        }
+        return new VersionVector(counters);
+    }
+
+    /**
+     * Returns the counter of the given replica, 0 if it never pushed this thought.
+     */
+    public long get(String replica) {
+        Long counter = mCounters.get(replica);
+        return counter == null ? 0 : counter;
+    }
+
+    /**
+     * Returns this vector with the counter of the given replica incremented.
+     */
+    public VersionVector increment(String replica) {
+        TreeMap<String, Long> counters = new TreeMap<>(mCounters);
+        counters.put(replica, get(replica) + 1);
+        return new VersionVector(counters);
+    }
+
+    /**
+     * Returns the smallest vector descending from both this one and the other.
+     */
+    public VersionVector merge(VersionVector other) {
+        TreeMap<String, Long> counters = new TreeMap<>(mCounters);
+        for (Map.Entry<String, Long> entry : other.mCounters.entrySet()) {
+            counters.put(entry.getKey(), Math.max(get(entry.getKey()), entry.getValue()));
+        }
+        return new VersionVector(counters);
+    }
+
+    /**
+     * Returns how this version relates to the other.
+     */
+    public Order compareTo(VersionVector other) {
+        boolean ahead = false;
+        boolean behind = false;
+        for (Map.Entry<String, Long> entry : mCounters.entrySet()) {
+            long otherCounter = other.get(entry.getKey());
+            ahead |= entry.getValue() > otherCounter;
+            behind |= entry.getValue() < otherCounter;
+        }
+        for (Map.Entry<String, Long> entry : other.mCounters.entrySet()) {
+            behind |= entry.getValue() > get(entry.getKey());
+        }
+        if (ahead && behind) {
+            return Order.CONCURRENT;
+        }
+        return ahead ? Order.AFTER : behind ? Order.BEFORE : Order.EQUAL;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof VersionVector && compareTo((VersionVector) other) == Order.EQUAL;
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Long> entry : mCounters.entrySet()) {
+            // Zero counters are dropped so that equal vectors have equal text
+            if (entry.getValue() == 0) {
+                continue;
+            }
+            if (text.length() > 0) {
+                text.append(',');
+            }
+            text.append(entry.getKey()).append(':').append(entry.getValue());
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package com.oladimeji.myjournal;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link ThoughtSnapshot}, run on the development machine.
+ */
+public class ThoughtSnapshotTest {
+
+    private static final int ROWS = 1000;
+
+    @Test
+    public void sharesEqualDatesAndTimes() {
+        ThoughtSnapshot snapshot = new ThoughtSnapshot.Builder(2)
+                .add(1, new String("6/28/2018"), new String("12:20"), 0, null)
+                .add(2, new String("6/28/2018"), new String("12:20"), 0, null)
+                .build();
+        assertSame(snapshot.getDate(0), snapshot.getDate(1));
+        assertSame(snapshot.getTime(0), snapshot.getTime(1));
+    }
+
+    @Test
+    public void readsThoughtOnceThenFromMemory() {
+        final int[] loads = new int[1];
+        ThoughtSnapshot snapshot = new ThoughtSnapshot.Builder(1).add(1, "6/28/2018", "12:20", 0, null).build();
+        assertNull(snapshot.getThought(0));
+
+        snapshot.setThoughtSource(new ThoughtSnapshot.ThoughtSource() {
+            @Override
+            public String loadThought(int position) {
+                loads[0]++;
+                return "My thinking";
+            }
+        });
+        assertEquals("My thinking", snapshot.getThought(0));
+        assertEquals("My thinking", snapshot.getThought(0));
+        assertEquals(1, loads[0]);
+    }
+
+    @Test
+    public void concatKeepsOrderAndLoadedTexts() {
+        ThoughtSnapshot first = new ThoughtSnapshot.Builder(1).add(1, "6/28/2018", "12:20", 7, "first").build();
+        ThoughtSnapshot second = new ThoughtSnapshot.Builder(1).add(5, "6/29/2018", "8:0", 9, null).build();
+        ThoughtSnapshot both = first.concat(second);
+
+        assertEquals(2, both.size());
+        assertEquals(5, both.getId(1));
+        assertEquals(9, both.getContentHash(1));
+        assertEquals("first", both.getThought(0));
+    }
+
+    /**
+     * Once every row has been bound, binding them again, as a fling back over the list does,
+     * must not allocate.
+     */
+    @Test
+    public void rebindingAllocatesNothing() {
+        ThoughtSnapshot.Builder builder = new ThoughtSnapshot.Builder(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            builder.add(i + 1, "6/" + (i % 28 + 1) + "/2018", "12:" + (i % 60), i, null);
+        }
+        ThoughtSnapshot snapshot = builder.build();
+        snapshot.setThoughtSource(new ThoughtSnapshot.ThoughtSource() {
+            @Override
+            public String loadThought(int position) {
+                return "Thought " + position;
+            }
+        });
+
+        // First pass reads the texts, and warms up the JIT
+        long checksum = 0;
+        for (int pass = 0; pass < 20; pass++) {
+            checksum += bindAll(snapshot);
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int pass = 0; pass < 100; pass++) {
+            checksum += bindAll(snapshot);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(checksum != 0);
+        // Leave room for the measurement itself, far below one object per bound row
+        assertTrue("Rebinding allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    /**
+     * Read every column of every row the way onBindViewHolder does.
+     */
+    private static long bindAll(ThoughtSnapshot snapshot) {
+        long checksum = 0;
+        for (int position = 0; position < snapshot.size(); position++) {
+            checksum += snapshot.getId(position);
+            checksum += snapshot.getDate(position).length();
+            checksum += snapshot.getTime(position).length();
+            checksum += snapshot.getThought(position).length();
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,47 @@
+package com.oladimeji.myjournal.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link MyJournalCompression}, run on the development machine.
+ */
+public class MyJournalCompressionTest {
+
+    @Test
+    public void roundTripsLongThoughts() {
+        StringBuilder thought = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            thought.append("Walked to the lake and back, the rain held off. été 🌧\n");
+        }
+        byte[] blob = MyJournalCompression.compress(thought.toString(), 1024);
+        assertNotNull(blob);
+        assertTrue(blob.length < thought.length() / 4);
+        assertEquals(thought.toString(), MyJournalCompression.decompress(blob));
+    }
+
+    @Test
+    public void keepsShortThoughtsPlain() {
+        assertNull(MyJournalCompression.compress("My thinking", 1024));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCorruptBlobs() {
+        MyJournalCompression.decompress(new byte[]{1, 2, 3, 4});
+    }
+
+    @Test
+    public void previewStopsAtLengthWithoutSplittingPairs() {
+        StringBuilder thought = new StringBuilder();
+        for (int i = 0; i < MyJournalCompression.PREVIEW_LENGTH + 10; i++) {
+            thought.append("🌧");
+        }
+        String preview = MyJournalCompression.preview(thought.toString());
+        assertEquals(MyJournalCompression.PREVIEW_LENGTH, preview.codePointCount(0, preview.length()));
+        assertEquals("short", MyJournalCompression.preview("short"));
+    }
+}
@@ -0,0 +1,57 @@
+package com.oladimeji.myjournal.data;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link MyJournalDates}, run on the development machine.
+ */
+public class MyJournalDatesTest {
+
+    @Test
+    public void parsesPickerFormat() {
+        // The editor writes unpadded values such as "9:5"
+        Long timestamp = MyJournalDates.parseTimestamp("6/27/2018", "9:5");
+
+        Calendar expected = Calendar.getInstance();
+        expected.clear();
+        expected.set(2018, Calendar.JUNE, 27, 9, 5);
+        assertEquals(Long.valueOf(expected.getTimeInMillis()), timestamp);
+    }
+
+    @Test
+    public void ordersChronologically() {
+        // "10/1/2018" sorts before "9/30/2018" as text but must come after it as a timestamp
+        Long earlier = MyJournalDates.parseTimestamp("9/30/2018", "23:59");
+        Long later = MyJournalDates.parseTimestamp("10/1/2018", "0:0");
+        assertTrue(earlier < later);
+    }
+
+    @Test
+    public void rejectsMalformedValues() {
+        assertNull(MyJournalDates.parseTimestamp("", "12:20"));
+        assertNull(MyJournalDates.parseTimestamp("6/28", "12:20"));
+        assertNull(MyJournalDates.parseTimestamp("2/30/2018", "12:20"));
+        assertNull(MyJournalDates.parseTimestamp("6/28/2018", "25:00"));
+        assertNull(MyJournalDates.parseTimestamp("6/28/2018", "noon"));
+        assertNull(MyJournalDates.parseTimestamp(null, "12:20"));
+    }
+
+    @Test
+    public void parsesDayKeys() {
+        assertEquals(Integer.valueOf(20180627), MyJournalDates.parseDay("6/27/2018"));
+        assertEquals(Integer.valueOf(20160229), MyJournalDates.parseDay(" 2/29/2016 "));
+        // Keys sort chronologically and hold their month
+        assertTrue(MyJournalDates.parseDay("9/30/2018") < MyJournalDates.parseDay("10/1/2018"));
+        assertEquals(201810, MyJournalDates.parseDay("10/1/2018") / 100);
+        assertNull(MyJournalDates.parseDay("2/29/2018"));
+        assertNull(MyJournalDates.parseDay("4/31/2018"));
+        assertNull(MyJournalDates.parseDay("6/28"));
+        assertNull(MyJournalDates.parseDay(null));
+    }
+}
@@ -0,0 +1,43 @@
+package com.oladimeji.myjournal.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link MyJournalHashtags}, run on the development machine.
+ */
+public class MyJournalHashtagsTest {
+
+    @Test
+    public void extractsLowercaseTagsInOrder() {
+        assertEquals(Arrays.asList("beach", "family_trip", "été"), new ArrayList<>(
+                MyJournalHashtags.extract("#Beach day with the #family_trip, #beach again. #Été")));
+    }
+
+    @Test
+    public void skipsWhatIsNotATag() {
+        // Numbers, a lone '#', a '#' inside a word and HTML entities
+        assertTrue(MyJournalHashtags.extract("#1 # C# a#b &#39; ##").isEmpty());
+        assertTrue(MyJournalHashtags.extract(null).isEmpty());
+        StringBuilder tooLong = new StringBuilder("#");
+        for (int i = 0; i <= MyJournalHashtags.MAX_TAG_LENGTH; i++) {
+            tooLong.append('a');
+        }
+        assertTrue(MyJournalHashtags.extract(tooLong.toString()).isEmpty());
+    }
+
+    @Test
+    public void normalizesFilters() {
+        assertEquals("beach", MyJournalHashtags.normalize(" #Beach "));
+        assertEquals("2018_trip", MyJournalHashtags.normalize("2018_trip"));
+        assertNull(MyJournalHashtags.normalize("two words"));
+        assertNull(MyJournalHashtags.normalize("#"));
+        assertNull(MyJournalHashtags.normalize(null));
+    }
+}
@@ -0,0 +1,64 @@
+package com.oladimeji.myjournal.data;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link MyJournalMetrics}, run on the development machine.
+ */
+public class MyJournalMetricsTest {
+
+    @Test
+    public void bucketsCoverTheirValues() {
+        for (long value = 0; value < 1 << 20; value += 1 + value / 64) {
+            int bucket = MyJournalMetrics.Histogram.bucketOf(value);
+            assertTrue("Bucket of " + value, MyJournalMetrics.Histogram.upperBound(bucket) >= value);
+            if (bucket > 0) {
+                assertTrue("Bucket of " + value, MyJournalMetrics.Histogram.upperBound(bucket - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        MyJournalMetrics.Histogram histogram = new MyJournalMetrics.Histogram();
+        for (int micros = 1; micros <= 10000; micros++) {
+            histogram.record(micros);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMax());
+        long median = histogram.getPercentile(50);
+        assertTrue("Median " + median, median >= 5000
+                && median <= 5000 + 5000 / MyJournalMetrics.Histogram.SUB_BUCKETS);
+        assertEquals(10000, histogram.getPercentile(100));
+        assertEquals(0, new MyJournalMetrics.Histogram().getPercentile(99));
+    }
+
+    @Test
+    public void endpointsAreSharedByName() {
+        MyJournalMetrics metrics = new MyJournalMetrics();
+        MyJournalMetrics.Endpoint endpoint = metrics.endpoint("query thoughts");
+        assertSame(endpoint, metrics.endpoint("query thoughts"));
+        assertNull(endpoint.getWindowFills());
+
+        endpoint.recordCall(2000000, false);
+        endpoint.recordCall(1000000, true);
+        endpoint.recordRows(50);
+        endpoint.recordWindowFill(300000);
+        assertEquals(2, endpoint.getCalls());
+        assertEquals(1, endpoint.getErrors());
+        assertEquals(50, endpoint.getRows());
+        assertEquals(1, endpoint.getWindowFills().getCount());
+
+        StringWriter dump = new StringWriter();
+        metrics.dump(new PrintWriter(dump));
+        assertTrue(dump.toString(), dump.toString().contains("query thoughts\t2\t1\t50\t"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.oladimeji.myjournal.data;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link MyJournalSearch}, run on the development machine.
+ */
+public class MyJournalSearchTest {
+
+    @Test
+    public void quotesEveryWord() {
+        assertEquals("\"beach\" \"trip\"", MyJournalSearch.toMatchQuery("beach trip"));
+        // FTS operators and stray quotes must not reach the MATCH expression
+        assertEquals("\"beach\" \"NEAR\" \"trip\"", MyJournalSearch.toMatchQuery("beach\" NEAR* -trip"));
+        assertNull(MyJournalSearch.toMatchQuery("  *\"- "));
+        assertNull(MyJournalSearch.toMatchQuery(null));
+    }
+
+    @Test
+    public void countsWordsLikeTheIndex() {
+        assertEquals(4, MyJournalSearch.countWords("Went to the beach."));
+        assertEquals(3, MyJournalSearch.countWords("  2 long\n\ndays "));
+        assertEquals(0, MyJournalSearch.countWords(" ... "));
+        assertEquals(0, MyJournalSearch.countWords(null));
+    }
+
+    @Test
+    public void ranksMoreHitsAndRarerTermsHigher() {
+        // One phrase, one column, 1000 rows, average length 20 tokens
+        double oneHit = MyJournalSearch.bm25(matchinfo(1000, 20, 20, 1, 10));
+        double threeHits = MyJournalSearch.bm25(matchinfo(1000, 20, 20, 3, 10));
+        double rareTerm = MyJournalSearch.bm25(matchinfo(1000, 20, 20, 1, 2));
+        double longRow = MyJournalSearch.bm25(matchinfo(1000, 20, 200, 1, 10));
+
+        assertTrue(threeHits > oneHit);
+        assertTrue(rareTerm > oneHit);
+        assertTrue(longRow < oneHit);
+    }
+
+    /**
+     * Build a 'pcnalx' matchinfo blob for one phrase in one column.
+     */
+    private static byte[] matchinfo(int rows, int averageLength, int length, int hitsInRow, int rowsWithHits) {
+        int[] values = {1, 1, rows, averageLength, length, hitsInRow, hitsInRow * 2, rowsWithHits};
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.nativeOrder());
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+}
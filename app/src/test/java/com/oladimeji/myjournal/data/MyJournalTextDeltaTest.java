@@ -0,0 +1,60 @@
+package com.oladimeji.myjournal.data;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests for {@link MyJournalTextDelta}, run on the development machine.
+ */
+public class MyJournalTextDeltaTest {
+
+    @Test
+    public void deltaHoldsOnlyTheChangedRegion() {
+        MyJournalTextDelta delta = MyJournalTextDelta.between("Went to the market today",
+                "Went to the big market today");
+        assertEquals(12, delta.prefixLength);
+        assertEquals(12, delta.suffixLength);
+        assertEquals("big ", delta.text);
+        assertEquals("Went to the big market today", delta.applyTo("Went to the market today"));
+    }
+
+    @Test
+    public void deltaOfRepeatedTextDoesNotOverlap() {
+        MyJournalTextDelta delta = MyJournalTextDelta.between("aaaa", "aa");
+        assertEquals(2, delta.prefixLength + delta.suffixLength);
+        assertEquals("aa", delta.applyTo("aaaa"));
+        assertEquals("aaaa", MyJournalTextDelta.between("aa", "aaaa").applyTo("aa"));
+        assertEquals("", MyJournalTextDelta.between("same", "").applyTo("same"));
+    }
+
+    @Test
+    public void surrogatePairsAreNotSplit() {
+        // Two emoji sharing their high surrogate
+        String from = "Mood 😀 ok";
+        String to = "Mood 😢 ok";
+        MyJournalTextDelta delta = MyJournalTextDelta.between(from, to);
+        assertEquals("😢", delta.text);
+        assertEquals(to, delta.applyTo(from));
+    }
+
+    @Test
+    public void randomEditsRoundTrip() {
+        Random random = new Random(42);
+        String text = "";
+        for (int edit = 0; edit < 1000; edit++) {
+            int start = text.isEmpty() ? 0 : random.nextInt(text.length());
+            int end = Math.min(text.length(), start + random.nextInt(5));
+            String edited = text.substring(0, start) + "xyz".substring(random.nextInt(3)) + text.substring(end);
+            assertEquals(edited, MyJournalTextDelta.between(text, edited).applyTo(text));
+            text = edited;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deltaRejectsAShorterText() {
+        MyJournalTextDelta.between("longer text", "longer text!").applyTo("short");
+    }
+}
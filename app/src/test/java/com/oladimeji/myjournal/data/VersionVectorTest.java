@@ -0,0 +1,65 @@
+package com.oladimeji.myjournal.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link VersionVector}, run on the development machine.
+ */
+public class VersionVectorTest {
+
+    @Test
+    public void roundTripsSortedText() {
+        VersionVector vector = VersionVector.parse("b:2,a:1");
+        assertEquals("a:1,b:2", vector.toString());
+        assertEquals(vector, VersionVector.parse(vector.toString()));
+        assertSame(VersionVector.EMPTY, VersionVector.parse(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMalformedText() {
+        VersionVector.parse("a:x");
+    }
+
+    @Test
+    public void ordersDescendants() {
+        VersionVector base = VersionVector.EMPTY.increment("a");
+        VersionVector edited = base.increment("b");
+        assertEquals(VersionVector.Order.BEFORE, base.compareTo(edited));
+        assertEquals(VersionVector.Order.AFTER, edited.compareTo(base));
+        assertEquals(VersionVector.Order.EQUAL, edited.compareTo(VersionVector.parse("a:1,b:1")));
+    }
+
+    @Test
+    public void detectsConcurrentEdits() {
+        VersionVector base = VersionVector.parse("a:1");
+        VersionVector first = base.increment("a");
+        VersionVector second = base.increment("b");
+        assertEquals(VersionVector.Order.CONCURRENT, first.compareTo(second));
+
+        VersionVector merged = first.merge(second);
+        assertEquals("a:2,b:1", merged.toString());
+        assertEquals(VersionVector.Order.AFTER, merged.compareTo(first));
+        assertEquals(VersionVector.Order.AFTER, merged.compareTo(second));
+    }
+
+    @Test
+    public void lastWriterWinsEverywhere() {
+        VersionVector vector = VersionVector.parse("a:1");
+        SyncRecord earlier = new SyncRecord("id", "6/28/2018", "12:20", "first", vector, 1000);
+        SyncRecord later = new SyncRecord("id", "6/28/2018", "12:20", "second", vector, 2000);
+        assertTrue(later.winsOver(earlier));
+        assertFalse(earlier.winsOver(later));
+
+        // Ties are broken the same way whichever side compares
+        SyncRecord tie = new SyncRecord("id", "6/28/2018", "12:20", "third", vector, 2000);
+        assertTrue(tie.winsOver(later) != later.winsOver(tie));
+        SyncRecord deleted = SyncRecord.tombstone("id", vector, 2000);
+        assertTrue(later.winsOver(deleted));
+        assertFalse(deleted.winsOver(later));
+    }
+}